@@ -4,19 +4,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import pl.planzy.service.EventIntegrationService;
-import pl.planzy.service.ScrapperService;
+import pl.planzy.config.IngestProperties;
+import pl.planzy.service.IngestScheduler;
 
 @SpringBootApplication
 public class PlanzyApplication implements CommandLineRunner {
 
-    private final ScrapperService scrapperService;
-    private EventIntegrationService eventIntegrationService;
+    private final IngestScheduler ingestScheduler;
+    private final IngestProperties ingestProperties;
 
     @Autowired
-    public PlanzyApplication(ScrapperService scrapperService, EventIntegrationService eventIntegrationService) {
-        this.scrapperService = scrapperService;
-        this.eventIntegrationService = eventIntegrationService;
+    public PlanzyApplication(IngestScheduler ingestScheduler,
+                             IngestProperties ingestProperties) {
+        this.ingestScheduler = ingestScheduler;
+        this.ingestProperties = ingestProperties;
     }
 
     public static void main(String[] args) {
@@ -25,6 +26,8 @@ public class PlanzyApplication implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
-        eventIntegrationService.processScrapedEvents(scrapperService.scrapeAndMergeData());
+        if (ingestProperties.getSchedule().isRunOnStartup()) {
+            ingestScheduler.runAll();
+        }
     }
 }
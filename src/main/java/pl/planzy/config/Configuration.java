@@ -1,17 +1,88 @@
 package pl.planzy.config;
 
-import com.microsoft.playwright.Playwright;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import pl.planzy.util.StringPool;
 
-@org.springframework.context.annotation.Configuration
+import java.net.http.HttpClient;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
+@org.springframework.context.annotation.Configuration
+@EnableConfigurationProperties({IngestProperties.class, ScraperProperties.class})
 public class Configuration {
 
+    /**
+     * HTTP client shared by the scrapers, so connections are pooled and HTTP/2 streams multiplexed across
+     * requests and runs. Responses are handled on virtual threads, blocking parsers cost no platform thread.
+     */
+    @Bean(name = "scraperHttpClient")
+    public HttpClient scraperHttpClient(ScraperProperties properties) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(properties.getHttp().getConnectTimeout())
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * Replaces reflective getter and setter calls of Jackson's bean (de)serializers with generated
+     * lambdas, which pays off when scraped pages are bound into POJOs. Registered into the
+     * application's {@code ObjectMapper} by Spring Boot.
+     */
     @Bean
-    public Playwright getPlaywright() {
-        return Playwright.create();
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    /**
+     * Threads of the ingest scheduler, one per source being ingested on schedule.
+     */
+    @Bean(name = "ingestTaskScheduler")
+    public TaskScheduler ingestTaskScheduler(IngestProperties properties) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, properties.getSchedule().getThreads()));
+        scheduler.setThreadNamePrefix("Ingest-Scheduler-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    /**
+     * Threads mapping large scraped pages into events, shared by all mappers.
+     */
+    @Bean(name = "mappingPool", destroyMethod = "shutdown")
+    public ForkJoinPool mappingPool(ScraperProperties properties) {
+        int parallelism = properties.getMapping().getParallelism();
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Canonical strings of mapped events, shared by all mappers.
+     */
+    @Bean(name = "mappingStringPool")
+    public StringPool mappingStringPool(ScraperProperties properties, MeterRegistry meterRegistry) {
+        StringPool pool = new StringPool("mapping", properties.getMapping().getStringPoolSize());
+
+        FunctionCounter.builder("planzy.mapping.strings.lookups", pool, StringPool::lookups)
+                .tag("pool", pool.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("planzy.mapping.strings.deduplicated", pool, StringPool::hits)
+                .tag("pool", pool.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("planzy.mapping.strings.bytes.saved", pool, StringPool::bytesSaved)
+                .tag("pool", pool.getName())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        return pool;
     }
 
     @Bean(name = "customTaskExecutor")
@@ -0,0 +1,66 @@
+package pl.planzy.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Moves the entity tables from identity columns to the pooled sequences declared on the entities.
+ * <p>
+ * Hibernate creates the sequences starting at 1 during the schema update, so before any insert runs
+ * every sequence is moved past the highest existing ID of its table. Existing IDs are kept as they are,
+ * the identity default is dropped so no row can get an ID from the old identity sequence anymore.
+ * The migration is idempotent and runs on every startup.
+ */
+@Component
+public class IdSequenceMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdSequenceMigration.class);
+
+    private static final Map<String, String> SEQUENCES_BY_TABLE = new LinkedHashMap<>();
+
+    static {
+        SEQUENCES_BY_TABLE.put("events", "event_seq");
+        SEQUENCES_BY_TABLE.put("places", "place_seq");
+        SEQUENCES_BY_TABLE.put("artists", "artist_seq");
+        SEQUENCES_BY_TABLE.put("tags", "tag_seq");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * The entity manager factory is injected only to make sure the Hibernate schema update has finished.
+     */
+    public IdSequenceMigration(EntityManagerFactory entityManagerFactory,
+                               JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        transactionTemplate.executeWithoutResult(status -> SEQUENCES_BY_TABLE.forEach(this::migrateTable));
+    }
+
+    private void migrateTable(String table, String sequence) {
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+
+        // With the pooled optimizer the next nextval() reserves [value + 1, value + increment]
+        Long value = jdbcTemplate.queryForObject(
+                "SELECT setval('" + sequence + "', GREATEST(" +
+                        "(SELECT COALESCE(MAX(id), 0) FROM " + table + "), " +
+                        "(SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM " + sequence + "), 1))",
+                Long.class);
+
+        logger.info("[{}] Sequence [{}] of table [{}] positioned at [{}]", getClass().getSimpleName(), sequence, table, value);
+    }
+}
@@ -0,0 +1,139 @@
+package pl.planzy.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tuning of the ingestion of scraped events, bound from {@code planzy.ingest.*}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "planzy.ingest")
+public class IngestProperties {
+
+    /**
+     * How scraped events are ingested: in chunks after scraping, streamed while scraping,
+     * or as a full reload through staging tables after scraping.
+     */
+    private Mode mode = Mode.BATCH;
+
+    /**
+     * Number of mapped events written per chunk.
+     */
+    private int chunkSize = 500;
+
+    /**
+     * Number of parallel writers, events are partitioned between them by URL. Each writer holds a pooled
+     * connection while writing, so keep this below the connection pool size.
+     */
+    private int writers = 1;
+
+    private final Dictionary dictionary = new Dictionary();
+    private final UrlIndex urlIndex = new UrlIndex();
+    private final Pipeline pipeline = new Pipeline();
+    private final Schedule schedule = new Schedule();
+
+    public enum Mode {
+        BATCH,
+        PIPELINED,
+        FULL_RELOAD
+    }
+
+    @Getter
+    @Setter
+    public static class Dictionary {
+
+        /**
+         * Maximum number of names kept per dictionary (places, artists, tags) before entries are evicted.
+         */
+        private int maxSize = 200_000;
+    }
+
+    @Getter
+    @Setter
+    public static class UrlIndex {
+
+        /**
+         * Whether lookups go through a Bloom filter before the fingerprint set.
+         */
+        private boolean bloomFilter = false;
+
+        /**
+         * Number of URLs the Bloom filter is sized for.
+         */
+        private long expectedUrls = 5_000_000;
+
+        /**
+         * False positive rate of the Bloom filter at the expected number of URLs.
+         */
+        private double falsePositiveRate = 0.01;
+
+        /**
+         * Whether URLs whose fingerprint is already known are confirmed against the database,
+         * which guards against skipping a new event because of a fingerprint collision.
+         */
+        private boolean verifyHits = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Pipeline {
+
+        /**
+         * Maximum number of mapped pages waiting for the writer, scrapers block once it is reached.
+         */
+        private int queueCapacity = 16;
+    }
+
+    @Getter
+    @Setter
+    public static class Schedule {
+
+        /**
+         * Whether all sources are ingested once while the application starts.
+         */
+        private boolean runOnStartup = true;
+
+        /**
+         * Whether sources are ingested again periodically while the application runs.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Time from the end of one run of a source to the start of the next, for sources without their own schedule.
+         */
+        private Duration interval = Duration.ofHours(6);
+
+        /**
+         * Upper bound of the random delay added to every scheduled start, so sources do not start in lockstep.
+         */
+        private Duration jitter = Duration.ofMinutes(5);
+
+        /**
+         * Number of sources ingested by the scheduler at the same time.
+         */
+        private int threads = 2;
+
+        /**
+         * Schedules of single sources, keyed by source name, e.g. {@code eBilet}.
+         */
+        private Map<String, SourceSchedule> sources = new HashMap<>();
+    }
+
+    @Getter
+    @Setter
+    public static class SourceSchedule {
+
+        /**
+         * Cron expression of the runs, takes precedence over the interval.
+         */
+        private String cron;
+
+        private Duration interval;
+    }
+}
@@ -0,0 +1,76 @@
+package pl.planzy.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import pl.planzy.scrappers.mapper.EventMapper;
+import pl.planzy.scrappers.mapper.spec.ExtractionPlan;
+import pl.planzy.scrappers.mapper.spec.MappingSpec;
+import pl.planzy.scrappers.mapper.spec.SpecEventMapper;
+import pl.planzy.scrappers.model.EbiletTitle;
+import pl.planzy.scrappers.model.GoingAppHit;
+import pl.planzy.util.StringPool;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Mappers of the {@code spec} mapping engine, replacing the hand-written ones under the same bean names.
+ * Specs are compiled at startup, a spec that does not fit its record type fails the startup.
+ * <p>
+ * The specs map records into the same events as the hand-written mappers, except where those carry a
+ * missing value into the event:
+ * <ul>
+ *     <li>an eBilet title without link and subcategory is skipped, instead of linked to a {@code /null/} URL,</li>
+ *     <li>a GoingApp hit whose first location is null gets the default location instead of none,</li>
+ *     <li>null artists and tags are dropped, as persistence drops them from the hand-written mappers' events.</li>
+ * </ul>
+ */
+@org.springframework.context.annotation.Configuration
+@ConditionalOnProperty(prefix = "planzy.scraper.mapping", name = "engine", havingValue = "spec")
+public class MappingSpecConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingSpecConfiguration.class);
+
+    private final ObjectMapper objectMapper;
+    private final ResourceLoader resourceLoader;
+    private final ForkJoinPool mappingPool;
+    private final StringPool stringPool;
+    private final ScraperProperties properties;
+
+    public MappingSpecConfiguration(ObjectMapper objectMapper,
+                                    ResourceLoader resourceLoader,
+                                    @Qualifier("mappingPool") ForkJoinPool mappingPool,
+                                    @Qualifier("mappingStringPool") StringPool stringPool,
+                                    ScraperProperties properties) {
+        this.objectMapper = objectMapper;
+        this.resourceLoader = resourceLoader;
+        this.mappingPool = mappingPool;
+        this.stringPool = stringPool;
+        this.properties = properties;
+    }
+
+    @Bean(name = "eventMapperEbilet")
+    public EventMapper<EbiletTitle> eventMapperEbilet() {
+        return specMapper("ebilet.json", EbiletTitle.class);
+    }
+
+    @Bean(name = "eventMapperGoingApp")
+    public EventMapper<GoingAppHit> eventMapperGoingApp() {
+        return specMapper("goingapp.json", GoingAppHit.class);
+    }
+
+    private <T> EventMapper<T> specMapper(String file, Class<T> recordType) {
+        Resource resource = resourceLoader.getResource(properties.getMapping().getSpecLocation() + file);
+        MappingSpec spec = MappingSpec.load(objectMapper, resource);
+        ExtractionPlan<T> plan = ExtractionPlan.compile(objectMapper, spec, recordType);
+
+        logger.info("[{}] Compiled mapping spec [{}] of [{}] for [{}]", MappingSpecConfiguration.class.getSimpleName(), resource.getDescription(),
+                spec.getSource().getSourceName(), recordType.getSimpleName());
+        return new SpecEventMapper<>(plan, mappingPool, stringPool, properties);
+    }
+}
@@ -0,0 +1,327 @@
+package pl.planzy.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tuning of the scrapers and their HTTP client, bound from {@code planzy.scraper.*}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "planzy.scraper")
+public class ScraperProperties {
+
+    private final Http http = new Http();
+    private final Cache cache = new Cache();
+    private final Fixture fixture = new Fixture();
+    private final Browser browser = new Browser();
+    private final Ebilet ebilet = new Ebilet();
+    private final GoingApp goingApp = new GoingApp();
+    private final Mapping mapping = new Mapping();
+
+    /**
+     * Adaptive rate limit and retries of the HTTP requests of every scraper without its own entry in {@link #rateLimits}.
+     */
+    private final RateLimit rateLimit = new RateLimit();
+
+    /**
+     * Rate limits of single scrapers, keyed by scraper bean name, e.g. {@code scrapperEbilet}.
+     */
+    private Map<String, RateLimit> rateLimits = new HashMap<>();
+
+    public RateLimit rateLimitOf(String scrapperBean) {
+        return rateLimits.getOrDefault(scrapperBean, rateLimit);
+    }
+
+    @Getter
+    @Setter
+    public static class Http {
+
+        /**
+         * Timeout for establishing a connection of the shared HTTP client.
+         */
+        private Duration connectTimeout = Duration.ofSeconds(10);
+
+        /**
+         * Timeout of a single request, until the response headers arrive.
+         */
+        private Duration requestTimeout = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class RateLimit {
+
+        /**
+         * Number of concurrent requests allowed before any response was seen.
+         */
+        private int initialLimit = 2;
+
+        private int minLimit = 1;
+
+        /**
+         * Upper bound of the concurrent requests, the scraper's own {@code max-in-flight} still applies.
+         */
+        private int maxLimit = 16;
+
+        /**
+         * Responses slower than this count as a sign of overload, like a 429 or 5xx status.
+         */
+        private Duration latencyThreshold = Duration.ofSeconds(5);
+
+        /**
+         * Factor the limit is multiplied by on overload.
+         */
+        private double backoffRatio = 0.7;
+
+        /**
+         * Attempts of a request, including the first one.
+         */
+        private int maxAttempts = 4;
+
+        /**
+         * Ceiling of the first retry's delay, doubled with every further attempt. Delays are drawn at random below the ceiling.
+         */
+        private Duration baseDelay = Duration.ofMillis(500);
+
+        private Duration maxDelay = Duration.ofSeconds(30);
+
+        /**
+         * Retries earned by every first attempt, so retries stay a bounded share of the traffic.
+         */
+        private double retryRatio = 0.2;
+
+        /**
+         * Retries that can be banked, and the number available at start.
+         */
+        private int retryBurst = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+
+        /**
+         * Whether listing pages unchanged since the previous complete run are skipped. Their events are
+         * then not handed to ingestion at all, so keep this off for full reloads into an empty database.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory holding one file of response validators per source.
+         */
+        private String directory = "cache/http";
+    }
+
+    @Getter
+    @Setter
+    public static class Mapping {
+
+        /**
+         * Whether large pages are mapped on the mapping pool instead of the scraper's thread.
+         */
+        private boolean parallel = true;
+
+        /**
+         * Smallest number of records mapped in parallel, smaller pages are mapped on the calling thread.
+         */
+        private int parallelThreshold = 2000;
+
+        /**
+         * Threads of the mapping pool, 0 for one per available processor.
+         */
+        private int parallelism = 0;
+
+        /**
+         * Failed records described in the error summary of a mapping run.
+         */
+        private int errorSamples = 5;
+
+        /**
+         * Slots of the pool that repeated names, places, categories and tags of mapped events share their
+         * strings through. Each slot holds the last value hashed to it, so this bounds the number of
+         * distinct values deduplicated at a time.
+         */
+        private int stringPoolSize = 16384;
+
+        /**
+         * Whether events are mapped by the hand-written mappers or by the mapping specs of the sources.
+         */
+        private Engine engine = Engine.CODE;
+
+        /**
+         * Location of the mapping specs, one {@code <source>.json} each, used by the {@code spec} engine.
+         */
+        private String specLocation = "classpath:mapping/";
+
+        public enum Engine {
+            CODE,
+            SPEC
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Fixture {
+
+        /**
+         * Whether scraper responses come from the network, come from the network and are recorded into
+         * the archive, or are served from the archive without any network access.
+         */
+        private Mode mode = Mode.OFF;
+
+        /**
+         * Directory holding one gzip compressed archive per source.
+         */
+        private String directory = "fixtures";
+
+        /**
+         * Replay speed relative to the recorded response times, 0 serves responses without delay.
+         */
+        private double speed = 1.0;
+
+        /**
+         * Copies of every recorded item served on replay. All copies but the first get a suffix on their
+         * {@link #variedFields}, so they map to distinct event URLs.
+         */
+        private int scale = 1;
+
+        /**
+         * Item fields the event URL is built from.
+         */
+        private List<String> variedFields = new ArrayList<>(List.of("slug", "linkTo", "objectID"));
+
+        public enum Mode {
+            OFF,
+            RECORD,
+            REPLAY
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Browser {
+
+        /**
+         * Number of browsers kept running, and so the number of pages open at the same time.
+         */
+        private int poolSize = 1;
+
+        private boolean headless = true;
+
+        /**
+         * Number of pages opened in a browser context before it is replaced by a fresh one.
+         */
+        private int pagesPerContext = 20;
+
+        /**
+         * Playwright resource types aborted before they are requested.
+         */
+        private List<String> blockedResourceTypes = new ArrayList<>(List.of("image", "font", "media"));
+
+        /**
+         * Hosts, including their subdomains, whose requests are aborted.
+         */
+        private List<String> blockedHosts = new ArrayList<>(List.of(
+                "google-analytics.com", "googletagmanager.com", "doubleclick.net", "facebook.net",
+                "hotjar.com", "clarity.ms", "tiktok.com", "criteo.com"));
+    }
+
+    @Getter
+    @Setter
+    public static class Ebilet {
+
+        /**
+         * Listing endpoint, pages are requested with {@code top} and {@code size} parameters.
+         */
+        private String baseUrl = "https://www.ebilet.pl/api/TitleListing/Search";
+
+        /**
+         * Number of titles requested per page.
+         */
+        private int pageSize = 20;
+
+        /**
+         * Number of pages requested ahead of the page being consumed.
+         */
+        private int maxInFlight = 4;
+    }
+
+    @Getter
+    @Setter
+    public static class GoingApp {
+
+        /**
+         * How GoingApp is scraped: by clicking through the search page in the browser, or by replaying
+         * its Algolia search over HTTP, falling back to the browser when that fails before delivering anything.
+         * Recording or replaying fixtures always replays the Algolia search, without fallback.
+         */
+        private Mode mode = Mode.BROWSER;
+
+        /**
+         * Search page opened in the browser, both for scraping and for capturing the Algolia request.
+         */
+        private String searchUrl = "https://goingapp.pl/szukaj?refinementList%5Btype%5D%5B0%5D=rundate&refinementList%5Btype%5D%5B1%5D=activity";
+
+        /**
+         * Maximum number of records scraped in the browser, 0 for no limit.
+         */
+        private int maxRecords = 100;
+
+        /**
+         * How long the browser waits for the Algolia response of the initial load or a "Load More" click.
+         */
+        private Duration responseTimeout = Duration.ofSeconds(15);
+
+        /**
+         * Number of "Load More" clicks tried before the browser gives up on further pages.
+         */
+        private int clickAttempts = 3;
+
+        private final Algolia algolia = new Algolia();
+
+        public enum Mode {
+            REPLAY,
+            BROWSER
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Algolia {
+
+        /**
+         * Multi-query endpoint, for example {@code https://<app>-dsn.algolia.net/1/indexes/*}{@code /queries}.
+         * When empty, the request sent by the search page is captured once in the browser and reused.
+         */
+        private String url;
+
+        private String applicationId;
+
+        private String apiKey;
+
+        private String indexName;
+
+        /**
+         * Search parameters in Algolia's URL-encoded form, paging parameters are added per request.
+         */
+        private String params;
+
+        /**
+         * Number of hits requested per page.
+         */
+        private int hitsPerPage = 1000;
+
+        /**
+         * Number of pages requested ahead of the page being consumed.
+         */
+        private int maxInFlight = 4;
+    }
+}
@@ -1,4 +0,0 @@
-package pl.planzy.dto;
-
-public class EventDto {
-}
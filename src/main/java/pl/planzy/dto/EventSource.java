@@ -0,0 +1,22 @@
+package pl.planzy.dto;
+
+/**
+ * Sources events are scraped from.
+ */
+public enum EventSource {
+    EBILET("eBilet"),
+    GOING_APP("GoingApp");
+
+    private final String sourceName;
+
+    EventSource(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    /**
+     * Name stored in the "source" column of the events and used for checkpoints.
+     */
+    public String getSourceName() {
+        return sourceName;
+    }
+}
@@ -0,0 +1,60 @@
+package pl.planzy.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Event as mapped from a source, the contract between the event mappers and persistence.
+ * <p>
+ * Dates are epoch seconds, {@link #NO_DATE} when the source has none. Artists and tags are split by
+ * the mapper, persistence trims the names and ignores empty ones. Text fields are null when missing.
+ * <p>
+ * Mappers pass repeated values through a string pool, so events of one run share them, and keep the
+ * thumbnail as a prefix shared by the source plus the path of the event, joined only when it is read.
+ */
+@Value
+@Builder
+public class ScrapedEvent {
+
+    /**
+     * Start or end date of an event whose source does not state it.
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final String[] NO_NAMES = new String[0];
+
+    String name;
+    long startDate;
+    long endDate;
+
+    /**
+     * Prefix of the thumbnail URL shared by all events of the source, null when the path is the whole URL.
+     */
+    String thumbnailBase;
+    String thumbnailPath;
+
+    String url;
+    String location;
+    String place;
+    String category;
+    String description;
+    EventSource source;
+
+    @Builder.Default
+    String[] artists = NO_NAMES;
+
+    @Builder.Default
+    String[] tags = NO_NAMES;
+
+    public String getThumbnail() {
+        return thumbnailBase == null ? thumbnailPath : thumbnailBase + thumbnailPath;
+    }
+
+    public boolean hasStartDate() {
+        return startDate != NO_DATE;
+    }
+
+    public boolean hasEndDate() {
+        return endDate != NO_DATE;
+    }
+}
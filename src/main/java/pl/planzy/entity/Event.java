@@ -21,7 +21,8 @@ import java.util.Set;
 public class Event {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "event_seq")
+    @SequenceGenerator(name = "event_seq", sequenceName = "event_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "event_name", nullable = false, length = 500)
@@ -51,6 +52,10 @@ public class Event {
     @Column(name = "source", nullable = false, length = 500)
     private String source;
 
+    // Fingerprint of the mapped fields, NULL for events stored before it was introduced
+    @Column(name = "content_hash")
+    private Long content_hash;
+
     @ManyToMany(fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinTable(
             name = "event_artists",
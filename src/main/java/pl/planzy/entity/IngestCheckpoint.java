@@ -0,0 +1,77 @@
+package pl.planzy.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+
+@Entity
+@Table(name = "ingest_checkpoints", indexes = {
+        @Index(name = "idx_ingest_checkpoint_source_run", columnList = "source, run_id", unique = true)
+})
+public class IngestCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ingest_checkpoint_seq")
+    @SequenceGenerator(name = "ingest_checkpoint_seq", sequenceName = "ingest_checkpoint_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "source", nullable = false, length = 100)
+    private String source;
+
+    @Column(name = "run_id", nullable = false, length = 36)
+    private String runId;
+
+    /**
+     * Number of the source's scraped events, in scrape order, that are committed.
+     */
+    @Column(name = "last_offset", nullable = false)
+    private long lastOffset;
+
+    /**
+     * Scraper cursor resuming right after the page that ended at {@link #cursorOffset}, null if the source
+     * delivered no cursor. Resuming from it skips fetching the pages before, not only writing them.
+     */
+    @Column(name = "resume_cursor", length = 1000)
+    private String resumeCursor;
+
+    /**
+     * Number of the source's scraped events up to the page of {@link #resumeCursor}.
+     */
+    @Column(name = "cursor_offset")
+    private Long cursorOffset;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public enum Status {
+        RUNNING,
+        COMPLETED
+    }
+
+    @Override
+    public String toString() {
+        return "IngestCheckpoint{" +
+                "source='" + source + '\'' +
+                ", runId='" + runId + '\'' +
+                ", lastOffset=" + lastOffset +
+                ", resumeCursor='" + resumeCursor + '\'' +
+                ", status=" + status +
+                '}';
+    }
+}
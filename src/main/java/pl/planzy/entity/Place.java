@@ -22,7 +22,8 @@ import java.util.Objects;
 public class Place {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "place_seq")
+    @SequenceGenerator(name = "place_seq", sequenceName = "place_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "place_name", nullable = false)
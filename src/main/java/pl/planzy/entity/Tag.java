@@ -22,7 +22,8 @@ import java.util.Set;
 public class Tag {
 
         @Id
-        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tag_seq")
+        @SequenceGenerator(name = "tag_seq", sequenceName = "tag_seq", allocationSize = 50)
         private Long id;
 
         @Column(name = "tag_name", nullable = false)
@@ -0,0 +1,26 @@
+package pl.planzy.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pl.planzy.entity.IngestCheckpoint;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface IngestCheckpointRepository extends JpaRepository<IngestCheckpoint, Long> {
+
+    Optional<IngestCheckpoint> findFirstBySourceOrderByStartedAtDesc(String source);
+
+    /**
+     * Moves the checkpoint forward, an offset at or below the stored one leaves it as it is.
+     *
+     * @return Number of updated rows, 0 if the stored offset was already further
+     */
+    @Modifying
+    @Query("UPDATE IngestCheckpoint c SET c.lastOffset = :offset, c.resumeCursor = :cursor, c.cursorOffset = :cursorOffset, " +
+            "c.updatedAt = :updatedAt WHERE c.id = :id AND c.lastOffset < :offset")
+    int updateOffset(@Param("id") Long id, @Param("offset") long offset, @Param("cursor") String cursor,
+                     @Param("cursorOffset") Long cursorOffset, @Param("updatedAt") LocalDateTime updatedAt);
+}
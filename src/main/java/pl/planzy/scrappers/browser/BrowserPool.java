@@ -0,0 +1,189 @@
+package pl.planzy.scrappers.browser;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.Request;
+import com.microsoft.playwright.Route;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pl.planzy.config.ScraperProperties;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Headless browsers shared by the Playwright based scrapers.
+ * <p>
+ * The pool holds a fixed number of slots, each with its own Playwright driver and Chromium, started
+ * on first use and kept for the lifetime of the application. Pages are opened in a browser context
+ * that is reused for {@code pages-per-context} pages and then replaced, which keeps cookies, cache and
+ * leaked memory from piling up. Every context routes requests through a filter that aborts images,
+ * fonts, media and known analytics hosts before they hit the network.
+ * <p>
+ * Playwright objects are not thread-safe: a slot is used by one borrower at a time, and handing it
+ * over through the pool's queue orders all calls made on it.
+ */
+@Component
+public class BrowserPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(BrowserPool.class);
+
+    private final ScraperProperties.Browser config;
+    private final Set<String> blockedResourceTypes;
+    private final Set<String> blockedHosts;
+    private final BlockingQueue<Slot> available;
+    private final List<Slot> slots = new ArrayList<>();
+
+    @Autowired
+    public BrowserPool(ScraperProperties properties) {
+        this.config = properties.getBrowser();
+        this.blockedResourceTypes = normalize(config.getBlockedResourceTypes());
+        this.blockedHosts = normalize(config.getBlockedHosts());
+
+        int size = Math.max(1, config.getPoolSize());
+        this.available = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            Slot slot = new Slot(i);
+            slots.add(slot);
+            available.add(slot);
+        }
+    }
+
+    /**
+     * Work done with a pooled page.
+     */
+    @FunctionalInterface
+    public interface PageTask<T> {
+        T run(Page page) throws Exception;
+    }
+
+    /**
+     * Runs the task with a fresh page of a pooled browser, waiting for a free browser if all are in use.
+     * The page is closed afterwards; a failed task also discards its context.
+     */
+    public <T> T withPage(PageTask<T> task) throws Exception {
+        Slot slot = available.take();
+        try {
+            Page page = slot.newPage();
+            try {
+                return task.run(page);
+            } catch (Exception e) {
+                slot.discardContext();
+                throw e;
+            } finally {
+                if (!page.isClosed()) {
+                    page.close();
+                }
+            }
+        } finally {
+            available.add(slot);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Slot slot : slots) {
+            slot.close();
+        }
+    }
+
+    private void route(Route route) {
+        Request request = route.request();
+        if (blockedResourceTypes.contains(request.resourceType()) || isBlockedHost(request.url())) {
+            route.abort();
+        } else {
+            route.resume();
+        }
+    }
+
+    private boolean isBlockedHost(String url) {
+        String host = URI.create(url).getHost();
+        if (host == null) {
+            return false;
+        }
+        for (String blocked : blockedHosts) {
+            if (host.equals(blocked) || host.endsWith("." + blocked)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> normalize(List<String> values) {
+        return values.stream()
+                .map(value -> value.trim().toLowerCase(Locale.ROOT))
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private final class Slot {
+
+        private final int index;
+        private Playwright playwright;
+        private Browser browser;
+        private BrowserContext context;
+        private int contextPages;
+
+        private Slot(int index) {
+            this.index = index;
+        }
+
+        private Page newPage() {
+            if (browser == null || !browser.isConnected()) {
+                close();
+                long started = System.currentTimeMillis();
+                playwright = Playwright.create();
+                browser = playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(config.isHeadless()));
+                logger.info("[{}] Browser [{}] started in {} ms", BrowserPool.class.getSimpleName(), index, System.currentTimeMillis() - started);
+            }
+
+            if (context != null && contextPages >= config.getPagesPerContext()) {
+                discardContext();
+            }
+            if (context == null) {
+                context = browser.newContext();
+                context.route("**/*", BrowserPool.this::route);
+                contextPages = 0;
+            }
+
+            contextPages++;
+            return context.newPage();
+        }
+
+        private void discardContext() {
+            if (context != null) {
+                try {
+                    context.close();
+                } catch (RuntimeException e) {
+                    logger.warn("[{}] Failed to close context of browser [{}]: [{}]", BrowserPool.class.getSimpleName(), index, e.getMessage());
+                }
+                context = null;
+            }
+        }
+
+        private void close() {
+            discardContext();
+            if (playwright != null) {
+                try {
+                    playwright.close();
+                } catch (RuntimeException e) {
+                    logger.warn("[{}] Failed to close browser [{}]: [{}]", BrowserPool.class.getSimpleName(), index, e.getMessage());
+                }
+            }
+            playwright = null;
+            browser = null;
+        }
+    }
+}
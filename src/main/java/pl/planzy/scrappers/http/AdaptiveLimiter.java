@@ -0,0 +1,226 @@
+package pl.planzy.scrappers.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.planzy.config.ScraperProperties;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive concurrency limit and retries for the HTTP requests of one source.
+ * <p>
+ * The limit grows by one per round trip of successful requests while it is fully used, and is
+ * multiplied by {@code backoff-ratio} when the source answers 429 or 5xx, cannot be reached or answers
+ * slower than {@code latency-threshold} (AIMD). Only requests started after the last decrease can
+ * decrease it again, so one burst of failures counts once. Requests above the limit wait in line
+ * without holding a thread.
+ * <p>
+ * Throttled and failed requests are retried after a jittered exponential delay, or after the server's
+ * {@code Retry-After} if that is longer. Retries are paid from a budget that every first attempt adds
+ * {@code retry-ratio} to, so a source that is down gets a bounded share of extra requests instead of
+ * a multiple of its traffic. Other statuses are handed back to the caller as they are.
+ */
+public class AdaptiveLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveLimiter.class);
+
+    private final String source;
+    private final ScraperProperties.RateLimit config;
+    private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong overloads = new AtomicLong();
+    private double limit;
+    private int inFlight;
+    private long lastDecrease;
+    private double retryTokens;
+
+    AdaptiveLimiter(String source, ScraperProperties.RateLimit config) {
+        this.source = source;
+        this.config = config;
+        this.limit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), config.getInitialLimit()));
+        this.lastDecrease = System.nanoTime();
+        this.retryTokens = config.getRetryBurst();
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public synchronized double getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getOverloads() {
+        return overloads.get();
+    }
+
+    /**
+     * Sends the request once a slot is free, retrying it while the source is overloaded or unreachable.
+     *
+     * @return The first response that is not retried, or the last error
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(HttpClient client, HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        synchronized (this) {
+            retryTokens = Math.min(config.getRetryBurst(), retryTokens + config.getRetryRatio());
+        }
+        return attempt(client, request, handler, 1);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> attempt(HttpClient client, HttpRequest request, HttpResponse.BodyHandler<T> handler, int attempt) {
+        return acquire()
+                .thenCompose(ignored -> {
+                    long started = System.nanoTime();
+                    return client.sendAsync(request, handler)
+                            .handle((response, error) -> {
+                                Attempt<T> result = new Attempt<>(response, error);
+                                release(result, started);
+                                return result;
+                            });
+                })
+                .thenCompose(result -> {
+                    Duration delay = retryDelay(result, attempt);
+                    if (delay == null) {
+                        return result.error == null ? CompletableFuture.completedFuture(result.response) : CompletableFuture.failedFuture(result.error);
+                    }
+
+                    discard(result.response);
+                    retries.incrementAndGet();
+                    logger.debug("[{}] Retrying [{}] of [{}] in [{}] ms after attempt [{}]: [{}]", getClass().getSimpleName(),
+                            request.uri(), source, delay.toMillis(), attempt, result.describe());
+                    return CompletableFuture.runAsync(() -> {
+                            }, CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> attempt(client, request, handler, attempt + 1));
+                });
+    }
+
+    private synchronized CompletableFuture<Void> acquire() {
+        if (inFlight < (int) limit) {
+            inFlight++;
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> slot = new CompletableFuture<>();
+        waiting.add(slot);
+        return slot;
+    }
+
+    private void release(Attempt<?> result, long started) {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+
+        synchronized (this) {
+            if (result.isOverload() || System.nanoTime() - started > config.getLatencyThreshold().toNanos()) {
+                if (started - lastDecrease > 0) {
+                    limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+                    lastDecrease = System.nanoTime();
+                    overloads.incrementAndGet();
+                    logger.info("[{}] Limit of [{}] decreased to [{}]: [{}]", getClass().getSimpleName(), source, (int) limit, result.describe());
+                }
+            } else if (inFlight >= (int) limit) {
+                limit = Math.min(config.getMaxLimit(), limit + 1 / limit);
+            }
+
+            inFlight--;
+            while (inFlight < (int) limit && !waiting.isEmpty()) {
+                inFlight++;
+                granted.add(waiting.poll());
+            }
+        }
+
+        // Completing a slot starts its request, outside the lock
+        granted.forEach(slot -> slot.complete(null));
+    }
+
+    /**
+     * Delay before the next attempt, or {@code null} if the result is final.
+     */
+    private Duration retryDelay(Attempt<?> result, int attempt) {
+        // Only overloads are worth another attempt, any other status is the source's answer
+        if (!result.isOverload() || attempt >= config.getMaxAttempts()) {
+            return null;
+        }
+
+        synchronized (this) {
+            if (retryTokens < 1) {
+                logger.warn("[{}] Retry budget of [{}] exhausted, giving up: [{}]", getClass().getSimpleName(), source, result.describe());
+                return null;
+            }
+            retryTokens--;
+        }
+
+        long ceiling = Math.min(config.getMaxDelay().toMillis(), config.getBaseDelay().toMillis() << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+
+        long retryAfter = result.retryAfterMillis();
+        return Duration.ofMillis(Math.min(config.getMaxDelay().toMillis(), Math.max(delay, retryAfter)));
+    }
+
+    private static void discard(HttpResponse<?> response) {
+        if (response != null && response.body() instanceof AutoCloseable body) {
+            try {
+                body.close();
+            } catch (Exception ignored) {
+                // The connection is released either way
+            }
+        }
+    }
+
+    /**
+     * Outcome of one attempt, either a response or an error.
+     */
+    private static final class Attempt<T> {
+
+        private final HttpResponse<T> response;
+        private final Throwable error;
+
+        private Attempt(HttpResponse<T> response, Throwable error) {
+            this.response = response;
+            this.error = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        }
+
+        private boolean isOverload() {
+            return error instanceof IOException || (response != null && (response.statusCode() == 429 || response.statusCode() >= 500));
+        }
+
+        /**
+         * {@code Retry-After} in seconds, dates are not supported.
+         */
+        private long retryAfterMillis() {
+            if (response == null) {
+                return 0;
+            }
+            return response.headers().firstValue("Retry-After")
+                    .map(value -> {
+                        try {
+                            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+                        } catch (NumberFormatException e) {
+                            return 0L;
+                        }
+                    })
+                    .orElse(0L);
+        }
+
+        private String describe() {
+            return error != null ? error.toString() : "HTTP " + response.statusCode();
+        }
+    }
+}
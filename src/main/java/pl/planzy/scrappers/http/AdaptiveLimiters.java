@@ -0,0 +1,57 @@
+package pl.planzy.scrappers.http;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pl.planzy.config.ScraperProperties;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link AdaptiveLimiter} per scraper bean, configured from {@code planzy.scraper.rate-limits.<bean>}
+ * or the shared {@code planzy.scraper.rate-limit}. Limiters live as long as the application, so the
+ * limit learned in one run is where the next run starts.
+ */
+@Component
+public class AdaptiveLimiters {
+
+    private final ScraperProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdaptiveLimiters(ScraperProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param scrapperBean Bean name of the scraper, selects its configuration
+     * @param source       Source name the metrics are tagged with
+     */
+    public AdaptiveLimiter forScrapper(String scrapperBean, String source) {
+        return limiters.computeIfAbsent(scrapperBean, bean -> {
+            AdaptiveLimiter limiter = new AdaptiveLimiter(source, properties.rateLimitOf(bean));
+            registerMetrics(limiter, meterRegistry);
+            return limiter;
+        });
+    }
+
+    private static void registerMetrics(AdaptiveLimiter limiter, MeterRegistry registry) {
+        Gauge.builder("planzy.scraper.limit", limiter, AdaptiveLimiter::getLimit)
+                .tag("source", limiter.getSource())
+                .register(registry);
+        Gauge.builder("planzy.scraper.in.flight", limiter, AdaptiveLimiter::getInFlight)
+                .tag("source", limiter.getSource())
+                .register(registry);
+        FunctionCounter.builder("planzy.scraper.retries", limiter, AdaptiveLimiter::getRetries)
+                .tag("source", limiter.getSource())
+                .register(registry);
+        FunctionCounter.builder("planzy.scraper.overloads", limiter, AdaptiveLimiter::getOverloads)
+                .tag("source", limiter.getSource())
+                .register(registry);
+    }
+}
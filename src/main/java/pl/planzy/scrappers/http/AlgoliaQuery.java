@@ -0,0 +1,94 @@
+package pl.planzy.scrappers.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Search request against an Algolia multi-query endpoint ({@code /1/indexes/*}{@code /queries}),
+ * replayable for any page.
+ * <p>
+ * The query is either configured or captured from the request a site's own search client sends,
+ * in which case the credentials travel along in the captured URL or {@code x-algolia-*} headers.
+ */
+public final class AlgoliaQuery {
+
+    private final URI uri;
+    private final Map<String, String> headers;
+    private final String indexName;
+    private final String params;
+
+    private AlgoliaQuery(URI uri, Map<String, String> headers, String indexName, String params) {
+        this.uri = uri;
+        this.headers = headers;
+        this.indexName = indexName;
+        this.params = params;
+    }
+
+    public static AlgoliaQuery of(String url, String applicationId, String apiKey, String indexName, String params) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (applicationId != null && !applicationId.isEmpty()) {
+            headers.put("X-Algolia-Application-Id", applicationId);
+        }
+        if (apiKey != null && !apiKey.isEmpty()) {
+            headers.put("X-Algolia-API-Key", apiKey);
+        }
+        return new AlgoliaQuery(URI.create(url), headers, indexName, params != null ? params : "");
+    }
+
+    /**
+     * Rebuilds the query from a request captured in the browser, using its first query.
+     */
+    public static AlgoliaQuery captured(String url, Map<String, String> requestHeaders, String postData, ObjectMapper mapper) throws IOException {
+        JsonNode query = mapper.readTree(postData).path("requests").path(0);
+        if (!query.hasNonNull("indexName")) {
+            throw new IOException("Captured Algolia request holds no query: " + postData);
+        }
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        requestHeaders.forEach((name, value) -> {
+            if (name.toLowerCase(Locale.ROOT).startsWith("x-algolia-")) {
+                headers.put(name, value);
+            }
+        });
+        return new AlgoliaQuery(URI.create(url), headers, query.get("indexName").asText(), query.path("params").asText(""));
+    }
+
+    /**
+     * Request of one page, page numbers start at 0.
+     */
+    public HttpRequest.Builder request(ObjectMapper mapper, int page, int hitsPerPage) {
+        ObjectNode body = mapper.createObjectNode();
+        body.putArray("requests").addObject()
+                .put("indexName", indexName)
+                .put("params", withPaging(page, hitsPerPage));
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+        headers.forEach(request::header);
+        return request;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    private String withPaging(int page, int hitsPerPage) {
+        String otherParams = Arrays.stream(params.split("&"))
+                .filter(param -> !param.isEmpty())
+                .filter(param -> !param.startsWith("page=") && !param.startsWith("hitsPerPage="))
+                .collect(Collectors.joining("&"));
+        String paging = "hitsPerPage=" + hitsPerPage + "&page=" + page;
+        return otherParams.isEmpty() ? paging : otherParams + "&" + paging;
+    }
+}
@@ -0,0 +1,35 @@
+package pl.planzy.scrappers.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compressed transfer for the JDK {@link java.net.http.HttpClient}, which neither asks for nor
+ * decodes compressed bodies on its own.
+ */
+public final class CompressedBodies {
+
+    private CompressedBodies() {
+    }
+
+    /**
+     * Asks the server for a gzip compressed body.
+     */
+    public static HttpRequest.Builder acceptGzip(HttpRequest.Builder request) {
+        return request.header("Accept-Encoding", "gzip");
+    }
+
+    /**
+     * Body of the response, decompressed when the server sent it gzip compressed.
+     */
+    public static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        boolean gzip = response.headers()
+                .firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        return gzip ? new GZIPInputStream(response.body()) : response.body();
+    }
+}
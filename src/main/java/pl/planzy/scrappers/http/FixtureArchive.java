@@ -0,0 +1,415 @@
+package pl.planzy.scrappers.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import pl.planzy.config.ScraperProperties;
+
+import javax.net.ssl.SSLSession;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sends the listing requests of the scrapers, recording their responses into a local archive or
+ * serving them back from it, for reproducible ingest runs without network access.
+ * <p>
+ * Every source has one gzip compressed archive of JSON lines, one line per response: the key the
+ * scraper identifies the page with, the status, the response time, the decoded body and the path of
+ * the item array in it. Every scrape of a source records into a temporary file of its own, which
+ * replaces the archive of the source only once the scrape completed, so a second record run starts
+ * the archive over and a failed or interrupted scrape keeps the previous one.
+ * <p>
+ * On replay responses are served from memory after their recorded response time divided by
+ * {@code speed}, headers and validators are not replayed. With a {@code scale} above 1 every item is
+ * served {@code scale} times, the copies with a suffix on their URL fields, so a page holds
+ * {@code scale} times its recorded items; scrapers that end on a short page compare against
+ * {@link #pageScale()}. Scaled bodies are built when the archive is loaded, not per response.
+ */
+@Component
+public class FixtureArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(FixtureArchive.class);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final ScraperProperties.Fixture config;
+    private final Map<String, Recording> recordings = new HashMap<>();
+    private final Map<String, Map<String, Fixture>> replays = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FixtureArchive(@Qualifier("scraperHttpClient") HttpClient httpClient, ObjectMapper objectMapper, ScraperProperties properties) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.config = properties.getFixture();
+    }
+
+    public boolean isReplaying() {
+        return config.getMode() == ScraperProperties.Fixture.Mode.REPLAY;
+    }
+
+    public boolean isRecording() {
+        return config.getMode() == ScraperProperties.Fixture.Mode.RECORD;
+    }
+
+    /**
+     * Factor the item count of every replayed page is multiplied by.
+     */
+    public int pageScale() {
+        return isReplaying() ? Math.max(1, config.getScale()) : 1;
+    }
+
+    /**
+     * Starts recording the responses of one scrape of the source, a no-op unless recording. Close the
+     * recording when the scrape ends, it replaces the archive of the source only if it was completed.
+     */
+    public synchronized Recording startRecording(String source) {
+        if (config.getMode() != ScraperProperties.Fixture.Mode.RECORD) {
+            return new Recording(source, null, null);
+        }
+
+        Path file = fileOf(source);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8);
+            Recording recording = new Recording(source, temp, writer);
+
+            Recording previous = recordings.put(source, recording);
+            if (previous != null) {
+                previous.close();
+            }
+
+            logger.info("[{}] Recording responses of [{}] for [{}]", getClass().getSimpleName(), source, file.toAbsolutePath());
+            return recording;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start recording of " + source, e);
+        }
+    }
+
+    /**
+     * Sends the request through the limiter, or serves it from the archive when replaying.
+     *
+     * @param key       Identifies the page within the source, stable across runs
+     * @param itemsPath Field names and array indexes leading to the item array of the body
+     */
+    public CompletableFuture<HttpResponse<InputStream>> send(String source, AdaptiveLimiter limiter, HttpRequest request,
+                                                             String key, Object... itemsPath) {
+        return switch (config.getMode()) {
+            case OFF -> limiter.send(httpClient, request, HttpResponse.BodyHandlers.ofInputStream());
+            case RECORD -> record(source, limiter, request, key, itemsPath);
+            case REPLAY -> replay(source, request, key);
+        };
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> record(String source, AdaptiveLimiter limiter, HttpRequest request,
+                                                               String key, Object[] itemsPath) {
+        long started = System.nanoTime();
+
+        return limiter.send(httpClient, request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(response -> {
+                    byte[] body;
+                    try (InputStream decoded = CompressedBodies.decode(response)) {
+                        body = decoded.readAllBytes();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+
+                    // Only complete pages are worth replaying, other statuses are passed on unrecorded
+                    if (response.statusCode() == 200) {
+                        ObjectNode line = objectMapper.createObjectNode()
+                                .put("key", key)
+                                .put("status", response.statusCode())
+                                .put("latencyMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started))
+                                .put("body", new String(body, StandardCharsets.UTF_8));
+                        ArrayNode path = line.putArray("itemsPath");
+                        for (Object step : itemsPath) {
+                            if (step instanceof Integer index) {
+                                path.add(index);
+                            } else {
+                                path.add(step.toString());
+                            }
+                        }
+                        append(source, line);
+                    }
+                    return new FixtureResponse(request, response.statusCode(), body);
+                });
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> replay(String source, HttpRequest request, String key) {
+        Fixture fixture = replays.computeIfAbsent(source, this::load).get(key);
+
+        if (fixture == null) {
+            logger.warn("[{}] No recorded response of [{}] for [{}], answering 404", getClass().getSimpleName(), source, key);
+            return CompletableFuture.completedFuture(new FixtureResponse(request, 404, new byte[0]));
+        }
+
+        long delay = config.getSpeed() > 0 ? (long) (fixture.latencyMillis / config.getSpeed()) : 0;
+        return CompletableFuture.supplyAsync(() -> new FixtureResponse(request, fixture.status, fixture.body),
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+    }
+
+    private synchronized void append(String source, JsonNode line) {
+        // Responses arriving after their scrape ended, e.g. of cancelled requests, belong to no recording
+        Recording recording = recordings.get(source);
+        if (recording == null) {
+            logger.debug("[{}] No recording of [{}] running, dropping response [{}]", getClass().getSimpleName(), source, line.get("key"));
+            return;
+        }
+
+        try {
+            recording.write(line);
+        } catch (IOException e) {
+            logger.error("[{}] Could not record response of [{}]: [{}]", getClass().getSimpleName(), source, e.getMessage());
+        }
+    }
+
+    private Map<String, Fixture> load(String source) {
+        Path file = fileOf(source);
+        if (!Files.exists(file)) {
+            logger.error("[{}] No archive of [{}] at [{}], every request answers 404", getClass().getSimpleName(), source, file.toAbsolutePath());
+            return Collections.emptyMap();
+        }
+
+        Map<String, Fixture> fixtures = new HashMap<>();
+        int scale = pageScale();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JsonNode entry = objectMapper.readTree(line);
+                String body = entry.get("body").asText();
+                byte[] bytes = scale > 1
+                        ? scaled(body, entry.path("itemsPath"), scale)
+                        : body.getBytes(StandardCharsets.UTF_8);
+                fixtures.put(entry.get("key").asText(), new Fixture(entry.get("status").asInt(), entry.get("latencyMillis").asLong(), bytes));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read archive of " + source, e);
+        }
+
+        logger.info("[{}] Replaying [{}] responses of [{}] at speed [{}], scale [{}]", getClass().getSimpleName(),
+                fixtures.size(), source, config.getSpeed(), scale);
+        return fixtures;
+    }
+
+    /**
+     * Body with every item of the item array repeated {@code scale} times, copies with varied URL fields.
+     */
+    private byte[] scaled(String body, JsonNode itemsPath, int scale) throws IOException {
+        JsonNode root = objectMapper.readTree(body);
+        JsonNode items = root;
+        for (JsonNode step : itemsPath) {
+            items = step.isInt() ? items.path(step.asInt()) : items.path(step.asText());
+        }
+
+        if (items instanceof ArrayNode array) {
+            List<JsonNode> originals = new ArrayList<>();
+            array.forEach(originals::add);
+            array.removeAll();
+            for (JsonNode item : originals) {
+                array.add(item);
+                for (int copy = 1; copy < scale; copy++) {
+                    array.add(variant(item, copy));
+                }
+            }
+        }
+        return objectMapper.writeValueAsBytes(root);
+    }
+
+    private JsonNode variant(JsonNode item, int copy) {
+        if (!(item instanceof ObjectNode object)) {
+            return item;
+        }
+        ObjectNode variant = object.deepCopy();
+        for (String field : config.getVariedFields()) {
+            JsonNode value = variant.get(field);
+            if (value != null && value.isValueNode() && !value.isNull()) {
+                variant.put(field, value.asText() + "-fixture" + copy);
+            }
+        }
+        return variant;
+    }
+
+    private Path fileOf(String source) {
+        return Path.of(config.getDirectory()).resolve(source.replaceAll("[^A-Za-z0-9_-]", "_") + ".jsonl.gz");
+    }
+
+    /**
+     * Discards the recordings of scrapes still running at shutdown.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        new ArrayList<>(recordings.values()).forEach(Recording::close);
+    }
+
+    /**
+     * Responses of one scrape of a source, written to a temporary file until the recording is closed.
+     */
+    public final class Recording implements AutoCloseable {
+
+        private final String source;
+        private final Path temp;
+        private Writer writer;
+        private boolean complete;
+        private int responses;
+
+        private Recording(String source, Path temp, Writer writer) {
+            this.source = source;
+            this.temp = temp;
+            this.writer = writer;
+        }
+
+        /**
+         * Marks the scrape as complete, closing the recording then replaces the archive of the source.
+         */
+        public void complete() {
+            synchronized (FixtureArchive.this) {
+                complete = true;
+            }
+        }
+
+        private void write(JsonNode line) throws IOException {
+            writer.write(objectMapper.writeValueAsString(line));
+            writer.write('\n');
+            responses++;
+        }
+
+        /**
+         * Finishes the archive and moves it into place if the recording was completed, discards it otherwise.
+         */
+        @Override
+        public void close() {
+            synchronized (FixtureArchive.this) {
+                if (writer == null) {
+                    return;
+                }
+                recordings.remove(source, this);
+
+                try {
+                    writer.close();
+                    writer = null;
+                    if (complete) {
+                        Path file = fileOf(source);
+                        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        logger.info("[{}] Recorded [{}] responses of [{}] into [{}]", FixtureArchive.class.getSimpleName(),
+                                responses, source, file.toAbsolutePath());
+                        return;
+                    }
+                    logger.warn("[{}] Scrape of [{}] did not complete, discarding its [{}] recorded responses and keeping the previous archive",
+                            FixtureArchive.class.getSimpleName(), source, responses);
+                } catch (IOException e) {
+                    logger.error("[{}] Could not finish archive of [{}]: [{}]", FixtureArchive.class.getSimpleName(), source, e.getMessage());
+                }
+
+                writer = null;
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    logger.warn("[{}] Could not delete [{}]: [{}]", FixtureArchive.class.getSimpleName(), temp, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static final class Fixture {
+
+        private final int status;
+        private final long latencyMillis;
+        private final byte[] body;
+
+        private Fixture(int status, long latencyMillis, byte[] body) {
+            this.status = status;
+            this.latencyMillis = latencyMillis;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Response with a buffered, decoded body and no headers.
+     */
+    private static final class FixtureResponse implements HttpResponse<InputStream> {
+
+        private final HttpRequest request;
+        private final int status;
+        private final InputStream body;
+
+        private FixtureResponse(HttpRequest request, int status, byte[] body) {
+            this.request = request;
+            this.status = status;
+            this.body = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public int statusCode() {
+            return status;
+        }
+
+        @Override
+        public HttpRequest request() {
+            return request;
+        }
+
+        @Override
+        public Optional<HttpResponse<InputStream>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return HttpHeaders.of(Collections.emptyMap(), (name, value) -> true);
+        }
+
+        @Override
+        public InputStream body() {
+            return body;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
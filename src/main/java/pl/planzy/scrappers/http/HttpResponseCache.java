@@ -0,0 +1,209 @@
+package pl.planzy.scrappers.http;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pl.planzy.config.ScraperProperties;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On-disk cache of response validators for scraped pages, one file per source.
+ * <p>
+ * No bodies are stored, only what is needed to recognize an unchanged page: the {@code ETag} and
+ * {@code Last-Modified} headers sent back as {@code If-None-Match} / {@code If-Modified-Since}, and a
+ * SHA-256 of the body for servers that answer every request with a full 200. Along with them the
+ * number of items on the page is kept, so pagination can continue over pages that are never parsed.
+ * <p>
+ * Validators seen during a run are written only by {@link Session#commit()} once the pages of the run
+ * were persisted, an interrupted or failed run leaves the previous state untouched and the next run
+ * fetches everything it missed.
+ * <p>
+ * While {@link FixtureArchive} records or replays, runs get an empty session that is never written:
+ * a recording must hold the full body of every page, not a 304, and a replay must neither skip pages
+ * nor leave validators of its fixtures behind for the live URLs.
+ */
+@Component
+public class HttpResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpResponseCache.class);
+
+    private final ObjectMapper objectMapper;
+    private final ScraperProperties.Cache config;
+    private final ScraperProperties.Fixture fixture;
+
+    @Autowired
+    public HttpResponseCache(ObjectMapper objectMapper, ScraperProperties properties) {
+        this.objectMapper = objectMapper;
+        this.config = properties.getCache();
+        this.fixture = properties.getFixture();
+    }
+
+    /**
+     * Starts a run of the source against the validators committed by its previous run, or against none
+     * if the cache is disabled or fixtures are recorded or replayed.
+     */
+    public Session open(String source) {
+        if (!config.isEnabled() || fixture.getMode() != ScraperProperties.Fixture.Mode.OFF) {
+            return new Session(source, Collections.emptyMap(), false);
+        }
+
+        Path file = fileOf(source);
+        Map<String, Entry> committed = Collections.emptyMap();
+        if (Files.exists(file)) {
+            try {
+                committed = objectMapper.readValue(file.toFile(), new TypeReference<Map<String, Entry>>() {
+                });
+            } catch (IOException e) {
+                logger.warn("[{}] Could not read cache of [{}], fetching everything: [{}]", getClass().getSimpleName(), source, e.getMessage());
+            }
+        }
+        return new Session(source, committed, true);
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private Path fileOf(String source) {
+        return Path.of(config.getDirectory()).resolve(source.replaceAll("[^A-Za-z0-9_-]", "_") + ".json");
+    }
+
+    private void write(String source, Map<String, Entry> entries) {
+        Path file = fileOf(source);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), source, ".tmp");
+            objectMapper.writeValue(temp.toFile(), entries);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("[{}] Could not write cache of [{}]: [{}]", getClass().getSimpleName(), source, e.getMessage());
+        }
+    }
+
+    /**
+     * Cached state of one page.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+
+        private String etag;
+        private String lastModified;
+        private String bodyHash;
+        private int items;
+    }
+
+    /**
+     * Validators of one scraper run, safe to use from concurrent requests.
+     */
+    public class Session {
+
+        private final String source;
+        private final Map<String, Entry> committed;
+        private final Map<String, Entry> seen = new ConcurrentHashMap<>();
+        private final boolean persistent;
+        private final AtomicInteger notModified = new AtomicInteger();
+        private final AtomicInteger sameBody = new AtomicInteger();
+
+        private Session(String source, Map<String, Entry> committed, boolean persistent) {
+            this.source = source;
+            this.committed = committed;
+            this.persistent = persistent;
+        }
+
+        /**
+         * Adds the validators of the previous run to a request of the URL.
+         */
+        public HttpRequest.Builder conditional(HttpRequest.Builder request, String url) {
+            Entry entry = committed.get(url);
+            if (entry != null) {
+                if (entry.etag != null) {
+                    request.header("If-None-Match", entry.etag);
+                }
+                if (entry.lastModified != null) {
+                    request.header("If-Modified-Since", entry.lastModified);
+                }
+            }
+            return request;
+        }
+
+        /**
+         * Handles a {@code 304 Not Modified}.
+         *
+         * @return The cached page, or {@code null} if nothing is cached for the URL
+         */
+        public Entry notModified(String url) {
+            Entry entry = committed.get(url);
+            if (entry != null) {
+                seen.put(url, entry);
+                notModified.incrementAndGet();
+            }
+            return entry;
+        }
+
+        /**
+         * Handles a full response whose body hash matches the cached one.
+         *
+         * @return The cached page with refreshed validators, or {@code null} if the body changed
+         */
+        public Entry sameBody(String url, HttpResponse<?> response, String bodyHash) {
+            Entry entry = committed.get(url);
+            if (entry == null || !bodyHash.equals(entry.bodyHash)) {
+                return null;
+            }
+            Entry refreshed = record(url, response, bodyHash, entry.items);
+            sameBody.incrementAndGet();
+            return refreshed;
+        }
+
+        /**
+         * Remembers the validators of a changed page.
+         */
+        public Entry record(String url, HttpResponse<?> response, String bodyHash, int items) {
+            Entry entry = new Entry(
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null),
+                    bodyHash,
+                    items);
+            seen.put(url, entry);
+            return entry;
+        }
+
+        /**
+         * Stores the validators of this run, replacing those of the previous one. Call only after a complete
+         * run whose pages were all persisted.
+         */
+        public void commit() {
+            logger.info("[{}] [{}] pages of [{}] unchanged: [{}] not modified, [{}] with identical body", HttpResponseCache.class.getSimpleName(),
+                    notModified.get() + sameBody.get(), source, notModified.get(), sameBody.get());
+            if (persistent) {
+                write(source, seen);
+            }
+        }
+    }
+}
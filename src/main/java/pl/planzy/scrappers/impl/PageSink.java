@@ -0,0 +1,18 @@
+package pl.planzy.scrappers.impl;
+
+import java.util.List;
+
+/**
+ * Receives the pages of a scraper as they are fetched, raw or mapped.
+ */
+@FunctionalInterface
+public interface PageSink<T> {
+
+    /**
+     * Takes one page, may block to slow the scraper down.
+     *
+     * @param page   Events of the page, in source order
+     * @param cursor Cursor that resumes scraping right after this page, {@code null} if the scraper cannot resume
+     */
+    void accept(List<T> page, String cursor);
+}
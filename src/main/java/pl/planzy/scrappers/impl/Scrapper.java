@@ -1,13 +1,55 @@
 package pl.planzy.scrappers.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import pl.planzy.scrappers.mapper.EventMapper;
 
+import java.util.ArrayList;
 import java.util.List;
 
-public interface Scrapper {
+/**
+ * Scraper of one source.
+ *
+ * @param <T> Type the source's records are bound into, mapped into events by {@link #getMapper()}
+ */
+public interface Scrapper<T> {
 
-    List<JsonNode> scrapeData();
-    EventMapper getMapper();
+    EventMapper<T> getMapper();
+
+    /**
+     * Name of the source, equal to the "source" field of the events mapped by {@link #getMapper()}.
+     */
+    String getSourceName();
+
+    /**
+     * Scrapes the source page by page, pushing every page to the sink as soon as it is fetched,
+     * together with the cursor that resumes scraping after it. Cursors are opaque strings of at
+     * most 1000 characters that stay valid across application restarts.
+     *
+     * @param cursor Cursor of an earlier page to resume after, {@code null} to start at the beginning
+     */
+    void scrape(String cursor, PageSink<T> sink);
+
+    /**
+     * Number of requests the scraper keeps in flight against its source.
+     */
+    default int preferredConcurrency() {
+        return 1;
+    }
+
+    /**
+     * Called once every page of the scraper's last complete {@link #scrape} was persisted, so state kept
+     * about what the source served, like response validators, is only stored for pages that were written.
+     * Not called after a scrape or ingest that failed, nor after a resumed scrape.
+     */
+    default void persisted() {
+    }
+
+    /**
+     * Scrapes the whole source into memory.
+     */
+    default List<T> scrapeData() {
+        List<T> scrapedData = new ArrayList<>();
+        scrape(null, (page, cursor) -> scrapedData.addAll(page));
+        return scrapedData;
+    }
 
 }
@@ -1,88 +1,237 @@
 package pl.planzy.scrappers.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import pl.planzy.config.ScraperProperties;
+import pl.planzy.dto.EventSource;
+import pl.planzy.scrappers.http.AdaptiveLimiter;
+import pl.planzy.scrappers.http.AdaptiveLimiters;
+import pl.planzy.scrappers.http.CompressedBodies;
+import pl.planzy.scrappers.http.FixtureArchive;
+import pl.planzy.scrappers.http.HttpResponseCache;
 import pl.planzy.scrappers.mapper.EventMapper;
-
+import pl.planzy.scrappers.model.EbiletTitle;
+import pl.planzy.util.JsonArrayStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component("scrapperEbilet")
-public class ScrapperEbilet implements Scrapper {
+public class ScrapperEbilet implements Scrapper<EbiletTitle> {
 
     private static final Logger logger = LoggerFactory.getLogger(ScrapperEbilet.class);
-    private final EventMapper eventMapper;
+    private final EventMapper<EbiletTitle> eventMapper;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final HttpResponseCache responseCache;
+    private final ScraperProperties properties;
+    private final AdaptiveLimiter limiter;
+    private final FixtureArchive fixtureArchive;
+
+    // Validators of the last complete listing, committed once its pages were persisted
+    private final AtomicReference<HttpResponseCache.Session> pendingCache = new AtomicReference<>();
 
     @Autowired
-    public ScrapperEbilet(@Qualifier("eventMapperEbilet") EventMapper eventMapper) {
+    public ScrapperEbilet(@Qualifier("eventMapperEbilet") EventMapper<EbiletTitle> eventMapper,
+                          @Qualifier("scraperHttpClient") HttpClient httpClient,
+                          ObjectMapper objectMapper,
+                          HttpResponseCache responseCache,
+                          ScraperProperties properties,
+                          AdaptiveLimiters limiters,
+                          FixtureArchive fixtureArchive) {
         this.eventMapper = eventMapper;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
+        this.properties = properties;
+        this.limiter = limiters.forScrapper("scrapperEbilet", getSourceName());
+        this.fixtureArchive = fixtureArchive;
     }
 
+    /**
+     * Fetches pages through a sliding window: up to {@code max-in-flight} pages are requested ahead,
+     * and pages are handed to the sink strictly in order as their responses complete. The first
+     * empty page ends the listing, the requests beyond it are cancelled. Requests pass the source's
+     * {@link AdaptiveLimiter}, which may hold them back further and retries throttled or failed pages,
+     * so the listing is only aborted once a page ran out of retries. The failure of that page is thrown
+     * to the caller, after the pages before it were handed to the sink.
+     * <p>
+     * Pages unchanged since the previous complete run, by validators or by body hash, are neither parsed
+     * nor handed to the sink. The cursor is the {@code top} offset of the next page, a resumed run
+     * fetches the listing from there and neither commits the cache nor replaces a recorded fixture archive,
+     * as it saw only part of the listing.
+     * A complete listing commits the cache only in {@link #persisted()}, so pages that were fetched but
+     * never written are fetched again by the next run.
+     */
     @Override
-    public List<JsonNode> scrapeData() {
+    public void scrape(String cursor, PageSink<EbiletTitle> sink) {
 
-        List<JsonNode> scrappedData = new ArrayList<>();
+        ScraperProperties.Ebilet config = properties.getEbilet();
+        int size = config.getPageSize();
+        int window = preferredConcurrency();
 
-        int size = 20;
-        int top = 0;
-        boolean hasNext = true;
+        pendingCache.set(null);
+        HttpResponseCache.Session cache = responseCache.open(getSourceName());
+        Deque<CompletableFuture<FetchedPage>> inFlight = new ArrayDeque<>(window);
+        int fetched = 0;
+        int unchanged = 0;
+        int top = cursor != null ? Integer.parseInt(cursor) : 0;
+        int nextTop = top;
 
-        try {
+        logger.info("[{}] Started fetching data from [{}] with page size [{}] and [{}] pages in flight ...", getClass().getSimpleName(), top, size, window);
 
-            HttpClient client = HttpClient.newHttpClient();
-            ObjectMapper mapper = new ObjectMapper();
+        try (FixtureArchive.Recording recording = fixtureArchive.startRecording(getSourceName())) {
 
-            logger.info("[{}] Started fetching data ...", getClass().getSimpleName());
+            while (true) {
+
+                while (inFlight.size() < window) {
+                    inFlight.add(fetchTitles(cache, config.getBaseUrl(), top, size));
+                    top += size;
+                }
 
-            while (hasNext) {
+                FetchedPage fetchedPage = inFlight.poll().join();
+                nextTop += size;
 
-                String baseUrl = "https://www.ebilet.pl/api/TitleListing/Search";
-                String url = String.format("%s?currentTab=2&sort=1&top=%d&size=%d", baseUrl, top, size);
+                if (fetchedPage.items == 0) {
+                    if (cursor == null) {
+                        pendingCache.set(cache);
+                        recording.complete();
+                    }
+                    break;
+                }
 
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(url))
-                        .build();
+                fetched += fetchedPage.items;
+                if (fetchedPage.titles == null) {
+                    unchanged += fetchedPage.items;
+                    continue;
+                }
 
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                sink.accept(fetchedPage.titles, String.valueOf(nextTop));
+            }
+
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+
+        logger.info("[{}] Finished fetching. Total events fetched: [{}], unchanged: [{}]", getClass().getSimpleName(), fetched, unchanged);
+    }
+
+    @Override
+    public void persisted() {
+        HttpResponseCache.Session cache = pendingCache.getAndSet(null);
+        if (cache != null) {
+            cache.commit();
+        }
+    }
 
-                if (response.statusCode() == 200) {
-                    JsonNode jsonNode = mapper.readTree(response.body());
-                    JsonNode data = jsonNode.get("titles");
+    /**
+     * Requests one page conditionally and binds the elements of its "titles" array on the client's executor.
+     * Unchanged pages are answered from the cache, a full body with a known hash is neither parsed nor bound.
+     */
+    private CompletableFuture<FetchedPage> fetchTitles(HttpResponseCache.Session cache, String baseUrl, int top, int size) {
+
+        String url = String.format("%s?currentTab=2&sort=1&top=%d&size=%d", baseUrl, top, size);
+
+        HttpRequest request = cache.conditional(CompressedBodies.acceptGzip(HttpRequest.newBuilder()), url)
+                .uri(URI.create(url))
+                .timeout(properties.getHttp().getRequestTimeout())
+                .build();
+
+        return fixtureArchive.send(getSourceName(), limiter, request, "top=" + top + "&size=" + size, "titles")
+                .thenApply(response -> {
+                    // Only a full page has a body to decode, a 304 may repeat the Content-Encoding of the cached one
+                    if (response.statusCode() != 200) {
+                        discard(response);
+                        if (response.statusCode() == 304) {
+                            HttpResponseCache.Entry cached = cache.notModified(url);
+                            if (cached == null) {
+                                throw new IllegalStateException("Not modified response without cached page for " + url);
+                            }
+                            return FetchedPage.unchanged(cached.getItems());
+                        }
+                        throw new IllegalStateException("Failed to fetch data with HTTP status code: " + response.statusCode());
+                    }
 
-                    if (data != null && !data.isEmpty()) {
-                        data.forEach(scrappedData::add);
-                        top += size;
-                    } else {
-                        hasNext = false;
+                    try (InputStream body = CompressedBodies.decode(response)) {
+                        // Hash the whole body first, a page identical to the cached one is never bound
+                        byte[] bytes = body.readAllBytes();
+                        String bodyHash = HexFormat.of().formatHex(HttpResponseCache.sha256().digest(bytes));
+                        HttpResponseCache.Entry cached = cache.sameBody(url, response, bodyHash);
+                        if (cached != null) {
+                            return FetchedPage.unchanged(cached.getItems());
+                        }
+
+                        List<EbiletTitle> titles = new ArrayList<>(size);
+                        JsonArrayStreams.forEachElement(objectMapper, new ByteArrayInputStream(bytes), EbiletTitle.class, titles::add, "titles");
+                        cache.record(url, response, bodyHash, titles.size());
+                        return new FetchedPage(titles, titles.size());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
+                });
+    }
 
-                } else {
-                    logger.error("[{}] Failed to fetch data with HTTP status code: [{}]", getClass().getSimpleName(), response.statusCode());
-                    hasNext = false;
-                }
+    private static void discard(HttpResponse<InputStream> response) {
+        try (InputStream body = response.body()) {
+            if (body != null) {
+                body.transferTo(OutputStream.nullOutputStream());
             }
-
-        } catch (Exception e) {
-            logger.error("[{}] An error occurred while scraping data ", getClass().getSimpleName(), e);
+        } catch (IOException e) {
+            logger.debug("[{}] Failed to discard body of response with status [{}]", ScrapperEbilet.class.getSimpleName(), response.statusCode(), e);
         }
+    }
 
-        logger.info("[{}] Finished fetching. Total events fetched: [{}]", getClass().getSimpleName(), scrappedData.size());
+    /**
+     * Fetched page, without titles when it is unchanged since the previous run.
+     */
+    private static final class FetchedPage {
 
-        return scrappedData;
+        private final List<EbiletTitle> titles;
+        private final int items;
+
+        private FetchedPage(List<EbiletTitle> titles, int items) {
+            this.titles = titles;
+            this.items = items;
+        }
+
+        private static FetchedPage unchanged(int items) {
+            return new FetchedPage(null, items);
+        }
     }
 
+    @Override
+    public int preferredConcurrency() {
+        return Math.max(1, properties.getEbilet().getMaxInFlight());
+    }
 
     @Override
-    public EventMapper getMapper() {
+    public EventMapper<EbiletTitle> getMapper() {
         return eventMapper;
     }
-}
\ No newline at end of file
+
+    @Override
+    public String getSourceName() {
+        return EventSource.EBILET.getSourceName();
+    }
+}
@@ -1,6 +1,5 @@
 package pl.planzy.scrappers.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.playwright.*;
 import org.slf4j.Logger;
@@ -8,201 +7,379 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import pl.planzy.config.ScraperProperties;
+import pl.planzy.dto.EventSource;
+import pl.planzy.scrappers.browser.BrowserPool;
+import pl.planzy.scrappers.http.AdaptiveLimiter;
+import pl.planzy.scrappers.http.AdaptiveLimiters;
+import pl.planzy.scrappers.http.AlgoliaQuery;
+import pl.planzy.scrappers.http.CompressedBodies;
+import pl.planzy.scrappers.http.FixtureArchive;
 import pl.planzy.scrappers.mapper.EventMapper;
-
+import pl.planzy.scrappers.model.GoingAppHit;
+import pl.planzy.util.JsonArrayStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 @Component("scrapperGoingApp")
-public class ScrapperGoingApp implements Scrapper {
+public class ScrapperGoingApp implements Scrapper<GoingAppHit> {
 
     private static final Logger logger = LoggerFactory.getLogger(ScrapperGoingApp.class);
+    private static final String ALGOLIA_PATH = "algolia.net/1/indexes/";
+    private static final double CAPTURE_TIMEOUT_MS = 30000;
+    private static final String RECORDS_COUNT_SELECTOR = "#root > main > div.MuiBox-root.css-1kyexf6 > h6";
+    private static final String LOAD_MORE_BUTTON_SELECTOR = ".ais-InfiniteHits-loadMore";
+    private static final String FIXTURE_ALGOLIA_URL = "https://fixture.invalid/1/indexes/*/queries";
+
     private final ObjectMapper mapper;
-    private final EventMapper eventMapper;
+    private final EventMapper<GoingAppHit> eventMapper;
+    private final HttpClient httpClient;
+    private final BrowserPool browserPool;
+    private final ScraperProperties properties;
+    private final AdaptiveLimiter limiter;
+    private final FixtureArchive fixtureArchive;
+
+    // Algolia request captured from the search page, reused until a replay fails
+    private volatile AlgoliaQuery capturedQuery;
 
     @Autowired
-    public ScrapperGoingApp(ObjectMapper mapper, @Qualifier("eventMapperGoingApp") EventMapper eventMapper) {
+    public ScrapperGoingApp(ObjectMapper mapper,
+                            @Qualifier("eventMapperGoingApp") EventMapper<GoingAppHit> eventMapper,
+                            @Qualifier("scraperHttpClient") HttpClient httpClient,
+                            BrowserPool browserPool,
+                            ScraperProperties properties,
+                            AdaptiveLimiters limiters,
+                            FixtureArchive fixtureArchive) {
         this.mapper = mapper;
         this.eventMapper = eventMapper;
+        this.httpClient = httpClient;
+        this.browserPool = browserPool;
+        this.properties = properties;
+        this.limiter = limiters.forScrapper("scrapperGoingApp", getSourceName());
+        this.fixtureArchive = fixtureArchive;
     }
 
+    /**
+     * Replays the Algolia search directly when configured to, and falls back to the browser
+     * if the replay fails before delivering anything. Only the replay is resumable, its cursor is
+     * the number of the next Algolia page; the browser delivers all hits as one page without cursor.
+     * <p>
+     * A replay that fails after delivering pages, or while resuming, throws, as does the browser once
+     * it handed on the hits it collected before failing, so the caller never takes part of the
+     * listing for all of it.
+     * <p>
+     * While fixtures are recorded or replayed the Algolia search is used whatever {@code going-app.mode} says,
+     * and never falls back to the browser: the archive holds Algolia pages only, the browser would neither
+     * record nor replay anything.
+     */
     @Override
-    public List<JsonNode> scrapeData() {
-        List<JsonNode> scrapedData = new ArrayList<>();
-        List<String> pendingRequests = new ArrayList<>();
+    public void scrape(String cursor, PageSink<GoingAppHit> sink) {
+        if (isReplay()) {
+            int[] delivered = new int[1];
+            try (FixtureArchive.Recording recording = fixtureArchive.startRecording(getSourceName())) {
+                replayAlgolia(cursor != null ? Integer.parseInt(cursor) : 0, (page, next) -> {
+                    delivered[0] += page.size();
+                    sink.accept(page, next);
+                });
+                // A resumed search saw only part of the index, it must not replace a complete archive
+                if (cursor == null) {
+                    recording.complete();
+                }
+                return;
+            } catch (Exception e) {
+                capturedQuery = null;
+                if (delivered[0] > 0 || cursor != null || usesFixtures()) {
+                    throw new IllegalStateException("Algolia replay failed after " + delivered[0] + " records", e);
+                }
+                logger.warn("[{}] Algolia replay failed, falling back to the browser: [{}]", getClass().getSimpleName(), e.getMessage());
+            }
+        } else if (cursor != null) {
+            logger.warn("[{}] Cannot resume at [{}] in the browser, scraping everything", getClass().getSimpleName(), cursor);
+        }
 
-        Object lock = new Object();
-        CountDownLatch latch = new CountDownLatch(1);
+        scrapeWithBrowser(sink);
+    }
+
+    @Override
+    public int preferredConcurrency() {
+        return isReplay() ? Math.max(1, properties.getGoingApp().getAlgolia().getMaxInFlight()) : 1;
+    }
 
-        logger.info("[{}] Started fetching data ...", getClass().getSimpleName());
+    private boolean isReplay() {
+        return properties.getGoingApp().getMode() == ScraperProperties.GoingApp.Mode.REPLAY || usesFixtures();
+    }
 
-        try (Playwright playwright = Playwright.create()) {
-            Browser browser = playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(false));
-            Page page = browser.newPage();
+    private boolean usesFixtures() {
+        return fixtureArchive.isReplaying() || fixtureArchive.isRecording();
+    }
 
-            // Configure request tracking
-            page.onRequest(request -> {
-                if (request.url().contains("algolia.net/1/indexes/")) {
-                    synchronized (lock) {
-                        pendingRequests.add(request.url());
-                    }
+    /**
+     * Pages through the Algolia index from the given page with up to {@code max-in-flight} requests ahead,
+     * handing pages on in order. A page shorter than {@code hits-per-page} ends the search. Requests
+     * pass the source's {@link AdaptiveLimiter}, which retries throttled or failed pages.
+     * <p>
+     * Algolia serves no page beyond the {@code paginationLimitedTo} of the index, 1000 hits by default,
+     * but keeps reporting all matching hits in {@code nbHits}. A search that ends before reaching
+     * {@code nbHits} throws, so a capped listing is never taken for the whole catalog.
+     */
+    private void replayAlgolia(int firstPage, PageSink<GoingAppHit> sink) throws Exception {
+        ScraperProperties.Algolia config = properties.getGoingApp().getAlgolia();
+        AlgoliaQuery query = algoliaQuery(config);
+        int hitsPerPage = config.getHitsPerPage();
+        int fullPage = hitsPerPage * fixtureArchive.pageScale();
+        int window = Math.max(1, config.getMaxInFlight());
+
+        logger.info("[{}] Replaying Algolia search of index [{}] from page [{}] with [{}] hits per page and [{}] pages in flight ...",
+                getClass().getSimpleName(), query.getIndexName(), firstPage, hitsPerPage, window);
+
+        Deque<CompletableFuture<AlgoliaPage>> inFlight = new ArrayDeque<>(window);
+        int fetched = 0;
+        long totalHits = -1;
+        int nextPage = firstPage;
+        int consumedPage = firstPage;
+
+        try {
+            while (true) {
+                while (inFlight.size() < window) {
+                    inFlight.add(fetchHits(query, nextPage++, hitsPerPage));
                 }
-            });
 
-            CountDownLatch finalLatch = latch;
-
-            // Configure response handling
-            page.onResponse(response -> {
-                if (response.url().contains("algolia.net/1/indexes/") && response.status() == 200) {
-                    try {
-                        if (response.headers().getOrDefault("content-type", "").contains("application/json")) {
-                            String responseBody = response.text();
-                            JsonNode jsonNode = mapper.readTree(responseBody);
-                            JsonNode hits = jsonNode.path("results").path(0).path("hits");
-
-                            if (hits.isArray()) {
-                                for (JsonNode hit : hits) {
-                                    scrapedData.add(hit);
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        logger.error("[{}] Error processing JSON response from URL: [{}]", getClass().getSimpleName(), response.url(), e);
-                    } finally {
-                        synchronized (lock) {
-                            pendingRequests.remove(response.url());
-                            if (pendingRequests.isEmpty()) {
-                                finalLatch.countDown();
-                            }
-                        }
-                    }
+                AlgoliaPage algoliaPage;
+                try {
+                    algoliaPage = inFlight.poll().join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
                 }
-            });
 
-            // Navigate to initial page
-            String BASE_URL = "https://goingapp.pl/szukaj?refinementList%5Btype%5D%5B0%5D=rundate&refinementList%5Btype%5D%5B1%5D=activity";
-            page.navigate(BASE_URL);
+                List<GoingAppHit> hits = algoliaPage.hits;
+                if (algoliaPage.nbHits >= 0) {
+                    totalHits = algoliaPage.nbHits * fixtureArchive.pageScale();
+                }
+                consumedPage++;
+                if (!hits.isEmpty()) {
+                    fetched += hits.size();
+                    sink.accept(hits, String.valueOf(consumedPage));
+                }
+                if (hits.size() < fullPage) {
+                    break;
+                }
+            }
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
 
-            // Wait for initial page load
-            page.waitForTimeout(10000);
+        long reached = (long) firstPage * fullPage + fetched;
+        if (totalHits > reached) {
+            throw new IllegalStateException("Algolia search ended after " + reached + " of " + totalHits +
+                    " hits, the index limits pagination (paginationLimitedTo) below its size");
+        }
 
-            // Get total records count
-            String RECORDS_COUNT_SELECTOR = "#root > main > div.MuiBox-root.css-1kyexf6 > h6";
-            String recordsText = page.textContent(RECORDS_COUNT_SELECTOR).replaceAll("\\D", "");
-            int totalRecords = Integer.parseInt(recordsText);
-            logger.info("[{}] Total records to scrape: [{}]", getClass().getSimpleName(), totalRecords);
+        logger.info("[{}] Finished fetching. Total events fetched: [{}]", getClass().getSimpleName(), fetched);
+    }
 
-            boolean hasMoreContent = true;
-            int maxAttempts = 3; // Maximum number of attempts to click when errors occur
+    private CompletableFuture<AlgoliaPage> fetchHits(AlgoliaQuery query, int page, int hitsPerPage) {
+        HttpRequest request = CompressedBodies.acceptGzip(query.request(mapper, page, hitsPerPage))
+                .timeout(properties.getHttp().getRequestTimeout())
+                .build();
 
-            while (hasMoreContent && scrapedData.size() < 100) {
-                try {
-                    synchronized (lock) {
-                        if (!pendingRequests.isEmpty()) {
-                            latch.await();
+        return fixtureArchive.send(getSourceName(), limiter, request, "page=" + page + "&hitsPerPage=" + hitsPerPage, "results", 0, "hits")
+                .thenApply(response -> {
+                    try (InputStream body = CompressedBodies.decode(response)) {
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("Algolia page " + page + " failed with HTTP status code: " + response.statusCode());
                         }
+                        List<GoingAppHit> hits = new ArrayList<>(hitsPerPage);
+                        long[] nbHits = {-1};
+                        JsonArrayStreams.forEachElement(mapper, body, GoingAppHit.class, hits::add, (name, value) -> {
+                            if (name.equals("nbHits") && value.canConvertToLong()) {
+                                nbHits[0] = value.asLong();
+                            }
+                        }, "results", 0, "hits");
+                        return new AlgoliaPage(hits, nbHits[0]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
+                });
+    }
 
-                    String LOAD_MORE_BUTTON_SELECTOR = ".ais-InfiniteHits-loadMore";
+    /**
+     * The configured query, or the one captured from the search page.
+     */
+    private AlgoliaQuery algoliaQuery(ScraperProperties.Algolia config) throws Exception {
+        // Fixture replay serves pages by number, the query itself is never sent
+        if (fixtureArchive.isReplaying()) {
+            return AlgoliaQuery.of(FIXTURE_ALGOLIA_URL, null, null, "fixture", null);
+        }
+        if (config.getUrl() != null && !config.getUrl().isEmpty()) {
+            return AlgoliaQuery.of(config.getUrl(), config.getApplicationId(), config.getApiKey(), config.getIndexName(), config.getParams());
+        }
 
-                    // First check if the button exists at all
-                    ElementHandle loadMoreButton = page.querySelector(LOAD_MORE_BUTTON_SELECTOR);
-                    if (loadMoreButton == null) {
-                        logger.info("[{}] No 'Load More' button found, assuming all content is loaded.", getClass().getSimpleName());
-                        hasMoreContent = false;
-                        continue;
-                    }
+        AlgoliaQuery query = capturedQuery;
+        if (query == null) {
+            query = captureAlgoliaQuery();
+            capturedQuery = query;
+        }
+        return query;
+    }
 
-                    // Then check if the button is disabled
-                    boolean isDisabled = loadMoreButton.isDisabled();
-                    if (isDisabled) {
-                        logger.info("[{}] 'Load More' button is disabled, assuming all content is loaded.", getClass().getSimpleName());
-                        hasMoreContent = false;
-                        continue;
-                    }
+    /**
+     * Opens the search page and takes the first Algolia query it sends.
+     */
+    private AlgoliaQuery captureAlgoliaQuery() throws Exception {
+        logger.info("[{}] Capturing Algolia request from the search page ...", getClass().getSimpleName());
 
-                    // If we get here, the button exists and is not disabled
-                    latch = new CountDownLatch(1);
+        return browserPool.withPage(page -> {
+            Request request = page.waitForRequest(
+                    candidate -> candidate.url().contains(ALGOLIA_PATH) && candidate.postData() != null,
+                    new Page.WaitForRequestOptions().setTimeout(CAPTURE_TIMEOUT_MS),
+                    () -> page.navigate(properties.getGoingApp().getSearchUrl()));
 
-                    // Scroll to the button to ensure it's in view
-                    loadMoreButton.scrollIntoViewIfNeeded();
+            return AlgoliaQuery.captured(request.url(), request.headers(), request.postData(), mapper);
+        });
+    }
 
-                    // Click with retry logic
-                    boolean clickSuccess = false;
-                    for (int attempt = 0; attempt < maxAttempts; attempt++) {
-                        try {
-                            loadMoreButton.click(new ElementHandle.ClickOptions().setTimeout(5000));
-                            clickSuccess = true;
-                            break;
-                        } catch (TimeoutError e) {
-                            // Check if the button became disabled
-                            if (loadMoreButton.isDisabled()) {
-                                logger.info("[{}] 'Load More' button became disabled during click attempt.", getClass().getSimpleName());
-                                hasMoreContent = false;
-                                break;
-                            }
+    /**
+     * Clicks through the search page, collecting the hits of the Algolia response each click triggers.
+     * Every step waits for its own response, bounded by {@code response-timeout}, instead of sleeping.
+     * All hits are handed to the sink as one page, on failure the hits collected so far before throwing.
+     */
+    private void scrapeWithBrowser(PageSink<GoingAppHit> sink) {
+        ScraperProperties.GoingApp config = properties.getGoingApp();
+        int maxRecords = config.getMaxRecords();
+        double responseTimeout = config.getResponseTimeout().toMillis();
 
-                            if (attempt == maxAttempts - 1) {
-                                throw e; // Re-throw on last attempt
-                            }
+        // Responses are handled on Playwright's dispatch thread, hits are deduplicated by their Algolia ID
+        Queue<GoingAppHit> scrapedData = new ConcurrentLinkedQueue<>();
+        Set<String> seenIds = ConcurrentHashMap.newKeySet();
 
-                            logger.info("[{}] Click attempt {} failed, retrying...", getClass().getSimpleName(), attempt + 1);
-                            page.waitForTimeout(2000); // Wait a bit before retrying
-                        }
-                    }
+        logger.info("[{}] Started fetching data in the browser ...", getClass().getSimpleName());
+
+        try {
+            browserPool.withPage(page -> {
+                Page.WaitForResponseOptions waitOptions = new Page.WaitForResponseOptions().setTimeout(responseTimeout);
+
+                // Navigate to initial page and take the hits of its first search
+                Response initial = page.waitForResponse(this::isAlgoliaResponse, waitOptions,
+                        () -> page.navigate(config.getSearchUrl()));
+                collectHits(initial, scrapedData, seenIds);
+
+                String totalRecords = page.locator(RECORDS_COUNT_SELECTOR)
+                        .textContent(new Locator.TextContentOptions().setTimeout(responseTimeout))
+                        .replaceAll("\\D", "");
+                logger.info("[{}] Total records to scrape: [{}]", getClass().getSimpleName(), totalRecords);
+
+                while (maxRecords <= 0 || scrapedData.size() < maxRecords) {
 
-                    if (!clickSuccess && hasMoreContent) {
-                        logger.warn("[{}] Failed to click 'Load More' button after {} attempts. Moving on.",
-                                getClass().getSimpleName(), maxAttempts);
-                        hasMoreContent = false;
-                        continue;
+                    ElementHandle loadMoreButton = page.querySelector(LOAD_MORE_BUTTON_SELECTOR);
+                    if (loadMoreButton == null || loadMoreButton.isDisabled()) {
+                        logger.info("[{}] No enabled 'Load More' button found, assuming all content is loaded.", getClass().getSimpleName());
+                        break;
                     }
 
-                    // Wait for content to load
-                    page.waitForTimeout(4000);
+                    loadMoreButton.scrollIntoViewIfNeeded();
+
+                    Response response = clickForResponse(page, loadMoreButton, waitOptions, config.getClickAttempts());
+                    if (response == null) {
+                        break;
+                    }
+                    collectHits(response, scrapedData, seenIds);
 
                     logger.info("[{}] Progress: [{}/{}] records scraped ...",
                             getClass().getSimpleName(), scrapedData.size(), totalRecords);
-
-                } catch (Exception e) {
-                    if (e instanceof TimeoutError) {
-                        // This is likely just the end of content
-                        logger.info("[{}] Timeout reached, assuming all content has been loaded.", getClass().getSimpleName());
-                        hasMoreContent = false;
-                    } else {
-                        // Log other errors but continue with the data we have
-                        logger.warn("[{}] Error during scraping: {}", getClass().getSimpleName(), e.getMessage());
-                        // Attempt to continue if we have some data
-                        if (scrapedData.size() > 0) {
-                            logger.info("[{}] Continuing with {} records already scraped.",
-                                    getClass().getSimpleName(), scrapedData.size());
-                            hasMoreContent = false;
-                        } else {
-                            // If we have no data, this is a fatal error
-                            throw new RuntimeException("Failed to scrape any data", e);
-                        }
-                    }
                 }
-            }
 
-            browser.close();
+                return null;
+            });
 
         } catch (Exception e) {
-            logger.error("[{}] An error occurred while scraping data", getClass().getSimpleName(), e);
-            // If we've collected some data, we'll return it despite the error
-            if (scrapedData.isEmpty()) {
-                throw new RuntimeException("Failed to scrape any data from GoingApp", e);
+            // Keep the hits collected so far, but let the caller know the listing is incomplete
+            if (!scrapedData.isEmpty()) {
+                sink.accept(new ArrayList<>(scrapedData), null);
             }
+            throw new IllegalStateException("Browser scrape of GoingApp failed after " + scrapedData.size() + " records", e);
         }
 
         logger.info("[{}] Finished fetching. Total events fetched: [{}]", getClass().getSimpleName(), scrapedData.size());
 
-        return scrapedData;
+        sink.accept(new ArrayList<>(scrapedData), null);
+    }
+
+    /**
+     * Clicks the button and waits for the Algolia response the click triggers, retrying on timeout.
+     *
+     * @return The response, or {@code null} when the button became disabled
+     * @throws IllegalStateException When every attempt timed out
+     */
+    private Response clickForResponse(Page page, ElementHandle button, Page.WaitForResponseOptions waitOptions, int attempts) {
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                return page.waitForResponse(this::isAlgoliaResponse, waitOptions, button::click);
+            } catch (TimeoutError e) {
+                if (button.isDisabled()) {
+                    logger.info("[{}] 'Load More' button became disabled during click attempt.", getClass().getSimpleName());
+                    return null;
+                }
+                logger.info("[{}] No response to click attempt {} of {}.", getClass().getSimpleName(), attempt, attempts);
+            }
+        }
+
+        throw new IllegalStateException("No response to 'Load More' after " + attempts + " attempts");
+    }
+
+    private boolean isAlgoliaResponse(Response response) {
+        return response.url().contains(ALGOLIA_PATH)
+                && response.status() == 200
+                && response.headers().getOrDefault("content-type", "").contains("application/json");
+    }
+
+    private void collectHits(Response response, Queue<GoingAppHit> scrapedData, Set<String> seenIds) {
+        try {
+            JsonArrayStreams.forEachElement(mapper, new ByteArrayInputStream(response.body()), GoingAppHit.class, hit -> {
+                if (hit.getObjectId() == null || seenIds.add(hit.getObjectId())) {
+                    scrapedData.add(hit);
+                }
+            }, "results", 0, "hits");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the hits of " + response.url(), e);
+        }
+    }
+
+    /**
+     * Hits of one Algolia page with the number of hits matching the query, {@code -1} when not reported.
+     */
+    private static final class AlgoliaPage {
+
+        private final List<GoingAppHit> hits;
+        private final long nbHits;
+
+        private AlgoliaPage(List<GoingAppHit> hits, long nbHits) {
+            this.hits = hits;
+            this.nbHits = nbHits;
+        }
     }
 
     @Override
-    public EventMapper getMapper() {
+    public EventMapper<GoingAppHit> getMapper() {
         return eventMapper;
     }
+
+    @Override
+    public String getSourceName() {
+        return EventSource.GOING_APP.getSourceName();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package pl.planzy.scrappers.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.planzy.config.ScraperProperties;
+import pl.planzy.dto.ScrapedEvent;
+import pl.planzy.util.StringPool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps records one by one, on the calling thread or, for pages of at least {@code parallel-threshold}
+ * records, split into ranges mapped on the shared mapping pool.
+ * <p>
+ * Events keep the order of their records either way. A record that fails to map is skipped; instead of
+ * logging every failure, each range collects its own failures and the run logs one summary with their
+ * number per exception type and the first few of them. Failed records themselves are logged on debug.
+ * <p>
+ * Implementations pass low-cardinality values, like places, categories and tags, through
+ * {@link #canonical(String)}, so the events of a run share one string per value.
+ */
+public abstract class AbstractEventMapper<T> implements EventMapper<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractEventMapper.class);
+
+    // Ranges below this size are not split any further, forking costs more than mapping them
+    private static final int MIN_RANGE = 256;
+
+    private final ForkJoinPool mappingPool;
+    private final StringPool stringPool;
+    private final ScraperProperties.Mapping config;
+
+    protected AbstractEventMapper(ForkJoinPool mappingPool, StringPool stringPool, ScraperProperties properties) {
+        this.mappingPool = mappingPool;
+        this.stringPool = stringPool;
+        this.config = properties.getMapping();
+    }
+
+    /**
+     * Maps one record.
+     *
+     * @throws RuntimeException When the record cannot be mapped, the record is skipped
+     */
+    protected abstract ScrapedEvent mapEvent(T record);
+
+    protected String canonical(String value) {
+        return stringPool.canonical(value);
+    }
+
+    /**
+     * Pools the elements of an array the mapper owns, in place.
+     */
+    protected String[] canonicalAll(String[] values) {
+        return stringPool.canonicalAll(values);
+    }
+
+    @Override
+    public List<ScrapedEvent> mapEvents(List<T> data) {
+        boolean parallel = config.isParallel() && data.size() >= Math.max(1, config.getParallelThreshold());
+
+        logger.info("[{}] Starting to map events. Total events to map: [{}]{}", getClass().getSimpleName(), data.size(),
+                parallel ? ", in parallel" : "");
+
+        long started = System.nanoTime();
+        ScrapedEvent[] slots = new ScrapedEvent[data.size()];
+        MappingErrors errors;
+
+        if (parallel) {
+            int range = Math.max(MIN_RANGE, data.size() / (mappingPool.getParallelism() * 4));
+            MapRange task = new MapRange(data, slots, 0, data.size(), range);
+            mappingPool.invoke(task);
+            errors = task.errors;
+        } else {
+            errors = mapRange(data, slots, 0, data.size());
+        }
+
+        List<ScrapedEvent> mappedEvents = new ArrayList<>(slots.length - errors.count);
+        for (ScrapedEvent event : slots) {
+            if (event != null) {
+                mappedEvents.add(event);
+            }
+        }
+
+        logger.info("[{}] Finished mapping events. Total mapped events: [{}] in [{}] ms", getClass().getSimpleName(), mappedEvents.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        if (errors.count > 0) {
+            logger.warn("[{}] [{}] of [{}] events could not be mapped: {}", getClass().getSimpleName(), errors.count, data.size(), errors);
+        }
+
+        return mappedEvents;
+    }
+
+    private MappingErrors mapRange(List<T> data, ScrapedEvent[] slots, int from, int to) {
+        MappingErrors errors = new MappingErrors(config.getErrorSamples());
+        for (int i = from; i < to; i++) {
+            T record = data.get(i);
+            try {
+                slots[i] = mapEvent(record);
+            } catch (Exception e) {
+                errors.add(i, e);
+                logger.debug("[{}] Error mapping event [{}]: [{}]", getClass().getSimpleName(), i, record, e);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Maps a range of records into their slots, halving it until it is small enough.
+     */
+    private final class MapRange extends RecursiveAction {
+
+        private final List<T> data;
+        private final ScrapedEvent[] slots;
+        private final int from;
+        private final int to;
+        private final int range;
+        private MappingErrors errors;
+
+        private MapRange(List<T> data, ScrapedEvent[] slots, int from, int to, int range) {
+            this.data = data;
+            this.slots = slots;
+            this.from = from;
+            this.to = to;
+            this.range = range;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= range) {
+                errors = mapRange(data, slots, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            MapRange left = new MapRange(data, slots, from, middle, range);
+            MapRange right = new MapRange(data, slots, middle, to, range);
+            invokeAll(left, right);
+            errors = left.errors.merge(right.errors);
+        }
+    }
+
+    /**
+     * Failures of one range of records, merged in record order.
+     */
+    private static final class MappingErrors {
+
+        private final int maxSamples;
+        private final Map<String, Integer> byType = new LinkedHashMap<>();
+        private final List<String> samples = new ArrayList<>();
+        private int count;
+
+        private MappingErrors(int maxSamples) {
+            this.maxSamples = maxSamples;
+        }
+
+        private void add(int index, Exception e) {
+            count++;
+            byType.merge(e.getClass().getSimpleName(), 1, Integer::sum);
+            if (samples.size() < maxSamples) {
+                samples.add("#" + index + " " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+
+        private MappingErrors merge(MappingErrors other) {
+            count += other.count;
+            other.byType.forEach((type, failures) -> byType.merge(type, failures, Integer::sum));
+            for (String sample : other.samples) {
+                if (samples.size() >= maxSamples) {
+                    break;
+                }
+                samples.add(sample);
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return byType + ", first " + samples;
+        }
+    }
+}
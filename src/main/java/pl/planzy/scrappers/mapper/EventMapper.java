@@ -1,12 +1,14 @@
 package pl.planzy.scrappers.mapper;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import pl.planzy.dto.ScrapedEvent;
 
-import java.util.Collection;
 import java.util.List;
 
-public interface EventMapper {
+/**
+ * Maps the records of one source, as bound by its scraper, into events.
+ */
+public interface EventMapper<T> {
 
-    List<JsonNode> mapEvents(List<JsonNode> data);
+    List<ScrapedEvent> mapEvents(List<T> data);
 
 }
@@ -1,134 +1,113 @@
 package pl.planzy.scrappers.mapper.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
-import pl.planzy.scrappers.mapper.EventMapper;
+import pl.planzy.config.ScraperProperties;
+import pl.planzy.dto.EventSource;
+import pl.planzy.dto.ScrapedEvent;
+import pl.planzy.scrappers.mapper.AbstractEventMapper;
+import pl.planzy.scrappers.model.EbiletTitle;
+import pl.planzy.util.StringPool;
 
-import java.io.File;
-import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 
 @Component("eventMapperEbilet")
-public class EventMapperEbilet implements EventMapper {
+@ConditionalOnProperty(prefix = "planzy.scraper.mapping", name = "engine", havingValue = "code", matchIfMissing = true)
+public class EventMapperEbilet extends AbstractEventMapper<EbiletTitle> {
 
     private static final Logger logger = LoggerFactory.getLogger(EventMapperEbilet.class);
-    private final ObjectMapper mapper = new ObjectMapper();
-
-    @Override
-    public List<JsonNode> mapEvents(List<JsonNode> data) {
-        logger.info("[{}] Starting to map events. Total events to map: [{}]", getClass().getSimpleName(), data.size());
-
-        List<JsonNode> mappedEvents = new ArrayList<>();
-
-        for (JsonNode event : data) {
-            try {
-                mappedEvents.add(mapEbiletEvent(event));
-            } catch (Exception e) {
-                logger.error("[{}] Error mapping event: {}", getClass().getSimpleName(), event, e);
-            }
-        }
-
-        logger.info("[{}] Finished mapping events. Total mapped events: [{}]", getClass().getSimpleName(), mappedEvents.size());
-
-        return mappedEvents;
+    private static final String[] UNKNOWN_ARTISTS = {"Unknown Artist"};
+    private static final String MEDIA_URL = "https://www.ebilet.pl/media";
+
+    @Autowired
+    public EventMapperEbilet(@Qualifier("mappingPool") ForkJoinPool mappingPool,
+                             @Qualifier("mappingStringPool") StringPool stringPool,
+                             ScraperProperties properties) {
+        super(mappingPool, stringPool, properties);
     }
 
-    private JsonNode mapEbiletEvent(JsonNode event) {
+    @Override
+    protected ScrapedEvent mapEvent(EbiletTitle event) {
 
-        String startDateTimestamp = "null";
-        String endDateTimeStamp = "null";
+        long startDateTimestamp = ScrapedEvent.NO_DATE;
+        long endDateTimeStamp = ScrapedEvent.NO_DATE;
 
-        if (event.has("dateFrom") && !event.get("dateFrom").isNull() && !event.get("dateFrom").asText().isEmpty() && !event.get("dateFrom").asText().equalsIgnoreCase("null")) {
+        if (present(event.getDateFrom())) {
             try {
-                startDateTimestamp = convertToTimestamp(event.get("dateFrom").asText());
+                startDateTimestamp = convertToTimestamp(event.getDateFrom());
             } catch (DateTimeParseException e) {
-                logger.warn("[{}] Invalid date format for 'dateFrom': [{}]", getClass().getSimpleName(), event.get("dateFrom").asText(), e);
+                logger.warn("[{}] Invalid date format for 'dateFrom': [{}]", getClass().getSimpleName(), event.getDateFrom(), e);
             }
         }
 
-        if (event.has("dateTo") && !event.get("dateTo").isNull() && !event.get("dateTo").asText().isEmpty() && !event.get("dateTo").asText().equalsIgnoreCase("null")) {
+        if (present(event.getDateTo())) {
             try {
-                endDateTimeStamp = convertToTimestamp(event.get("dateTo").asText());
+                endDateTimeStamp = convertToTimestamp(event.getDateTo());
             } catch (DateTimeParseException e) {
-                logger.warn("[{}] Invalid date format for dateTo: [{}]", getClass().getSimpleName(), event.get("dateTo").asText(), e);
+                logger.warn("[{}] Invalid date format for dateTo: [{}]", getClass().getSimpleName(), event.getDateTo(), e);
             }
         }
 
-        String artistsNames = event.has("artists") && event.get("artists").isArray()
-                ? String.join(", ", mapper.convertValue(event.get("artists"), List.class))
-                : "Unknown Artist";
-
-        String customName = event.has("nextEventPlace") && event.get("nextEventPlace").has("customName")
-                ? event.get("nextEventPlace").get("customName").asText()
-                : "Unknown Place";
+        EbiletTitle.NextEventPlace place = event.getNextEventPlace();
 
-        String location = event.has("nextEventPlace") && event.get("nextEventPlace").has("city")
-                ? event.get("nextEventPlace").get("city").asText()
-                : "Unknown City";
+        String url;
 
-        String url = "";
-
-        if (event.has("linkTo") && event.get("linkTo").asText().equalsIgnoreCase("null")) {
-            String category = event.get("category").asText();
-            String subcategory = event.get("subcategory").asText().replace("\"", "");
-            String slug = event.get("slug").asText();
-            url = "https://www.ebilet.pl/" + category + "/" + subcategory + "/" + slug;
+        if (event.getLinkTo() == null || event.getLinkTo().equalsIgnoreCase("null")) {
+            String subcategory = String.valueOf(event.getSubcategory()).replace("\"", "");
+            url = "https://www.ebilet.pl/" + event.getCategory() + "/" + subcategory + "/" + event.getSlug();
         } else {
-            url = event.get("linkTo").asText();
+            url = event.getLinkTo();
         }
 
-        StringBuilder cat = new StringBuilder();
-
-        if (event.has("subcategoryName") && !event.get("subcategoryName").isNull()
-                && !event.get("subcategoryName").asText().isBlank()
-                && !event.get("subcategoryName").asText().equalsIgnoreCase("null")) {
+        List<String> cat = new ArrayList<>(3);
 
-            cat.append(event.get("subcategoryName").asText()).append(", ");
+        if (present(event.getSubcategoryName())) {
+            cat.add(canonical(event.getSubcategoryName()));
         }
 
-        if (event.has("category") && !event.get("category").isNull()
-                && !event.get("category").asText().isBlank()
-                && !event.get("category").asText().equalsIgnoreCase("null")) {
-
-            cat.append(event.get("category").asText()).append(", ");
+        if (present(event.getCategory())) {
+            cat.add(canonical(event.getCategory()));
         }
 
-        if (event.has("subcategory") && !event.get("category").isNull()
-                && !event.get("subcategory").asText().isBlank()
-                && !event.get("subcategory").asText().equalsIgnoreCase("null")) {
-
-            cat.append(event.get("subcategory").asText());
+        if (present(event.getSubcategory())) {
+            cat.add(canonical(event.getSubcategory()));
         }
 
-        return mapper.createObjectNode()
-                .put("event_name", event.get("title").asText())
-                .put("artists", artistsNames)
-                .put("start_date", startDateTimestamp)
-                .put("end_date", endDateTimeStamp)
-                .put("thumbnail", "https://www.ebilet.pl/media" + event.get("imageLandscape").asText())
-                .put("url", url)
-                .put("location", location)
-                .put("place", customName)
-                .put("category", event.get("categoryName").asText())
-                .put("tags", cat.toString())
-                .put("description", event.get("metaDescription").asText())
-                .put("source", "eBilet");
+        return ScrapedEvent.builder()
+                .name(Objects.requireNonNull(event.getTitle(), "title"))
+                .artists(event.getArtists() != null ? canonicalAll(event.getArtists()) : UNKNOWN_ARTISTS)
+                .startDate(startDateTimestamp)
+                .endDate(endDateTimeStamp)
+                .thumbnailBase(event.getImageLandscape() != null ? MEDIA_URL : null)
+                .thumbnailPath(event.getImageLandscape())
+                .url(url)
+                .location(place != null && place.getCity() != null ? canonical(place.getCity()) : "Unknown City")
+                .place(place != null && place.getCustomName() != null ? canonical(place.getCustomName()) : "Unknown Place")
+                .category(canonical(event.getCategoryName()))
+                .tags(cat.toArray(new String[0]))
+                .description(event.getMetaDescription())
+                .source(EventSource.EBILET)
+                .build();
+    }
+
+    private static boolean present(String value) {
+        return value != null && !value.isBlank() && !value.equalsIgnoreCase("null");
     }
 
-    private String convertToTimestamp(String dateString) {
+    private long convertToTimestamp(String dateString) {
         try {
             LocalDateTime localDateTime = LocalDateTime.parse(dateString);
-            return String.valueOf(localDateTime.toEpochSecond(ZoneOffset.UTC));
+            return localDateTime.toEpochSecond(ZoneOffset.UTC);
         } catch (Exception e) {
             logger.error("[{}] Error parsing date: {}", getClass().getSimpleName(), dateString, e);
             throw new RuntimeException("Error parsing date: " + dateString, e);
@@ -1,84 +1,60 @@
 package pl.planzy.scrappers.mapper.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
-import pl.planzy.scrappers.mapper.EventMapper;
+import pl.planzy.config.ScraperProperties;
+import pl.planzy.dto.EventSource;
+import pl.planzy.dto.ScrapedEvent;
+import pl.planzy.scrappers.mapper.AbstractEventMapper;
+import pl.planzy.scrappers.model.GoingAppHit;
+import pl.planzy.util.StringPool;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 @Component("eventMapperGoingApp")
-public class EventMapperGoingApp implements EventMapper {
-
-    private static final Logger logger = LoggerFactory.getLogger(EventMapperGoingApp.class);
-    private final ObjectMapper mapper = new ObjectMapper();
-
-    @Override
-    public List<JsonNode> mapEvents(List<JsonNode> data) {
-
-        logger.info("[{}] Starting to map events. Total events to map: [{}]", getClass().getSimpleName(), data.size());
-
-        List<JsonNode> mappedEvents = new ArrayList<>();
-
-        for (JsonNode event : data) {
-            try {
-                mappedEvents.add(mapGoingAppEvent(event));
-            } catch (Exception e) {
-                logger.error("[{}] Error mapping event: [{}]", getClass().getSimpleName(), event, e);
-            }
-        }
-
-        logger.info("[{}] Finished mapping events. Total mapped events: [{}]", getClass().getSimpleName(), mappedEvents.size());
-
-        return mappedEvents;
-
+@ConditionalOnProperty(prefix = "planzy.scraper.mapping", name = "engine", havingValue = "code", matchIfMissing = true)
+public class EventMapperGoingApp extends AbstractEventMapper<GoingAppHit> {
+
+    private static final String[] UNKNOWN_ARTISTS = {"Unknown Artist"};
+    private static final String[] NO_TAGS = new String[0];
+    private static final String THUMBNAIL_URL = "https://res.cloudinary.com/dr89d8ldb/image/upload/c_fill,h_350,w_405/f_webp/q_auto:eco/v1/rundate/";
+
+    @Autowired
+    public EventMapperGoingApp(@Qualifier("mappingPool") ForkJoinPool mappingPool,
+                               @Qualifier("mappingStringPool") StringPool stringPool,
+                               ScraperProperties properties) {
+        super(mappingPool, stringPool, properties);
     }
 
-    private JsonNode mapGoingAppEvent(JsonNode event) {
-
-        String startDateTimestamp = event.has("start_date_timestamp") && !event.get("start_date_timestamp").isNull()
-                ? event.get("start_date_timestamp").asText()
-                : "null";
-
-        String endDateTimestamp = event.has("end_date_timestamp") && !event.get("end_date_timestamp").isNull()
-                ? event.get("end_date_timestamp").asText()
-                : "null";
-
-        String artistsNames = event.has("artists_names") && event.get("artists_names").isArray()
-                ? String.join(", ", mapper.convertValue(event.get("artists_names"), List.class))
-                : "Unknown Artist";
+    @Override
+    protected ScrapedEvent mapEvent(GoingAppHit event) {
 
-        String location = event.has("locations_names") && event.get("locations_names").isArray() && event.get("locations_names").size() > 0
-                ? event.get("locations_names").get(0).asText()
-                : "Unknown Location";
+        String[] locations = event.getLocationsNames();
 
-        String url = event.has("slug") && event.has("rundate_slug")
-                ? "https://queue.goingapp.pl/wydarzenie/" + event.get("slug").asText() + "/" + event.get("rundate_slug").asText()
+        String url = event.getSlug() != null && event.getRundateSlug() != null
+                ? "https://queue.goingapp.pl/wydarzenie/" + event.getSlug() + "/" + event.getRundateSlug()
                 : "Unknown URL";
 
-        String tags = event.has("tags_names") && event.get("tags_names").isArray()
-                ? String.join(", ", mapper.convertValue(event.get("tags_names"), List.class))
-                : "";
-
-        String thumbnail = event.has("thumbnail") && !event.get("thumbnail").isNull()
-                ? "https://res.cloudinary.com/dr89d8ldb/image/upload/c_fill,h_350,w_405/f_webp/q_auto:eco/v1/rundate/" + event.get("thumbnail").asText().replace(" ", "%20")
-                : "Unknown Thumbnail";
+        return ScrapedEvent.builder()
+                .name(orElse(event.getNamePl(), "Unknown Event"))
+                .artists(event.getArtistsNames() != null ? canonicalAll(event.getArtistsNames()) : UNKNOWN_ARTISTS)
+                .startDate(event.getStartDateTimestamp() != null ? event.getStartDateTimestamp() : ScrapedEvent.NO_DATE)
+                .endDate(event.getEndDateTimestamp() != null ? event.getEndDateTimestamp() : ScrapedEvent.NO_DATE)
+                .thumbnailBase(event.getThumbnail() != null ? THUMBNAIL_URL : null)
+                .thumbnailPath(event.getThumbnail() != null ? event.getThumbnail().replace(" ", "%20") : "Unknown Thumbnail")
+                .url(url)
+                .location(locations != null && locations.length > 0 ? canonical(locations[0]) : "Unknown Location")
+                .place(orElse(canonical(event.getPlaceName()), "Unknown Place"))
+                .category(orElse(canonical(event.getCategoryName()), "Unknown Category"))
+                .tags(event.getTagsNames() != null ? canonicalAll(event.getTagsNames()) : NO_TAGS)
+                .description(orElse(event.getDescriptionPl(), "No Description"))
+                .source(EventSource.GOING_APP)
+                .build();
+    }
 
-        return mapper.createObjectNode()
-                .put("event_name", event.has("name_pl") && !event.get("name_pl").isNull() ? event.get("name_pl").asText() : "Unknown Event")
-                .put("artists", artistsNames)
-                .put("start_date", startDateTimestamp)
-                .put("end_date", endDateTimestamp)
-                .put("thumbnail", thumbnail)
-                .put("url", url)
-                .put("location", location)
-                .put("place", event.has("place_name") && !event.get("place_name").isNull() ? event.get("place_name").asText() : "Unknown Place")
-                .put("category", event.has("category_name") && !event.get("category_name").isNull() ? event.get("category_name").asText() : "Unknown Category")
-                .put("tags", tags)
-                .put("description", event.has("description_pl") && !event.get("description_pl").isNull() ? event.get("description_pl").asText() : "No Description")
-                .put("source", "GoingApp");
+    private static String orElse(String value, String fallback) {
+        return value != null ? value : fallback;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,428 @@
+package pl.planzy.scrappers.mapper.spec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pl.planzy.dto.ScrapedEvent;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * {@link MappingSpec} compiled against the type the source's records are bound into.
+ * <p>
+ * Pointers are resolved to accessors, templates split into literals and values, date formats and
+ * defaults parsed once, so extracting an event only reads values and applies the cleanup. Compilation
+ * fails on anything the spec refers to that the record type does not have.
+ */
+public final class ExtractionPlan<T> {
+
+    private static final String EPOCH_SECONDS = "epoch-seconds";
+    private static final String ISO_LOCAL_DATE_TIME = "iso-local-date-time";
+
+    private final MappingSpec spec;
+    private final TextValue name;
+    private final NamesValue artists;
+    private final DateValue startDate;
+    private final DateValue endDate;
+    private final TextValue thumbnail;
+    private final TextValue url;
+    private final TextValue location;
+    private final TextValue place;
+    private final TextValue category;
+    private final NamesValue tags;
+    private final TextValue description;
+
+    private ExtractionPlan(MappingSpec spec, Compiler compiler) {
+        this.spec = spec;
+        this.name = compiler.text(spec.getName());
+        this.artists = compiler.names(spec.getArtists());
+        this.startDate = compiler.date(spec.getStartDate());
+        this.endDate = compiler.date(spec.getEndDate());
+        this.thumbnail = compiler.text(spec.getThumbnail());
+        this.url = compiler.text(spec.getUrl());
+        this.location = compiler.text(spec.getLocation());
+        this.place = compiler.text(spec.getPlace());
+        this.category = compiler.text(spec.getCategory());
+        this.tags = compiler.names(spec.getTags());
+        this.description = compiler.text(spec.getDescription());
+    }
+
+    public static <T> ExtractionPlan<T> compile(ObjectMapper objectMapper, MappingSpec spec, Class<T> recordType) {
+        if (spec.getSource() == null) {
+            throw new IllegalStateException("Mapping spec without source");
+        }
+        return new ExtractionPlan<>(spec, new Compiler(objectMapper, recordType, spec.getVars()));
+    }
+
+    /**
+     * @param canonical Pool the values of canonical fields are passed through
+     */
+    public ScrapedEvent extract(T record, UnaryOperator<String> canonical) {
+        ScrapedEvent.ScrapedEventBuilder event = ScrapedEvent.builder()
+                .name(name.read(record, canonical, "name"))
+                .startDate(startDate.read(record))
+                .endDate(endDate.read(record))
+                .url(url.read(record, canonical, "url"))
+                .location(location.read(record, canonical, "location"))
+                .place(place.read(record, canonical, "place"))
+                .category(category.read(record, canonical, "category"))
+                .description(description.read(record, canonical, "description"))
+                .source(spec.getSource());
+
+        // The base is shared by every event, only the path is the event's own
+        String thumbnailPath = thumbnail.own(record, canonical);
+        if (thumbnailPath != null) {
+            event.thumbnailBase(thumbnail.base).thumbnailPath(thumbnailPath);
+        } else {
+            event.thumbnailPath(thumbnail.otherwise(record, canonical, "thumbnail"));
+        }
+
+        String[] artistNames = artists.read(record, canonical);
+        if (artistNames != null) {
+            event.artists(artistNames);
+        }
+        String[] tagNames = tags.read(record, canonical);
+        if (tagNames != null) {
+            event.tags(tagNames);
+        }
+        return event.build();
+    }
+
+    public MappingSpec getSpec() {
+        return spec;
+    }
+
+    private static boolean isMissing(String text, Set<String> missingIf) {
+        return text == null || (!missingIf.isEmpty() && missingIf.contains(text.trim().toLowerCase(Locale.ROOT)));
+    }
+
+    private static String textOf(Object value) {
+        if (value instanceof JsonNode node) {
+            return node.isNull() || node.isMissingNode() ? null : node.isValueNode() ? node.asText() : node.toString();
+        }
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Resolves the parts of a spec against the record type.
+     */
+    private static final class Compiler {
+
+        private final ObjectMapper objectMapper;
+        private final Class<?> recordType;
+        private final Map<String, MappingSpec.Field> varSpecs;
+        private final Map<String, TextValue> vars = new HashMap<>();
+
+        private Compiler(ObjectMapper objectMapper, Class<?> recordType, Map<String, MappingSpec.Field> varSpecs) {
+            this.objectMapper = objectMapper;
+            this.recordType = recordType;
+            this.varSpecs = varSpecs;
+        }
+
+        private TextValue text(MappingSpec.Field field) {
+            if (field == null) {
+                return TextValue.ABSENT;
+            }
+
+            PathAccessor path = field.getPath() != null ? accessor(field.getPath()) : null;
+            Template template = field.getTemplate() != null ? template(field.getTemplate()) : null;
+            if (path == null && template == null && field.getDefaultValue() == null) {
+                throw new IllegalStateException("Field without path, template or default");
+            }
+
+            return new TextValue(path, template, field.getBase(), new LinkedHashMap<>(field.getReplace()), missingIf(field),
+                    field.isCanonical(), field.isRequired(), field.getFallback() != null ? text(field.getFallback()) : null,
+                    field.getDefaultValue() != null ? textOf(field.getDefaultValue()) : null);
+        }
+
+        private NamesValue names(MappingSpec.Field field) {
+            if (field == null) {
+                return NamesValue.ABSENT;
+            }
+
+            List<PathAccessor> paths = new ArrayList<>();
+            if (field.getPaths() != null) {
+                field.getPaths().forEach(pointer -> paths.add(accessor(pointer)));
+            }
+            String[] defaults = null;
+            if (field.getDefaultValue() != null) {
+                List<String> values = new ArrayList<>();
+                field.getDefaultValue().forEach(value -> values.add(value.asText()));
+                defaults = values.toArray(new String[0]);
+            }
+
+            return new NamesValue(field.getPath() != null ? accessor(field.getPath()) : null, List.copyOf(paths),
+                    missingIf(field), field.isCanonical(), defaults);
+        }
+
+        private DateValue date(MappingSpec.Field field) {
+            if (field == null) {
+                return DateValue.ABSENT;
+            }
+            if (field.getPath() == null) {
+                throw new IllegalStateException("Date field without path");
+            }
+
+            String format = field.getDate() != null ? field.getDate() : EPOCH_SECONDS;
+            DateTimeFormatter formatter = switch (format) {
+                case EPOCH_SECONDS -> null;
+                case ISO_LOCAL_DATE_TIME -> DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+                default -> DateTimeFormatter.ofPattern(format, Locale.ROOT);
+            };
+            return new DateValue(accessor(field.getPath()), formatter, missingIf(field));
+        }
+
+        private PathAccessor accessor(String pointer) {
+            return PathAccessor.compile(objectMapper, recordType, pointer);
+        }
+
+        /**
+         * Splits the template into literals and the values of its {@code {/pointer}} and {@code {var}} placeholders.
+         */
+        private Template template(String template) {
+            List<String> literals = new ArrayList<>();
+            List<Object> values = new ArrayList<>();
+
+            int position = 0;
+            while (true) {
+                int open = template.indexOf('{', position);
+                if (open < 0) {
+                    literals.add(template.substring(position));
+                    break;
+                }
+                int close = template.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalStateException("Unclosed placeholder in template " + template);
+                }
+                literals.add(template.substring(position, open));
+
+                String placeholder = template.substring(open + 1, close);
+                values.add(placeholder.startsWith("/") ? accessor(placeholder) : var(placeholder));
+                position = close + 1;
+            }
+            return new Template(literals.toArray(new String[0]), values.toArray());
+        }
+
+        private TextValue var(String name) {
+            TextValue var = vars.get(name);
+            if (var == null) {
+                MappingSpec.Field field = varSpecs.get(name);
+                if (field == null) {
+                    throw new IllegalStateException("Template refers to undefined var " + name);
+                }
+                var = text(field);
+                vars.put(name, var);
+            }
+            return var;
+        }
+
+        private static Set<String> missingIf(MappingSpec.Field field) {
+            return field.getMissingIf().stream()
+                    .map(value -> value.trim().toLowerCase(Locale.ROOT))
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+    }
+
+    /**
+     * Literals with a value between each two of them, each value an accessor or a var.
+     */
+    private static final class Template {
+
+        private final String[] literals;
+        private final Object[] values;
+
+        private Template(String[] literals, Object[] values) {
+            this.literals = literals;
+            this.values = values;
+        }
+
+        private String render(Object record, UnaryOperator<String> canonical) {
+            StringBuilder text = new StringBuilder(literals[0]);
+            for (int i = 0; i < values.length; i++) {
+                String value = values[i] instanceof PathAccessor path
+                        ? textOf(path.read(record))
+                        : ((TextValue) values[i]).readOrNull(record, canonical);
+                if (value == null) {
+                    return null;
+                }
+                text.append(value).append(literals[i + 1]);
+            }
+            return text.toString();
+        }
+    }
+
+    private static final class TextValue {
+
+        private static final TextValue ABSENT = new TextValue(null, null, null, Map.of(), Set.of(), false, false, null, null);
+
+        private final PathAccessor path;
+        private final Template template;
+        private final String base;
+        private final Map<String, String> replace;
+        private final Set<String> missingIf;
+        private final boolean canonical;
+        private final boolean required;
+        private final TextValue fallback;
+        private final String defaultValue;
+
+        private TextValue(PathAccessor path, Template template, String base, Map<String, String> replace, Set<String> missingIf,
+                          boolean canonical, boolean required, TextValue fallback, String defaultValue) {
+            this.path = path;
+            this.template = template;
+            this.base = base;
+            this.replace = replace;
+            this.missingIf = missingIf;
+            this.canonical = canonical;
+            this.required = required;
+            this.fallback = fallback;
+            this.defaultValue = defaultValue;
+        }
+
+        private String read(Object record, UnaryOperator<String> canonicalizer, String field) {
+            String value = own(record, canonicalizer);
+            return value != null ? value : otherwise(record, canonicalizer, field);
+        }
+
+        /**
+         * Value, from the fallback or the default if missing, {@code null} if all of them are.
+         */
+        private String readOrNull(Object record, UnaryOperator<String> canonicalizer) {
+            String value = own(record, canonicalizer);
+            if (value == null && fallback != null) {
+                value = fallback.readOrNull(record, canonicalizer);
+            }
+            return value != null ? value : defaultValue;
+        }
+
+        /**
+         * Value of the fallback or the default, for a record whose own value is missing.
+         */
+        private String otherwise(Object record, UnaryOperator<String> canonicalizer, String field) {
+            String value = fallback != null ? fallback.readOrNull(record, canonicalizer) : null;
+            if (value == null) {
+                value = defaultValue;
+            }
+            if (value == null && required) {
+                throw new IllegalArgumentException("Missing required " + field);
+            }
+            return value;
+        }
+
+        /**
+         * Value read from the path or template and cleaned up, {@code null} if missing.
+         */
+        private String own(Object record, UnaryOperator<String> canonicalizer) {
+            String value = path != null ? textOf(path.read(record)) : template != null ? template.render(record, canonicalizer) : null;
+            if (isMissing(value, missingIf)) {
+                return null;
+            }
+            for (Map.Entry<String, String> replacement : replace.entrySet()) {
+                value = value.replace(replacement.getKey(), replacement.getValue());
+            }
+            return canonical ? canonicalizer.apply(value) : value;
+        }
+    }
+
+    private static final class NamesValue {
+
+        private static final NamesValue ABSENT = new NamesValue(null, List.of(), Set.of(), false, null);
+
+        private final PathAccessor path;
+        private final List<PathAccessor> paths;
+        private final Set<String> missingIf;
+        private final boolean canonical;
+        private final String[] defaults;
+
+        private NamesValue(PathAccessor path, List<PathAccessor> paths, Set<String> missingIf, boolean canonical, String[] defaults) {
+            this.path = path;
+            this.paths = paths;
+            this.missingIf = missingIf;
+            this.canonical = canonical;
+            this.defaults = defaults;
+        }
+
+        /**
+         * @return Names, the defaults when there is no list at the path, {@code null} for the event's default
+         */
+        private String[] read(Object record, UnaryOperator<String> canonicalizer) {
+            List<String> names = new ArrayList<>();
+
+            if (path != null) {
+                Object value = path.read(record);
+                if (value == null || (value instanceof JsonNode node && !node.isArray())) {
+                    return defaults;
+                }
+                if (value instanceof Object[] array) {
+                    for (Object element : array) {
+                        add(names, textOf(element), canonicalizer);
+                    }
+                } else if (value instanceof Collection<?> collection) {
+                    collection.forEach(element -> add(names, textOf(element), canonicalizer));
+                } else if (value instanceof JsonNode node) {
+                    node.forEach(element -> add(names, textOf(element), canonicalizer));
+                } else {
+                    add(names, textOf(value), canonicalizer);
+                }
+            }
+            for (PathAccessor scalar : paths) {
+                add(names, textOf(scalar.read(record)), canonicalizer);
+            }
+
+            return names.isEmpty() && path == null && paths.isEmpty() ? defaults : names.toArray(new String[0]);
+        }
+
+        private void add(List<String> names, String name, UnaryOperator<String> canonicalizer) {
+            if (!isMissing(name, missingIf)) {
+                names.add(canonical ? canonicalizer.apply(name) : name);
+            }
+        }
+    }
+
+    private static final class DateValue {
+
+        private static final DateValue ABSENT = new DateValue(null, null, Set.of());
+
+        private final PathAccessor path;
+        private final DateTimeFormatter formatter;
+        private final Set<String> missingIf;
+
+        private DateValue(PathAccessor path, DateTimeFormatter formatter, Set<String> missingIf) {
+            this.path = path;
+            this.formatter = formatter;
+            this.missingIf = missingIf;
+        }
+
+        /**
+         * @return Epoch seconds, {@link ScrapedEvent#NO_DATE} when missing
+         * @throws java.time.format.DateTimeParseException When the date does not match the format
+         */
+        private long read(Object record) {
+            Object value = path != null ? path.read(record) : null;
+            if (formatter == null && value instanceof Number number) {
+                return number.longValue();
+            }
+            if (formatter == null && value instanceof JsonNode node && node.isNumber()) {
+                return node.asLong();
+            }
+
+            String text = textOf(value);
+            if (isMissing(text, missingIf)) {
+                return ScrapedEvent.NO_DATE;
+            }
+            return formatter == null
+                    ? Long.parseLong(text.trim())
+                    : LocalDateTime.parse(text.trim(), formatter).toEpochSecond(ZoneOffset.UTC);
+        }
+    }
+}
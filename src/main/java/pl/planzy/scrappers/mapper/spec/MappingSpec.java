@@ -0,0 +1,116 @@
+package pl.planzy.scrappers.mapper.spec;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.core.io.Resource;
+import pl.planzy.dto.EventSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declarative mapping of one source's records into events, read from JSON and compiled by {@link ExtractionPlan}.
+ * <p>
+ * Every event field is described by a {@link Field}. Paths are JSON pointers in the names of the source's
+ * JSON, e.g. {@code /nextEventPlace/city} or {@code /locations_names/0}, whatever type the records are
+ * bound into. Unknown keys are rejected, so a typo fails the startup instead of mapping nothing.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class MappingSpec {
+
+    private EventSource source;
+
+    /**
+     * Named values that templates refer to as {@code {name}}.
+     */
+    private Map<String, Field> vars = new LinkedHashMap<>();
+
+    private Field name;
+    private Field artists;
+    private Field startDate;
+    private Field endDate;
+    private Field thumbnail;
+    private Field url;
+    private Field location;
+    private Field place;
+    private Field category;
+    private Field tags;
+    private Field description;
+
+    public static MappingSpec load(ObjectMapper objectMapper, Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            return objectMapper.readerFor(MappingSpec.class)
+                    .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                    .readValue(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read mapping spec " + resource.getDescription(), e);
+        }
+    }
+
+    /**
+     * Where the value of an event field comes from and how it is cleaned up.
+     * <p>
+     * The value is read from {@code path}, built from {@code template} or, for names and tags, collected
+     * from {@code paths}. Then it is missing when it is null or its trimmed text equals one of
+     * {@code missingIf}, ignoring case. A missing value falls back to {@code fallback}, then to
+     * {@code default}, and fails the record if {@code required}.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Field {
+
+        private String path;
+
+        /**
+         * Scalar values collected into a list of names, the missing ones skipped.
+         */
+        private List<String> paths;
+
+        /**
+         * Text with {@code {/pointer}} and {@code {var}} placeholders, missing if any placeholder is.
+         */
+        private String template;
+
+        /**
+         * Prefix of the thumbnail URL, only added to a value that is not missing.
+         */
+        private String base;
+
+        /**
+         * Literal replacements applied to the text, in order.
+         */
+        private Map<String, String> replace = new LinkedHashMap<>();
+
+        private List<String> missingIf = new ArrayList<>();
+
+        /**
+         * {@code epoch-seconds}, {@code iso-local-date-time} or a {@code DateTimeFormatter} pattern, local times are UTC.
+         */
+        private String date;
+
+        /**
+         * Whether the value is passed through the mapping string pool.
+         */
+        private boolean canonical;
+
+        private boolean required;
+
+        private Field fallback;
+
+        @JsonProperty("default")
+        private JsonNode defaultValue;
+    }
+}
@@ -0,0 +1,98 @@
+package pl.planzy.scrappers.mapper.spec;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * JSON pointer compiled against the type records are bound into, for reading without any lookup by name.
+ * <p>
+ * Segments over a bean resolve to the accessor of the property Jackson binds that JSON name to, so
+ * {@code @JsonProperty} renames are followed. Segments over arrays and lists are indexes, segments over a
+ * {@link JsonNode} navigate the tree. A pointer that cannot be resolved against the type fails compilation.
+ */
+final class PathAccessor {
+
+    private final String pointer;
+    private final List<UnaryOperator<Object>> steps;
+
+    private PathAccessor(String pointer, List<UnaryOperator<Object>> steps) {
+        this.pointer = pointer;
+        this.steps = steps;
+    }
+
+    static PathAccessor compile(ObjectMapper objectMapper, Class<?> recordType, String pointer) {
+        List<UnaryOperator<Object>> steps = new ArrayList<>();
+        Class<?> type = recordType;
+
+        for (JsonPointer segment = JsonPointer.compile(pointer); !segment.matches(); segment = segment.tail()) {
+            String name = segment.getMatchingProperty();
+            int index = segment.getMatchingIndex();
+
+            if (JsonNode.class.isAssignableFrom(type)) {
+                steps.add(index >= 0
+                        ? value -> ((JsonNode) value).isArray() ? ((JsonNode) value).get(index) : ((JsonNode) value).get(name)
+                        : value -> ((JsonNode) value).get(name));
+            } else if (type.isArray() && !type.getComponentType().isPrimitive()) {
+                requireIndex(pointer, name, index, type);
+                steps.add(value -> index < ((Object[]) value).length ? ((Object[]) value)[index] : null);
+                type = type.getComponentType();
+            } else if (List.class.isAssignableFrom(type)) {
+                requireIndex(pointer, name, index, type);
+                steps.add(value -> index < ((List<?>) value).size() ? ((List<?>) value).get(index) : null);
+                type = Object.class;
+            } else if (type != Object.class) {
+                AnnotatedMember accessor = accessorOf(objectMapper, type, name, pointer);
+                steps.add(accessor::getValue);
+                type = accessor.getRawType();
+            } else {
+                throw new IllegalStateException("Cannot resolve " + pointer + " at " + name + ", the type of the value is unknown");
+            }
+        }
+
+        return new PathAccessor(pointer, List.copyOf(steps));
+    }
+
+    /**
+     * @return The value at the pointer, {@code null} when anything along it is missing
+     */
+    Object read(Object record) {
+        Object value = record;
+        for (UnaryOperator<Object> step : steps) {
+            value = step.apply(value);
+            if (value == null) {
+                return null;
+            }
+        }
+        return value;
+    }
+
+    String getPointer() {
+        return pointer;
+    }
+
+    private static AnnotatedMember accessorOf(ObjectMapper objectMapper, Class<?> type, String name, String pointer) {
+        BeanDescription description = objectMapper.getSerializationConfig().introspect(objectMapper.constructType(type));
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (property.getName().equals(name) && property.getAccessor() != null) {
+                AnnotatedMember accessor = property.getAccessor();
+                accessor.fixAccess(true);
+                return accessor;
+            }
+        }
+        throw new IllegalStateException("Cannot resolve " + pointer + ": " + type.getSimpleName() + " has no property " + name);
+    }
+
+    private static void requireIndex(String pointer, String name, int index, Class<?> type) {
+        if (index < 0) {
+            throw new IllegalStateException("Cannot resolve " + pointer + ": " + name + " is no index into " + type.getSimpleName());
+        }
+    }
+}
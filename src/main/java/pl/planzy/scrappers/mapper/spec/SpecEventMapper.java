@@ -0,0 +1,28 @@
+package pl.planzy.scrappers.mapper.spec;
+
+import pl.planzy.config.ScraperProperties;
+import pl.planzy.dto.ScrapedEvent;
+import pl.planzy.scrappers.mapper.AbstractEventMapper;
+import pl.planzy.util.StringPool;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
+
+/**
+ * Maps records by the compiled extraction plan of their source's {@link MappingSpec}.
+ */
+public class SpecEventMapper<T> extends AbstractEventMapper<T> {
+
+    private final ExtractionPlan<T> plan;
+    private final UnaryOperator<String> canonical = this::canonical;
+
+    public SpecEventMapper(ExtractionPlan<T> plan, ForkJoinPool mappingPool, StringPool stringPool, ScraperProperties properties) {
+        super(mappingPool, stringPool, properties);
+        this.plan = plan;
+    }
+
+    @Override
+    protected ScrapedEvent mapEvent(T record) {
+        return plan.extract(record, canonical);
+    }
+}
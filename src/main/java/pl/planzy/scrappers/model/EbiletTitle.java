@@ -0,0 +1,43 @@
+package pl.planzy.scrappers.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Element of the "titles" array of the eBilet listing, only the fields the mapper reads are bound.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EbiletTitle {
+
+    private String title;
+    private String[] artists;
+    private String dateFrom;
+    private String dateTo;
+    private NextEventPlace nextEventPlace;
+    private String linkTo;
+    private String category;
+    private String categoryName;
+    private String subcategory;
+    private String subcategoryName;
+    private String slug;
+    private String imageLandscape;
+    private String metaDescription;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @ToString
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class NextEventPlace {
+
+        private String customName;
+        private String city;
+    }
+}
@@ -0,0 +1,56 @@
+package pl.planzy.scrappers.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Hit of GoingApp's Algolia search, only the fields the mapper reads are bound.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class GoingAppHit {
+
+    @JsonProperty("objectID")
+    private String objectId;
+
+    @JsonProperty("name_pl")
+    private String namePl;
+
+    @JsonProperty("description_pl")
+    private String descriptionPl;
+
+    @JsonProperty("start_date_timestamp")
+    private Long startDateTimestamp;
+
+    @JsonProperty("end_date_timestamp")
+    private Long endDateTimestamp;
+
+    @JsonProperty("artists_names")
+    private String[] artistsNames;
+
+    @JsonProperty("locations_names")
+    private String[] locationsNames;
+
+    @JsonProperty("tags_names")
+    private String[] tagsNames;
+
+    @JsonProperty("place_name")
+    private String placeName;
+
+    @JsonProperty("category_name")
+    private String categoryName;
+
+    private String slug;
+
+    @JsonProperty("rundate_slug")
+    private String rundateSlug;
+
+    private String thumbnail;
+}
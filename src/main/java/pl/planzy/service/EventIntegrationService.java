@@ -1,423 +1,684 @@
 package pl.planzy.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
-import pl.planzy.entity.Artist;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.planzy.config.IngestProperties;
+import pl.planzy.dto.ScrapedEvent;
 import pl.planzy.entity.Event;
+import pl.planzy.entity.IngestCheckpoint;
 import pl.planzy.entity.Place;
-import pl.planzy.entity.Tag;
-import pl.planzy.repository.ArtistRepository;
-import pl.planzy.repository.EventRepository;
-import pl.planzy.repository.PlaceRepository;
-import pl.planzy.repository.TagRepository;
+import pl.planzy.service.ingest.DictionaryCache;
+import pl.planzy.service.ingest.EventBulkWriter;
+import pl.planzy.service.ingest.EventRelationshipWriter;
+import pl.planzy.service.ingest.FullReloadLoader;
+import pl.planzy.service.ingest.IngestCheckpointService;
+import pl.planzy.service.ingest.IngestStats;
+import pl.planzy.service.ingest.NameResolver;
+import pl.planzy.service.ingest.OffsetTracker;
+import pl.planzy.service.ingest.UrlIndex;
+import pl.planzy.service.ingest.WriterLanes;
+import pl.planzy.util.Fingerprints;
+import pl.planzy.util.NameIdDictionary;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 public class EventIntegrationService {
 
     private static final Logger logger = LoggerFactory.getLogger(EventIntegrationService.class);
-    private static final int BATCH_SIZE = 20;
-    private static final int FLUSH_THRESHOLD = 50;
 
     @PersistenceContext
     private EntityManager entityManager;
 
-    private final EventRepository eventRepository;
-    private final ArtistRepository artistRepository;
-    private final PlaceRepository placeRepository;
-    private final TagRepository tagRepository;
-    private final JdbcTemplate jdbcTemplate;
-
-    // Cache maps to avoid repetitive database lookups
-    private final Map<String, Place> placeCache = new ConcurrentHashMap<>();
-    private final Map<String, Artist> artistCache = new ConcurrentHashMap<>();
-    private final Map<String, Tag> tagCache = new ConcurrentHashMap<>();
-    private final Set<String> processedUrls = new HashSet<>();
+    private final EventBulkWriter eventBulkWriter;
+    private final EventRelationshipWriter eventRelationshipWriter;
+    private final NameResolver nameResolver;
+    private final FullReloadLoader fullReloadLoader;
+    private final DictionaryCache dictionaryCache;
+    private final UrlIndex urlIndex;
+    private final IngestProperties properties;
+    private final IngestCheckpointService checkpointService;
+    private final WriterLanes writerLanes;
+    private final TransactionTemplate chunkTransaction;
 
     @Autowired
-    public EventIntegrationService(EventRepository eventRepository,
-                                   ArtistRepository artistRepository,
-                                   PlaceRepository placeRepository,
-                                   TagRepository tagRepository,
-                                   JdbcTemplate jdbcTemplate) {
-        this.eventRepository = eventRepository;
-        this.artistRepository = artistRepository;
-        this.placeRepository = placeRepository;
-        this.tagRepository = tagRepository;
-        this.jdbcTemplate = jdbcTemplate;
+    public EventIntegrationService(EventBulkWriter eventBulkWriter,
+                                   EventRelationshipWriter eventRelationshipWriter,
+                                   NameResolver nameResolver,
+                                   FullReloadLoader fullReloadLoader,
+                                   DictionaryCache dictionaryCache,
+                                   UrlIndex urlIndex,
+                                   IngestProperties properties,
+                                   IngestCheckpointService checkpointService,
+                                   WriterLanes writerLanes,
+                                   PlatformTransactionManager transactionManager) {
+        this.eventBulkWriter = eventBulkWriter;
+        this.eventRelationshipWriter = eventRelationshipWriter;
+        this.nameResolver = nameResolver;
+        this.fullReloadLoader = fullReloadLoader;
+        this.dictionaryCache = dictionaryCache;
+        this.urlIndex = urlIndex;
+        this.properties = properties;
+        this.checkpointService = checkpointService;
+        this.writerLanes = writerLanes;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
     }
 
     /**
      * Pre-loads frequently accessed data into cache to minimize database queries.
      */
     private void preloadCaches() {
-        logger.info("Preloading entity caches to improve performance...");
+        logger.info("Preloading caches to improve performance...");
 
-        // Load all places into cache
-        placeRepository.findAll().forEach(place -> placeCache.put(place.getName(), place));
-        logger.info("Loaded {} places into cache", placeCache.size());
+        // Load places, artists and tags added since the previous run into the name dictionaries
+        dictionaryCache.refresh();
 
-        // Load all artists into cache
-        artistRepository.findAll().forEach(artist -> artistCache.put(artist.getName(), artist));
-        logger.info("Loaded {} artists into cache", artistCache.size());
+        // Load fingerprints of event URLs stored since the previous run to avoid duplicates
+        urlIndex.refresh();
+    }
 
-        // Load all tags into cache
-        tagRepository.findAll().forEach(tag -> tagCache.put(tag.getName(), tag));
-        logger.info("Loaded {} tags into cache", tagCache.size());
+    /**
+     * Loads the caches used while writing chunks, call once before the sources of a run are opened.
+     */
+    public void prepare() {
+        preloadCaches();
+    }
 
-        // Load all event URLs to avoid duplicates
-        jdbcTemplate.query("SELECT url FROM events", rs -> {
-            processedUrls.add(rs.getString(1));
+    /**
+     * Main method to process scraped events with optimized database access.
+     * Events are grouped by source and every chunk is committed on its own together with the checkpoint
+     * of its source, so a failure loses at most one chunk and an interrupted run resumes where it stopped.
+     */
+    public IngestStats processScrapedEvents(List<ScrapedEvent> events) {
+        return processScrapedEvents(events, source -> {
         });
-        logger.info("Loaded {} event URLs for duplicate prevention", processedUrls.size());
     }
 
     /**
-     * Main method to process scraped events with optimized database access.
+     * Like {@link #processScrapedEvents(List)}, reporting every source whose run was left unfinished
+     * because one of its chunks failed.
      */
-    @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED)
-    public void processScrapedEvents(List<JsonNode> events) {
+    public IngestStats processScrapedEvents(List<ScrapedEvent> events, Consumer<String> unfinishedSources) {
         logger.info("Saving scraped data to database - [{}] events ...", events.size());
 
         // Preload caches for better performance
         preloadCaches();
 
-        int totalProcessed = 0;
-        int successCount = 0;
-        int skipCount = 0;
-        int errorCount = 0;
-        int flushCounter = 0;
+        IngestStats stats = new IngestStats();
+        Map<String, List<ScrapedEvent>> eventsBySource = events.stream()
+                .collect(Collectors.groupingBy(this::getEventSource, LinkedHashMap::new, Collectors.toList()));
 
-        // Process in batches for better performance
-        for (int i = 0; i < events.size(); i += BATCH_SIZE) {
-            int endIndex = Math.min(i + BATCH_SIZE, events.size());
-            List<JsonNode> batch = events.subList(i, endIndex);
+        for (Map.Entry<String, List<ScrapedEvent>> sourceEvents : eventsBySource.entrySet()) {
+            SourceWriter writer = openSource(sourceEvents.getKey(), stats, false);
+            writer.accept(sourceEvents.getValue(), null);
+            if (!writer.finish()) {
+                unfinishedSources.accept(sourceEvents.getKey());
+            }
+        }
 
-            logger.info("Processing batch {}-{} of {} events", i, endIndex-1, events.size());
+        logger.info("Finished processing events. Total: {}, {}", events.size(), stats);
+        return stats;
+    }
 
-            // Process each event in the batch
-            for (JsonNode eventNode : batch) {
-                try {
-                    String url = getEventUrl(eventNode);
+    /**
+     * Full reload of the whole catalog through staging tables and {@code COPY}, for first loads and rebuilds.
+     * Unlike {@link #processScrapedEvents} nothing is written until every event is staged, and no checkpoints are kept.
+     */
+    public IngestStats reloadAll(List<ScrapedEvent> events) {
+        logger.info("Reloading scraped data into database - [{}] events ...", events.size());
+
+        IngestStats stats = new IngestStats();
+        Map<String, FullReloadLoader.Row> rows = new LinkedHashMap<>();
+
+        for (ScrapedEvent scrapedEvent : events) {
+            try {
+                String url = scrapedEvent.getUrl();
+                if (url == null || rows.containsKey(url)) {
+                    stats.addSkipped(1);
+                    continue;
+                }
 
-                    // Skip already processed events (using cache)
-                    if (url == null || processedUrls.contains(url)) {
-                        skipCount++;
-                        continue;
-                    }
+                Event event = createEvent(scrapedEvent);
+                event.setContent_hash(computeContentHash(scrapedEvent));
+
+                String placeName = scrapedEvent.getPlace();
+                rows.put(url, new FullReloadLoader.Row(event,
+                        placeName != null && !placeName.isEmpty() ? NameIdDictionary.normalize(placeName) : null,
+                        parseNames(scrapedEvent.getArtists()),
+                        parseNames(scrapedEvent.getTags())));
+            } catch (Exception e) {
+                logger.error("Error processing event: {}", e.getMessage());
+                stats.addErrors(1);
+            }
+        }
 
-                    // Process the event
-                    Event savedEvent = processEvent(eventNode);
-                    if (savedEvent != null) {
-                        processedUrls.add(url);
-                        successCount++;
-                        flushCounter++;
-                    } else {
-                        skipCount++;
-                    }
+        FullReloadLoader.Result result = fullReloadLoader.load(new ArrayList<>(rows.values()));
+        stats.addInserted(result.getInserted());
+        stats.addUpdated(result.getUpdated());
+        stats.addSkipped(rows.size() - result.getInserted() - result.getUpdated());
 
-                    // Periodically flush and clear to prevent memory issues
-                    if (flushCounter >= FLUSH_THRESHOLD) {
-                        entityManager.flush();
-                        entityManager.clear();
-                        flushCounter = 0;
-                    }
-                } catch (Exception e) {
-                    logger.error("Error processing event: {}", e.getMessage());
-                    errorCount++;
+        // Pick up the new rows, and the hashes of updated events which keep their IDs
+        preloadCaches();
+        urlIndex.putAll(result.getWrittenHashes());
+
+        logger.info("Finished reloading events. Total: {}, {}", events.size(), stats);
+        return stats;
+    }
+
+    /**
+     * Starts or resumes the ingest run of a source.
+     *
+     * @param source Source name, as in the "source" field of its mapped events
+     * @param stats  Counters the writer adds its results to
+     * @param resumeFromCursor Whether the events will be scraped from {@link SourceWriter#getResumeCursor()} on,
+     *                         otherwise they are expected from the first one
+     */
+    public SourceWriter openSource(String source, IngestStats stats, boolean resumeFromCursor) {
+        return new SourceWriter(checkpointService.start(source), stats, resumeFromCursor);
+    }
+
+    /**
+     * Writes one chunk of mapped events in its own transaction: new events are inserted with their
+     * relationships, stored events whose content hash differs are updated and unchanged ones are skipped.
+     * When a checkpoint is given it is moved to {@code endOffset} and {@code pageCursor} in the same transaction.
+     */
+    public IngestStats processChunk(List<ScrapedEvent> chunk, IngestCheckpoint checkpoint, long endOffset, Map.Entry<Long, String> pageCursor) {
+        Map<String, Long> writtenHashes = new HashMap<>();
+        List<Runnable> afterCommit = new ArrayList<>();
+
+        IngestStats stats = chunkTransaction.execute(status -> {
+            IngestStats chunkStats = writeChunk(chunk, writtenHashes, afterCommit);
+            if (checkpoint != null) {
+                checkpointService.advance(checkpoint, endOffset, pageCursor);
+            }
+            return chunkStats;
+        });
+
+        // Only committed rows may be treated as stored
+        afterCommit.forEach(Runnable::run);
+        urlIndex.putAll(writtenHashes);
+        return stats;
+    }
+
+    private IngestStats writeChunk(List<ScrapedEvent> chunk, Map<String, Long> writtenHashes, List<Runnable> afterCommit) {
+        IngestStats stats = new IngestStats();
+        Map<String, ScrapedEvent> eventsByUrl = new LinkedHashMap<>();
+        List<Event> newEvents = new ArrayList<>();
+        List<Event> changedEvents = new ArrayList<>();
+
+        // Find already stored events of the whole chunk at once, with the content hash they were stored with
+        Map<String, Long> storedHashes = urlIndex.findStored(chunk.stream()
+                .map(ScrapedEvent::getUrl)
+                .filter(Objects::nonNull)
+                .toList());
+
+        for (ScrapedEvent scrapedEvent : chunk) {
+            try {
+                String url = scrapedEvent.getUrl();
+
+                // Skip duplicates within the chunk
+                if (url == null || eventsByUrl.containsKey(url)) {
+                    stats.addSkipped(1);
+                    continue;
                 }
 
-                totalProcessed++;
-                if (totalProcessed % 50 == 0) {
-                    logger.info("Progress: {}/{} events processed. Success: {}, Skipped: {}, Errors: {}",
-                            totalProcessed, events.size(), successCount, skipCount, errorCount);
+                // Skip stored events that did not change
+                long contentHash = computeContentHash(scrapedEvent);
+                Long storedHash = storedHashes.get(url);
+                if (storedHash != null && storedHash == contentHash) {
+                    stats.addSkipped(1);
+                    continue;
                 }
+
+                Event event = createEvent(scrapedEvent);
+                event.setContent_hash(contentHash);
+                (storedHash == null ? newEvents : changedEvents).add(event);
+                eventsByUrl.put(url, scrapedEvent);
+            } catch (Exception e) {
+                logger.error("Error processing event: {}", e.getMessage());
+                stats.addErrors(1);
             }
+        }
+
+        // Resolve the places of all written events at once, they have to exist before events reference them
+        List<Event> writtenEvents = new ArrayList<>(newEvents);
+        writtenEvents.addAll(changedEvents);
+        assignPlaces(writtenEvents, eventsByUrl, afterCommit);
 
-            // Flush changes after each batch
-            entityManager.flush();
-            entityManager.clear();
+        Map<String, Long> updatedIds = eventBulkWriter.updateAll(changedEvents);
+        stats.addUpdated(updatedIds.size());
+
+        // Changed events that are not stored after all (deleted meanwhile or an index collision) are inserted
+        for (Event event : changedEvents) {
+            if (!updatedIds.containsKey(event.getUrl())) {
+                newEvents.add(event);
+            }
         }
 
-        logger.info("Finished processing events. Total: {}, Success: {}, Skipped: {}, Errors: {}",
-                events.size(), successCount, skipCount, errorCount);
-    }
+        EventBulkWriter.Result result = eventBulkWriter.insertAll(newEvents);
+        stats.addSkipped(result.getSkipped());
+        stats.addInserted(result.getInserted());
 
-    /**
-     * Processes a single event with optimized entity creation.
-     */
-    private Event processEvent(JsonNode eventNode) {
-        String eventUrl = getEventUrl(eventNode);
-        if (eventUrl == null) {
-            logger.warn("Skipping event without URL");
-            return null;
+        // URLs the insert found taken belong to rows the index missed, committed below its refresh watermark
+        if (result.getSkipped() > 0) {
+            urlIndex.putStored(newEvents.stream()
+                    .map(Event::getUrl)
+                    .filter(url -> !result.getInsertedIds().containsKey(url))
+                    .toList());
         }
 
-        // Check for existing URL using our cache first
-        if (processedUrls.contains(eventUrl)) {
-            logger.debug("Event with URL {} already exists, skipping", eventUrl);
-            return null;
+        Map<String, Long> writtenIds = new LinkedHashMap<>(result.getInsertedIds());
+        writtenIds.putAll(updatedIds);
+        for (Event event : writtenEvents) {
+            if (writtenIds.containsKey(event.getUrl())) {
+                writtenHashes.put(event.getUrl(), event.getContent_hash());
+            }
         }
 
-        // Create new event with necessary data
-        Event newEvent = createEventFromNode(eventNode);
+        // Replace the join rows of updated events, collect those of all written events and write them together
+        eventRelationshipWriter.deleteAll(updatedIds.values());
+        eventRelationshipWriter.write(collectRelationships(writtenIds, eventsByUrl, afterCommit));
 
-        // Save the event first to generate ID
-        Event savedEvent = eventRepository.saveAndFlush(newEvent);
+        // Keep the persistence context small
+        entityManager.clear();
 
-        // Process place, artists and tags efficiently
-        assignPlace(savedEvent, eventNode);
-        processRelationships(savedEvent, eventNode);
+        return stats;
+    }
 
-        return savedEvent;
+    /**
+     * Fingerprint of all mapped fields of an event except its URL and source. Artists and tags are
+     * compared as sorted sets, so a different order on the source page does not count as a change.
+     * Dates are hashed in the text form mappers used to produce, so stored hashes stay valid.
+     */
+    private long computeContentHash(ScrapedEvent event) {
+        long hash = Fingerprints.ofAll(
+                event.getName(),
+                dateText(event.getStartDate()),
+                dateText(event.getEndDate()),
+                event.getThumbnail(),
+                event.getLocation(),
+                event.getCategory(),
+                event.getDescription(),
+                event.getPlace(),
+                String.join(",", new TreeSet<>(parseNames(event.getArtists()))),
+                String.join(",", new TreeSet<>(parseNames(event.getTags()))));
+
+        // The stored hash of legacy rows must never match
+        return hash != UrlIndex.UNKNOWN_HASH ? hash : 1L;
+    }
+
+    private static String dateText(long epochSeconds) {
+        return epochSeconds != ScrapedEvent.NO_DATE ? Long.toString(epochSeconds) : "null";
     }
 
     /**
-     * Creates an Event entity from JsonNode data.
+     * Creates an Event entity from a scraped event.
      */
-    private Event createEventFromNode(JsonNode eventNode) {
+    private Event createEvent(ScrapedEvent scrapedEvent) {
         Event newEvent = new Event();
 
-        JsonNode nameNode = eventNode.get("event_name");
-        newEvent.setEvent_name(nameNode != null ? nameNode.asText() : "Unknown Event");
+        newEvent.setEvent_name(scrapedEvent.getName() != null ? scrapedEvent.getName() : "Unknown Event");
 
         // Handle dates with default values
-        JsonNode startDateNode = eventNode.get("start_date");
-        LocalDateTime startDate = startDateNode != null ? parseTimestamp(startDateNode.asText()) : null;
-        newEvent.setStart_date(startDate != null ? startDate : LocalDateTime.now());
-
-        JsonNode endDateNode = eventNode.get("end_date");
-        LocalDateTime endDate = endDateNode != null ? parseTimestamp(endDateNode.asText()) : null;
-        newEvent.setEnd_date(endDate != null ? endDate : LocalDateTime.now().plusHours(1));
-
-        JsonNode thumbnailNode = eventNode.get("thumbnail");
-        newEvent.setThumbnail(thumbnailNode != null ? thumbnailNode.asText() : "No thumbnail");
-
-        newEvent.setUrl(eventNode.get("url").asText());
-
-        JsonNode locationNode = eventNode.get("location");
-        newEvent.setLocation(locationNode != null ? locationNode.asText() : "Unknown Location");
-
-        JsonNode categoryNode = eventNode.get("category");
-        newEvent.setCategory(categoryNode != null ? categoryNode.asText() : "Unknown Category");
+        newEvent.setStart_date(scrapedEvent.hasStartDate() ? toDateTime(scrapedEvent.getStartDate()) : LocalDateTime.now());
+        newEvent.setEnd_date(scrapedEvent.hasEndDate() ? toDateTime(scrapedEvent.getEndDate()) : LocalDateTime.now().plusHours(1));
 
-        JsonNode descriptionNode = eventNode.get("description");
-        newEvent.setDescription(descriptionNode != null ? descriptionNode.asText() : "No description available");
-
-        JsonNode sourceNode = eventNode.get("source");
-        newEvent.setSource(sourceNode != null ? sourceNode.asText() : "Unknown Source");
+        newEvent.setThumbnail(scrapedEvent.getThumbnail() != null ? scrapedEvent.getThumbnail() : "No thumbnail");
+        newEvent.setUrl(scrapedEvent.getUrl());
+        newEvent.setLocation(scrapedEvent.getLocation() != null ? scrapedEvent.getLocation() : "Unknown Location");
+        newEvent.setCategory(scrapedEvent.getCategory() != null ? scrapedEvent.getCategory() : "Unknown Category");
+        newEvent.setDescription(scrapedEvent.getDescription() != null ? scrapedEvent.getDescription() : "No description available");
+        newEvent.setSource(getEventSource(scrapedEvent));
 
         return newEvent;
     }
 
     /**
-     * Gets the event URL from JsonNode.
+     * Gets the source name of a scraped event.
      */
-    private String getEventUrl(JsonNode eventNode) {
-        JsonNode urlNode = eventNode.get("url");
-        return urlNode != null ? urlNode.asText() : null;
+    private String getEventSource(ScrapedEvent scrapedEvent) {
+        return scrapedEvent.getSource() != null ? scrapedEvent.getSource().getSourceName() : "Unknown Source";
     }
 
     /**
-     * Optimized place assignment using cache.
+     * Place assignment of a whole chunk, resolving all place names with one lookup.
      */
-    private void assignPlace(Event event, JsonNode eventNode) {
-        JsonNode placeNode = eventNode.get("place");
-        if (placeNode == null || placeNode.asText().isEmpty()) {
-            return;
+    private void assignPlaces(List<Event> events, Map<String, ScrapedEvent> eventsByUrl, List<Runnable> afterCommit) {
+        Map<Event, String> placeNames = new HashMap<>();
+        for (Event event : events) {
+            String placeName = eventsByUrl.get(event.getUrl()).getPlace();
+            if (placeName != null && !placeName.isEmpty()) {
+                placeNames.put(event, NameIdDictionary.normalize(placeName));
+            }
         }
 
-        String placeName = placeNode.asText().trim();
+        Map<String, Long> placeIds = nameResolver.resolve(NameResolver.Kind.PLACE, placeNames.values(), afterCommit);
 
-        // Check cache first
-        Place place = placeCache.computeIfAbsent(placeName, name -> {
-            // Check database if not in cache
-            Optional<Place> existingPlace = placeRepository.findByName(name);
-            if (existingPlace.isPresent()) {
-                return existingPlace.get();
+        // Set place without bidirectional relationship management
+        placeNames.forEach((event, placeName) -> {
+            Long placeId = placeIds.get(placeName);
+            if (placeId != null) {
+                event.setPlace(entityManager.getReference(Place.class, placeId));
             }
-
-            // Create new place if not found
-            Place newPlace = new Place();
-            newPlace.setName(name);
-            return placeRepository.save(newPlace);
         });
-
-        // Set place without bidirectional relationship management
-        event.setPlace(place);
     }
 
     /**
-     * Process artists and tags with batch optimization.
+     * Collects the artist and tag pairs of written events, resolving the names of the whole chunk at once.
+     * The events are new or had their pairs removed, so none of their pairs exist and no pair lookups are needed.
      */
-    private void processRelationships(Event event, JsonNode eventNode) {
-        // Process artists
-        JsonNode artistsNode = eventNode.get("artists");
-        if (artistsNode != null && !artistsNode.asText().isEmpty()) {
-            Set<String> artistNames = parseNames(artistsNode.asText());
-            Set<Artist> artistsToAdd = getOrCreateArtists(artistNames);
-
-            // Add all artists at once, avoiding duplicates
-            for (Artist artist : artistsToAdd) {
-                // Skip if relationship already exists
-                if (!hasArtistRelationship(event.getId(), artist.getId())) {
-                    event.getArtists().add(artist);
-                }
+    private EventRelationshipWriter.Batch collectRelationships(Map<String, Long> writtenIds,
+                                                               Map<String, ScrapedEvent> eventsByUrl,
+                                                               List<Runnable> afterCommit) {
+        Map<Long, Set<String>> artistsByEvent = new LinkedHashMap<>();
+        Map<Long, Set<String>> tagsByEvent = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Long> written : writtenIds.entrySet()) {
+            ScrapedEvent scrapedEvent = eventsByUrl.get(written.getKey());
+
+            Set<String> artists = parseNames(scrapedEvent.getArtists());
+            if (!artists.isEmpty()) {
+                artistsByEvent.put(written.getValue(), artists);
             }
-        }
 
-        // Process tags
-        JsonNode tagsNode = eventNode.get("tags");
-        if (tagsNode != null && !tagsNode.asText().isEmpty()) {
-            Set<String> tagNames = parseNames(tagsNode.asText());
-            Set<Tag> tagsToAdd = getOrCreateTags(tagNames);
-
-            // Add all tags at once, avoiding duplicates
-            for (Tag tag : tagsToAdd) {
-                // Skip if relationship already exists
-                if (!hasTagRelationship(event.getId(), tag.getId())) {
-                    event.getTags().add(tag);
-                }
+            Set<String> tags = parseNames(scrapedEvent.getTags());
+            if (!tags.isEmpty()) {
+                tagsByEvent.put(written.getValue(), tags);
             }
         }
 
-        // Save the event with its relationships
-        eventRepository.save(event);
+        Map<String, Long> artistIds = nameResolver.resolve(NameResolver.Kind.ARTIST, flatten(artistsByEvent), afterCommit);
+        Map<String, Long> tagIds = nameResolver.resolve(NameResolver.Kind.TAG, flatten(tagsByEvent), afterCommit);
+
+        EventRelationshipWriter.Batch relationships = eventRelationshipWriter.newBatch();
+        artistsByEvent.forEach((eventId, names) -> {
+            for (String name : names) {
+                relationships.addArtist(eventId, artistIds.get(name));
+            }
+        });
+        tagsByEvent.forEach((eventId, names) -> {
+            for (String name : names) {
+                relationships.addTag(eventId, tagIds.get(name));
+            }
+        });
+        return relationships;
     }
 
-    /**
-     * Check if an event-artist relationship already exists.
-     */
-    private boolean hasArtistRelationship(Long eventId, Long artistId) {
-        Integer count = jdbcTemplate.queryForObject(
-                "SELECT COUNT(*) FROM event_artists WHERE event_id = ? AND artist_id = ?",
-                Integer.class, eventId, artistId);
-        return count != null && count > 0;
+    private static Set<String> flatten(Map<Long, Set<String>> namesByEvent) {
+        Set<String> names = new HashSet<>();
+        namesByEvent.values().forEach(names::addAll);
+        return names;
     }
 
     /**
-     * Check if an event-tag relationship already exists.
+     * Unique, trimmed names of a mapped name array, without empty ones.
      */
-    private boolean hasTagRelationship(Long eventId, Long tagId) {
-        Integer count = jdbcTemplate.queryForObject(
-                "SELECT COUNT(*) FROM event_tags WHERE event_id = ? AND tag_id = ?",
-                Integer.class, eventId, tagId);
-        return count != null && count > 0;
+    private Set<String> parseNames(String[] names) {
+        Set<String> parsed = new HashSet<>(names.length * 2);
+        for (String name : names) {
+            String trimmed = name != null ? name.trim() : "";
+            if (!trimmed.isEmpty()) {
+                parsed.add(trimmed);
+            }
+        }
+        return parsed;
     }
 
-    /**
-     * Parse comma-separated names into a set of unique, trimmed names.
-     */
-    private Set<String> parseNames(String namesString) {
-        return Arrays.stream(namesString.split(","))
-                .map(String::trim)
-                .filter(name -> !name.isEmpty())
-                .collect(Collectors.toSet());
+    private static LocalDateTime toDateTime(long epochSeconds) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSeconds), ZoneId.systemDefault());
     }
 
     /**
-     * Get or create artists in batch, using cache for performance.
+     * Writes the events of one source in committed chunks and keeps the checkpoint of its run.
+     * Events up to the checkpoint of a resumed run are dropped, they were committed before. When the
+     * scraper resumes from the stored cursor only the events between the cursor and the checkpoint are
+     * dropped, the pages before the cursor are not scraped again at all.
+     * <p>
+     * With a single writer every chunk is committed together with the checkpoint. With more writers the
+     * events are partitioned by URL, each partition is chunked separately and written by its own lane, and
+     * the checkpoint follows the highest offset below which every chunk is committed.
+     * Not thread-safe, feed it from one thread.
      */
-    private Set<Artist> getOrCreateArtists(Set<String> artistNames) {
-        Set<Artist> artists = new HashSet<>();
-        Set<String> namesToCreate = new HashSet<>();
-
-        // First check cache
-        for (String name : artistNames) {
-            Artist cachedArtist = artistCache.get(name);
-            if (cachedArtist != null) {
-                artists.add(cachedArtist);
-            } else {
-                namesToCreate.add(name);
+    public class SourceWriter {
+
+        private final IngestCheckpoint checkpoint;
+        private final IngestStats stats;
+        private final long resumeOffset;
+        private final String resumeCursor;
+        private final List<ScrapedEvent>[] buffers;
+        private final long[] bufferOffsets;
+        private final OffsetTracker offsets;
+        private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+        private long received;
+        private volatile boolean checkpointing = true;
+        // Highest offset a lane took over to write into the checkpoint, guarded by this writer
+        private long claimedOffset;
+
+        @SuppressWarnings("unchecked")
+        private SourceWriter(IngestCheckpoint checkpoint, IngestStats stats, boolean resumeFromCursor) {
+            this.checkpoint = checkpoint;
+            this.stats = stats;
+            this.resumeOffset = checkpoint.getLastOffset();
+            this.resumeCursor = resumeFromCursor ? checkpoint.getResumeCursor() : null;
+            this.received = resumeCursor != null ? checkpoint.getCursorOffset() : 0;
+
+            int partitions = properties.getWriters() > 1 ? writerLanes.size() : 1;
+            this.buffers = new List[partitions];
+            this.bufferOffsets = new long[partitions];
+            for (int i = 0; i < partitions; i++) {
+                buffers[i] = new ArrayList<>();
             }
+            this.offsets = new OffsetTracker(resumeOffset);
+            this.claimedOffset = resumeOffset;
         }
 
-        // Batch create missing artists
-        if (!namesToCreate.isEmpty()) {
-            for (String name : namesToCreate) {
-                Artist newArtist = artistCache.computeIfAbsent(name, artistName -> {
-                    Optional<Artist> existingArtist = artistRepository.findByName(artistName);
-                    if (existingArtist.isPresent()) {
-                        return existingArtist.get();
-                    }
+        /**
+         * Cursor the scraper should resume from, {@code null} to scrape from the beginning.
+         */
+        public String getResumeCursor() {
+            return resumeCursor;
+        }
 
-                    Artist artist = new Artist();
-                    artist.setName(artistName);
-                    return artistRepository.save(artist);
-                });
-                artists.add(newArtist);
+        /**
+         * Takes the next page of the source.
+         *
+         * @param cursor Cursor resuming after the page, {@code null} if there is none
+         */
+        public void accept(List<ScrapedEvent> events, String cursor) {
+            for (ScrapedEvent event : events) {
+                received++;
+                if (received <= resumeOffset) {
+                    continue;
+                }
+
+                int partition = partitionOf(event);
+                List<ScrapedEvent> buffer = buffers[partition];
+                if (buffer.isEmpty()) {
+                    bufferOffsets[partition] = received;
+                }
+                offsets.receive(received, buffer.isEmpty());
+
+                buffer.add(event);
+                if (buffer.size() >= properties.getChunkSize()) {
+                    flush(partition);
+                }
+            }
+
+            if (cursor != null) {
+                offsets.endPage(received, cursor);
             }
         }
 
-        return artists;
-    }
+        /**
+         * Writes the remaining events, waits for all chunks and completes the run, unless a chunk failed.
+         *
+         * @return Whether the run completed, {@code false} if it stays unfinished at its last committed offset
+         */
+        public boolean finish() {
+            return end(true);
+        }
 
-    /**
-     * Get or create tags in batch, using cache for performance.
-     */
-    private Set<Tag> getOrCreateTags(Set<String> tagNames) {
-        Set<Tag> tags = new HashSet<>();
-        Set<String> namesToCreate = new HashSet<>();
-
-        // First check cache
-        for (String name : tagNames) {
-            Tag cachedTag = tagCache.get(name);
-            if (cachedTag != null) {
-                tags.add(cachedTag);
+        /**
+         * Writes the events received so far and waits for all chunks like {@link #finish()}, but leaves the
+         * run unfinished, for a scraper that failed before delivering all of its pages. The next run resumes
+         * after the last page written.
+         */
+        public void fail() {
+            end(false);
+        }
+
+        private boolean end(boolean complete) {
+            for (int i = 0; i < buffers.length; i++) {
+                if (!buffers[i].isEmpty()) {
+                    flush(i);
+                }
+            }
+
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+
+            if (checkpointing) {
+                advanceCheckpoint(received);
+                if (complete) {
+                    checkpointService.complete(checkpoint);
+                    return true;
+                }
+            }
+
+            logger.warn("Run {} of source {} left unfinished at offset {}, the next run resumes there",
+                    checkpoint.getRunId(), checkpoint.getSource(), checkpoint.getLastOffset());
+            return false;
+        }
+
+        private int partitionOf(ScrapedEvent event) {
+            if (buffers.length == 1) {
+                return 0;
+            }
+            String url = event.getUrl();
+            return url != null ? writerLanes.laneOf(Fingerprints.of(url)) : 0;
+        }
+
+        private void flush(int partition) {
+            List<ScrapedEvent> chunk = buffers[partition];
+            long firstOffset = bufferOffsets[partition];
+            buffers[partition] = new ArrayList<>();
+
+            if (buffers.length == 1) {
+                writeSynchronously(chunk, firstOffset);
             } else {
-                namesToCreate.add(name);
+                pending.removeIf(CompletableFuture::isDone);
+                pending.add(writerLanes.submit(partition, () -> processChunk(chunk, null, 0, null))
+                        .handle((chunkStats, error) -> {
+                            completeChunk(chunk, firstOffset, chunkStats, error);
+                            return null;
+                        }));
+            }
+        }
+
+        private void writeSynchronously(List<ScrapedEvent> chunk, long firstOffset) {
+            try {
+                Map.Entry<Long, String> pageCursor = offsets.cursorAt(received);
+                stats.add(processChunk(chunk, checkpointing ? checkpoint : null, received, pageCursor));
+                if (checkpointing) {
+                    claimedOffset = received;
+                    moveCheckpoint(received, pageCursor);
+                }
+            } catch (Exception e) {
+                logger.error("Error writing chunk of {} events of source {}: {}", chunk.size(), checkpoint.getSource(), e.getMessage());
+                stats.addErrors(chunk.size());
+                // Later chunks are still written, but the checkpoint stays before the failed chunk
+                checkpointing = false;
+            } finally {
+                offsets.close(firstOffset);
             }
+
+            logger.info("Progress of source {}: {} events received. {}", checkpoint.getSource(), received, stats);
         }
 
-        // Batch create missing tags
-        if (!namesToCreate.isEmpty()) {
-            for (String name : namesToCreate) {
-                Tag newTag = tagCache.computeIfAbsent(name, tagName -> {
-                    Optional<Tag> existingTag = tagRepository.findByName(tagName);
-                    if (existingTag.isPresent()) {
-                        return existingTag.get();
+        /**
+         * Runs on the writer lane once a partitioned chunk committed or failed. A failed chunk is never
+         * closed, so it pins the committed offset before it, and stopping the checkpoint happens under the
+         * same lock as advancing it, so no lane can advance past a chunk that failed on another lane.
+         * Only the offset and cursor are taken under the lock, the checkpoint is written outside of it.
+         */
+        private void completeChunk(List<ScrapedEvent> chunk, long firstOffset, IngestStats chunkStats, Throwable error) {
+            if (error == null) {
+                stats.add(chunkStats);
+            } else {
+                logger.error("Error writing chunk of {} events of source {}: {}", chunk.size(), checkpoint.getSource(), error.getMessage());
+                stats.addErrors(chunk.size());
+            }
+
+            Map.Entry<Long, String> pageCursor = null;
+            long offset = -1;
+            synchronized (this) {
+                if (error != null) {
+                    checkpointing = false;
+                } else {
+                    offsets.close(firstOffset);
+                    long committed = offsets.committedOffset();
+                    if (checkpointing && committed > claimedOffset) {
+                        claimedOffset = committed;
+                        offset = committed;
+                        pageCursor = offsets.cursorAt(committed);
                     }
+                }
+            }
 
-                    Tag tag = new Tag();
-                    tag.setName(tagName);
-                    return tagRepository.save(tag);
-                });
-                tags.add(newTag);
+            if (offset >= 0) {
+                recordCheckpoint(offset, pageCursor);
             }
+
+            logger.info("Progress of source {}: {}", checkpoint.getSource(), stats);
         }
 
-        return tags;
-    }
+        /**
+         * Moves the checkpoint to the offset once no chunk is pending anymore.
+         */
+        private void advanceCheckpoint(long offset) {
+            Map.Entry<Long, String> pageCursor;
+            synchronized (this) {
+                if (offset <= claimedOffset) {
+                    return;
+                }
+                claimedOffset = offset;
+                pageCursor = offsets.cursorAt(offset);
+            }
+            recordCheckpoint(offset, pageCursor);
+        }
 
-    /**
-     * Parse timestamp string to LocalDateTime.
-     */
-    private LocalDateTime parseTimestamp(String timestamp) {
-        if (timestamp == null || timestamp.equals("null")) {
-            return null;
+        /**
+         * Writes the checkpoint in a transaction of its own. Lanes may write their offsets out of order,
+         * the stored offset only ever moves forward, both in the database and in memory.
+         */
+        private void recordCheckpoint(long offset, Map.Entry<Long, String> pageCursor) {
+            checkpointService.record(checkpoint, offset, pageCursor);
+            synchronized (this) {
+                if (offset > checkpoint.getLastOffset()) {
+                    moveCheckpoint(offset, pageCursor);
+                }
+            }
         }
 
-        try {
-            long epochSeconds = Long.parseLong(timestamp);
-            return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSeconds), ZoneId.systemDefault());
-        } catch (NumberFormatException e) {
-            logger.warn("Invalid timestamp format: {}", timestamp);
-            return null;
+        private void moveCheckpoint(long offset, Map.Entry<Long, String> pageCursor) {
+            checkpoint.setLastOffset(offset);
+            if (pageCursor != null) {
+                checkpoint.setResumeCursor(pageCursor.getValue());
+                checkpoint.setCursorOffset(pageCursor.getKey());
+            }
         }
     }
-}
\ No newline at end of file
+}
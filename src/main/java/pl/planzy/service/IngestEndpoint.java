@@ -0,0 +1,29 @@
+package pl.planzy.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import pl.planzy.service.ingest.IngestRunStatus;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint {@code /actuator/ingest} with the run status of every source, keyed by source name.
+ */
+@Component
+@Endpoint(id = "ingest")
+public class IngestEndpoint {
+
+    private final IngestScheduler ingestScheduler;
+
+    @Autowired
+    public IngestEndpoint(IngestScheduler ingestScheduler) {
+        this.ingestScheduler = ingestScheduler;
+    }
+
+    @ReadOperation
+    public Map<String, IngestRunStatus> status() {
+        return ingestScheduler.getStatuses();
+    }
+}
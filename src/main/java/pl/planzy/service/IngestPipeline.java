@@ -0,0 +1,198 @@
+package pl.planzy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import pl.planzy.config.IngestProperties;
+import pl.planzy.dto.ScrapedEvent;
+import pl.planzy.scrappers.impl.Scrapper;
+import pl.planzy.service.ingest.IngestStats;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams scraped events into the database while the scrapers are still running.
+ * <p>
+ * Every scraper maps its pages as they arrive and puts them into a bounded queue, the calling thread
+ * drains the queue and hands the pages to a {@link EventIntegrationService.SourceWriter} per source,
+ * which commits fixed-size chunks together with the checkpoint of the source. When the writer falls
+ * behind the queue fills up and the scrapers block on it, so memory is bounded by the queue capacity
+ * instead of the catalog size, and never below the sum of the scrapers' preferred concurrency, so no
+ * scraper has to block while its requests are in flight.
+ * <p>
+ * Every page carries the cursor of its scraper, an interrupted run resumes each scraper at the cursor
+ * of its last committed page instead of scraping the source again from the beginning.
+ * <p>
+ * When writing fails or the calling thread is interrupted the queue is closed: its pages are dropped
+ * and every scraper still handing over a page fails, so no scraper blocks on a queue nobody drains.
+ */
+@Service
+public class IngestPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestPipeline.class);
+
+    private final ScrapperService scrapperService;
+    private final EventIntegrationService eventIntegrationService;
+    private final IngestProperties properties;
+
+    @Autowired
+    public IngestPipeline(ScrapperService scrapperService,
+                          EventIntegrationService eventIntegrationService,
+                          IngestProperties properties) {
+        this.scrapperService = scrapperService;
+        this.eventIntegrationService = eventIntegrationService;
+        this.properties = properties;
+    }
+
+    /**
+     * Scrapes all sources and writes their events, returning once every scraper finished and
+     * every event was written.
+     */
+    public IngestStats run() {
+        return run(scrapperService.getScrapers());
+    }
+
+    /**
+     * Scrapes the sources of the given scrapers and writes their events.
+     */
+    public IngestStats run(List<Scrapper<?>> scrapers) {
+        IngestStats stats = new IngestStats();
+
+        if (scrapers.isEmpty()) {
+            logger.warn("[{}] No scrapers available for execution.", getClass().getSimpleName());
+            return stats;
+        }
+
+        int queueCapacity = Math.max(properties.getPipeline().getQueueCapacity(),
+                scrapers.stream().mapToInt(Scrapper::preferredConcurrency).sum());
+        PageQueue queue = new PageQueue(queueCapacity);
+
+        logger.info("[{}] Starting pipelined ingest with [{}] scrapers, queue capacity [{}], chunk size [{}]",
+                getClass().getSimpleName(), scrapers.size(), queueCapacity, properties.getChunkSize());
+
+        eventIntegrationService.prepare();
+
+        Map<String, EventIntegrationService.SourceWriter> writers = new HashMap<>();
+        Map<String, Scrapper<?>> scrapersBySource = new HashMap<>();
+        int runningSources = 0;
+
+        try {
+            for (Scrapper<?> scraper : scrapers) {
+                String source = scraper.getSourceName();
+                EventIntegrationService.SourceWriter writer = eventIntegrationService.openSource(source, stats, true);
+                writers.put(source, writer);
+                scrapersBySource.put(source, scraper);
+
+                scrapperService.scrapeMappedPages(scraper, writer.getResumeCursor(),
+                                (page, cursor) -> queue.put(new SourcePage(source, page, cursor, false)))
+                        .whenComplete((result, error) -> queue.put(new SourcePage(source, null, null, error != null)));
+                runningSources++;
+            }
+
+            while (runningSources > 0) {
+                SourcePage page = queue.take();
+                EventIntegrationService.SourceWriter writer = writers.get(page.source);
+
+                if (page.isEnd()) {
+                    if (page.failed) {
+                        writer.fail();
+                    } else if (writer.finish()) {
+                        scrapersBySource.get(page.source).persisted();
+                    }
+                    runningSources--;
+                } else {
+                    writer.accept(page.events, page.cursor);
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("[{}] Interrupted while waiting for scraped pages.", getClass().getSimpleName(), e);
+        } finally {
+            if (runningSources > 0) {
+                logger.error("[{}] Ingest aborted with [{}] sources still running, stopping their scrapers.",
+                        getClass().getSimpleName(), runningSources);
+                queue.close();
+            }
+        }
+
+        logger.info("[{}] Pipelined ingest finished. Total: {}, {}", getClass().getSimpleName(), stats.getTotal(), stats);
+        return stats;
+    }
+
+    /**
+     * Bounded hand-over of pages from the scrapers to the draining thread, closed when nobody drains it anymore.
+     */
+    private static final class PageQueue {
+
+        // How often a scraper blocked on a full queue checks whether the queue was closed
+        private static final long CLOSED_CHECK_MILLIS = 200;
+
+        private final BlockingQueue<SourcePage> queue;
+        private volatile boolean closed;
+
+        private PageQueue(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Hands over a page, blocking while the queue is full.
+         *
+         * @throws IllegalStateException if the queue is or gets closed before the page was taken
+         */
+        private void put(SourcePage page) {
+            try {
+                while (!closed) {
+                    if (queue.offer(page, CLOSED_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while handing over a scraped page", e);
+            }
+            throw new IllegalStateException("Ingest aborted, dropping scraped page of source " + page.source);
+        }
+
+        private SourcePage take() throws InterruptedException {
+            return queue.take();
+        }
+
+        /**
+         * Drops the queued pages and makes every further hand-over fail.
+         */
+        private void close() {
+            closed = true;
+            queue.clear();
+        }
+    }
+
+    /**
+     * Mapped page of one source, a page without events marks the end of the source. The end of a
+     * scraper that failed leaves the run of its source unfinished, so it resumes after the last page.
+     */
+    private static final class SourcePage {
+
+        private final String source;
+        private final List<ScrapedEvent> events;
+        private final String cursor;
+        private final boolean failed;
+
+        private SourcePage(String source, List<ScrapedEvent> events, String cursor, boolean failed) {
+            this.source = source;
+            this.events = events;
+            this.cursor = cursor;
+            this.failed = failed;
+        }
+
+        private boolean isEnd() {
+            return events == null;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package pl.planzy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.scheduling.support.PeriodicTrigger;
+import org.springframework.stereotype.Service;
+import pl.planzy.config.IngestProperties;
+import pl.planzy.scrappers.impl.Scrapper;
+import pl.planzy.service.ingest.IngestRunStatus;
+import pl.planzy.service.ingest.IngestStats;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ingests sources repeatedly within the running application, so fresh data needs no restart and every
+ * run reuses the warm dictionaries, URL index, HTTP client and browsers of the previous ones.
+ * <p>
+ * Every source is scheduled on its own, by its cron expression, its interval or the default interval,
+ * with a random jitter added to each start. Intervals count from the end of the previous run, so a slow
+ * run delays the next one instead of overlapping it. A source never runs twice at a time: a start that
+ * finds it still running, e.g. from the run on startup, is skipped. Run status is exposed by the
+ * {@code ingest} actuator endpoint.
+ */
+@Service
+public class IngestScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestScheduler.class);
+
+    private final ScrapperService scrapperService;
+    private final EventIntegrationService eventIntegrationService;
+    private final IngestPipeline ingestPipeline;
+    private final IngestProperties properties;
+    private final TaskScheduler taskScheduler;
+    private final Map<String, IngestRunStatus> statuses = new LinkedHashMap<>();
+
+    @Autowired
+    public IngestScheduler(ScrapperService scrapperService,
+                           EventIntegrationService eventIntegrationService,
+                           IngestPipeline ingestPipeline,
+                           IngestProperties properties,
+                           @Qualifier("ingestTaskScheduler") TaskScheduler taskScheduler) {
+        this.scrapperService = scrapperService;
+        this.eventIntegrationService = eventIntegrationService;
+        this.ingestPipeline = ingestPipeline;
+        this.properties = properties;
+        this.taskScheduler = taskScheduler;
+
+        for (Scrapper<?> scraper : scrapperService.getScrapers()) {
+            statuses.put(scraper.getSourceName(), new IngestRunStatus(scheduleOf(scraper.getSourceName())));
+        }
+    }
+
+    /**
+     * Ingests all sources that are not running already once, in the calling thread, scraping them in parallel.
+     */
+    public IngestStats runAll() {
+        List<Scrapper<?>> scrapers = scrapperService.getScrapers().stream()
+                .filter(scraper -> statuses.get(scraper.getSourceName()).tryStart())
+                .toList();
+
+        return run(scrapers);
+    }
+
+    /**
+     * Schedules every source once the application is ready, after the run on startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.getSchedule().isEnabled()) {
+            return;
+        }
+
+        for (Scrapper<?> scraper : scrapperService.getScrapers()) {
+            IngestRunStatus status = statuses.get(scraper.getSourceName());
+            status.setNextRun(taskScheduler.schedule(() -> runScheduled(scraper), triggerOf(scraper.getSourceName())));
+
+            logger.info("[{}] Scheduled source [{}]: [{}]", getClass().getSimpleName(), scraper.getSourceName(), status.getSchedule());
+        }
+    }
+
+    public Map<String, IngestRunStatus> getStatuses() {
+        return Collections.unmodifiableMap(statuses);
+    }
+
+    private void runScheduled(Scrapper<?> scraper) {
+        if (!statuses.get(scraper.getSourceName()).tryStart()) {
+            logger.warn("[{}] Source [{}] is still running, skipping scheduled run", getClass().getSimpleName(), scraper.getSourceName());
+            return;
+        }
+        run(List.of(scraper));
+    }
+
+    /**
+     * Ingests the sources, whose runs were started by the caller.
+     */
+    private IngestStats run(List<Scrapper<?>> scrapers) {
+        if (scrapers.isEmpty()) {
+            return new IngestStats();
+        }
+
+        try {
+            IngestStats stats = switch (properties.getMode()) {
+                // The pipeline tells every scraper whose run completed itself
+                case PIPELINED -> ingestPipeline.run(scrapers);
+                case FULL_RELOAD -> {
+                    IngestStats reloaded = eventIntegrationService.reloadAll(scrapperService.scrapeAndMergeData(scrapers));
+                    scrapers.forEach(Scrapper::persisted);
+                    yield reloaded;
+                }
+                default -> {
+                    Set<String> unfinished = new HashSet<>();
+                    IngestStats processed = eventIntegrationService.processScrapedEvents(scrapperService.scrapeAndMergeData(scrapers), unfinished::add);
+                    scrapers.stream()
+                            .filter(scraper -> !unfinished.contains(scraper.getSourceName()))
+                            .forEach(Scrapper::persisted);
+                    yield processed;
+                }
+            };
+            scrapers.forEach(scraper -> statuses.get(scraper.getSourceName()).finish(stats, null));
+            return stats;
+
+        } catch (Exception e) {
+            logger.error("[{}] Ingest of [{}] failed", getClass().getSimpleName(), scrapers.stream().map(Scrapper::getSourceName).toList(), e);
+            scrapers.forEach(scraper -> statuses.get(scraper.getSourceName()).finish(null, e));
+            return new IngestStats();
+        }
+    }
+
+    private Trigger triggerOf(String source) {
+        IngestProperties.Schedule schedule = properties.getSchedule();
+        IngestProperties.SourceSchedule sourceSchedule = schedule.getSources().get(source);
+
+        Trigger trigger;
+        if (sourceSchedule != null && sourceSchedule.getCron() != null) {
+            trigger = new CronTrigger(sourceSchedule.getCron());
+        } else {
+            Duration interval = intervalOf(source);
+            PeriodicTrigger periodicTrigger = new PeriodicTrigger(interval);
+            periodicTrigger.setInitialDelay(interval);
+            trigger = periodicTrigger;
+        }
+
+        long jitterMillis = schedule.getJitter().toMillis();
+        return context -> {
+            Instant next = trigger.nextExecution(context);
+            return next == null || jitterMillis <= 0 ? next : next.plusMillis(ThreadLocalRandom.current().nextLong(jitterMillis + 1));
+        };
+    }
+
+    private Duration intervalOf(String source) {
+        IngestProperties.SourceSchedule sourceSchedule = properties.getSchedule().getSources().get(source);
+        return sourceSchedule != null && sourceSchedule.getInterval() != null ? sourceSchedule.getInterval() : properties.getSchedule().getInterval();
+    }
+
+    private String scheduleOf(String source) {
+        IngestProperties.Schedule schedule = properties.getSchedule();
+        if (!schedule.isEnabled()) {
+            return "disabled";
+        }
+        IngestProperties.SourceSchedule sourceSchedule = schedule.getSources().get(source);
+        String base = sourceSchedule != null && sourceSchedule.getCron() != null
+                ? "cron " + sourceSchedule.getCron()
+                : "every " + intervalOf(source);
+        return base + ", jitter " + schedule.getJitter();
+    }
+}
@@ -1,6 +1,5 @@
 package pl.planzy.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,6 +7,8 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.actuate.web.mappings.MappingsEndpoint;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
+import pl.planzy.dto.ScrapedEvent;
+import pl.planzy.scrappers.impl.PageSink;
 import pl.planzy.scrappers.impl.Scrapper;
 import pl.planzy.scrappers.mapper.EventMapper;
 
@@ -25,17 +26,24 @@ public class ScrapperService {
 
     private final ObjectMapper objectMapper;
     private final TaskExecutor taskExecutor;
-    private final List<Scrapper> scrapers;
+    private final List<Scrapper<?>> scrapers;
 
-    public ScrapperService(ObjectMapper objectMapper, @Qualifier("customTaskExecutor") TaskExecutor taskExecutor, List<Scrapper> scrapers) {
+    public ScrapperService(ObjectMapper objectMapper, @Qualifier("customTaskExecutor") TaskExecutor taskExecutor, List<Scrapper<?>> scrapers) {
         this.objectMapper = objectMapper;
         this.taskExecutor = taskExecutor;
         this.scrapers = scrapers;
     }
 
-    public List<JsonNode> scrapeAndMergeData() {
+    public List<ScrapedEvent> scrapeAndMergeData() {
+        return scrapeAndMergeData(scrapers);
+    }
+
+    /**
+     * Runs the given scrapers in parallel and merges their mapped events.
+     */
+    public List<ScrapedEvent> scrapeAndMergeData(List<Scrapper<?>> scrapers) {
 
-        List<CompletableFuture<List<JsonNode>>> futures = new ArrayList<>();
+        List<CompletableFuture<List<ScrapedEvent>>> futures = new ArrayList<>();
 
         if (scrapers.isEmpty()) {
             logger.warn("[{}] No scrapers available for execution. Exiting scrapeAndMergeData", getClass().getSimpleName());
@@ -44,17 +52,13 @@ public class ScrapperService {
 
         logger.info("[{}] Starting scraping process with [{}] scrapers.", getClass().getSimpleName(), scrapers.size());
 
-        for (Scrapper scraper : scrapers) {
+        for (Scrapper<?> scraper : scrapers) {
 
-            CompletableFuture<List<JsonNode>> future = CompletableFuture.supplyAsync(() -> {
+            CompletableFuture<List<ScrapedEvent>> future = CompletableFuture.supplyAsync(() -> {
 
                 try {
                     logger.info("[{}] Starting scraper: [{}]", getClass().getSimpleName(), scraper.getClass().getSimpleName());
-                    var scrapedData = scraper.scrapeData();
-                    EventMapper mapper = scraper.getMapper();
-                    var mappedData = mapper.mapEvents(scrapedData);
-                    logger.info("[{}] Finished scraping with [{}]. Total events scraped: [{}]. Total events mapped: [{}]", getClass().getSimpleName(), scraper.getClass().getSimpleName(), scrapedData.size(), mappedData.size());
-                    return mappedData;
+                    return scrapeAndMap(scraper);
 
                 } catch (Exception e) {
                     logger.error("[{}] Error occurred while scraping with [{}]: [{}]", getClass().getSimpleName(), scraper.getClass().getSimpleName(), e.getMessage());
@@ -66,7 +70,7 @@ public class ScrapperService {
             futures.add(future);
         }
 
-        List<JsonNode> mergedResults = new ArrayList<>();
+        List<ScrapedEvent> mergedResults = new ArrayList<>();
         try {
             mergedResults = CompletableFuture
                     .allOf(futures.toArray(new CompletableFuture[0]))
@@ -88,7 +92,50 @@ public class ScrapperService {
     }
 
 
-    private void saveResultsToFile(List<JsonNode> mergedResults) {
+    public List<Scrapper<?>> getScrapers() {
+        return scrapers;
+    }
+
+    private <T> List<ScrapedEvent> scrapeAndMap(Scrapper<T> scraper) {
+        List<T> scrapedData = scraper.scrapeData();
+        List<ScrapedEvent> mappedData = scraper.getMapper().mapEvents(scrapedData);
+        logger.info("[{}] Finished scraping with [{}]. Total events scraped: [{}]. Total events mapped: [{}]", getClass().getSimpleName(), scraper.getClass().getSimpleName(), scrapedData.size(), mappedData.size());
+        return mappedData;
+    }
+
+    /**
+     * Runs a scraper on the task executor, mapping every page as soon as it is fetched and passing
+     * the mapped page on with its cursor. The sink may block, which slows the scraper down.
+     * When the scraper fails the returned future completes exceptionally with its exception.
+     *
+     * @param cursor Cursor to resume the scraper from, {@code null} to scrape from the beginning
+     */
+    public <T> CompletableFuture<Void> scrapeMappedPages(Scrapper<T> scraper, String cursor, PageSink<ScrapedEvent> mappedPageSink) {
+
+        return CompletableFuture.runAsync(() -> {
+
+            int[] totals = new int[2];
+            try {
+                logger.info("[{}] Starting scraper: [{}]", getClass().getSimpleName(), scraper.getClass().getSimpleName());
+                EventMapper<T> mapper = scraper.getMapper();
+
+                scraper.scrape(cursor, (page, nextCursor) -> {
+                    var mappedPage = mapper.mapEvents(page);
+                    totals[0] += page.size();
+                    totals[1] += mappedPage.size();
+                    mappedPageSink.accept(mappedPage, nextCursor);
+                });
+
+                logger.info("[{}] Finished scraping with [{}]. Total events scraped: [{}]. Total events mapped: [{}]", getClass().getSimpleName(), scraper.getClass().getSimpleName(), totals[0], totals[1]);
+
+            } catch (RuntimeException e) {
+                logger.error("[{}] Error occurred while scraping with [{}] after [{}] events", getClass().getSimpleName(), scraper.getClass().getSimpleName(), totals[0], e);
+                throw e;
+            }
+        }, taskExecutor);
+    }
+
+    private void saveResultsToFile(List<ScrapedEvent> mergedResults) {
         File outputFile = new File("scraped_data.json");
         try {
             objectMapper.writeValue(outputFile, mergedResults);
@@ -0,0 +1,133 @@
+package pl.planzy.service.ingest;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import pl.planzy.config.IngestProperties;
+import pl.planzy.util.NameIdDictionary;
+
+/**
+ * Name to ID dictionaries of places, artists and tags used while ingesting events.
+ * <p>
+ * Only names and primitive IDs are cached, never entities. The dictionaries are filled incrementally:
+ * each {@link #refresh()} loads just the rows with an ID above the highest ID loaded so far. A row that
+ * is committed late with a lower ID is simply missed by the refresh and resolved on its first lookup.
+ * Rows are read outside the dictionary lock and put in batches, so lookups of concurrent chunks wait for
+ * a batch at most, never for the scan.
+ */
+@Component
+public class DictionaryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DictionaryCache.class);
+
+    private static final int REFRESH_BATCH = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Source places;
+    private final Source artists;
+    private final Source tags;
+
+    @Autowired
+    public DictionaryCache(JdbcTemplate jdbcTemplate, IngestProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+
+        int maxSize = properties.getDictionary().getMaxSize();
+        this.places = new Source(new NameIdDictionary("places", maxSize), "places", "place_name");
+        this.artists = new Source(new NameIdDictionary("artists", maxSize), "artists", "artist_name");
+        this.tags = new Source(new NameIdDictionary("tags", maxSize), "tags", "tag_name");
+
+        registerMetrics(places.dictionary, meterRegistry);
+        registerMetrics(artists.dictionary, meterRegistry);
+        registerMetrics(tags.dictionary, meterRegistry);
+    }
+
+    public NameIdDictionary places() {
+        return places.dictionary;
+    }
+
+    public NameIdDictionary artists() {
+        return artists.dictionary;
+    }
+
+    public NameIdDictionary tags() {
+        return tags.dictionary;
+    }
+
+    /**
+     * Loads the rows added since the previous refresh into the dictionaries.
+     */
+    public void refresh() {
+        refresh(places);
+        refresh(artists);
+        refresh(tags);
+    }
+
+    private void refresh(Source source) {
+        long[] loaded = new long[1];
+        long[] watermark = {source.watermark};
+
+        // Stop loading once the dictionary is full, there is nothing to gain from evicting while preloading
+        int limit = Math.max(0, source.dictionary.getMaxSize() - source.dictionary.size());
+        if (limit == 0) {
+            return;
+        }
+
+        String[] names = new String[Math.min(limit, REFRESH_BATCH)];
+        long[] ids = new long[names.length];
+        int[] buffered = {0};
+
+        jdbcTemplate.query("SELECT id, " + source.nameColumn + " FROM " + source.table +
+                        " WHERE id > ? ORDER BY id LIMIT ?",
+                rs -> {
+                    long id = rs.getLong(1);
+                    names[buffered[0]] = NameIdDictionary.normalize(rs.getString(2));
+                    ids[buffered[0]] = id;
+                    watermark[0] = id;
+                    loaded[0]++;
+                    if (++buffered[0] == names.length) {
+                        source.dictionary.putAll(names, ids, buffered[0]);
+                        buffered[0] = 0;
+                    }
+                }, source.watermark, limit);
+        source.dictionary.putAll(names, ids, buffered[0]);
+
+        source.watermark = watermark[0];
+        logger.info("[{}] Loaded [{}] new {} into dictionary, size: [{}], hits: [{}], misses: [{}]",
+                getClass().getSimpleName(), loaded[0], source.table, source.dictionary.size(),
+                source.dictionary.hits(), source.dictionary.misses());
+    }
+
+    private static void registerMetrics(NameIdDictionary dictionary, MeterRegistry registry) {
+        FunctionCounter.builder("planzy.ingest.dictionary.hits", dictionary, NameIdDictionary::hits)
+                .tag("dictionary", dictionary.getName())
+                .register(registry);
+        FunctionCounter.builder("planzy.ingest.dictionary.misses", dictionary, NameIdDictionary::misses)
+                .tag("dictionary", dictionary.getName())
+                .register(registry);
+        FunctionCounter.builder("planzy.ingest.dictionary.evictions", dictionary, NameIdDictionary::evictions)
+                .tag("dictionary", dictionary.getName())
+                .register(registry);
+        Gauge.builder("planzy.ingest.dictionary.size", dictionary, NameIdDictionary::size)
+                .tag("dictionary", dictionary.getName())
+                .register(registry);
+    }
+
+    private static final class Source {
+
+        private final NameIdDictionary dictionary;
+        private final String table;
+        private final String nameColumn;
+        private volatile long watermark;
+
+        private Source(NameIdDictionary dictionary, String table, String nameColumn) {
+            this.dictionary = dictionary;
+            this.table = table;
+            this.nameColumn = nameColumn;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package pl.planzy.service.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import pl.planzy.entity.Event;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes chunks of new and changed events with a single multi-row statement per chunk.
+ * <p>
+ * Rows whose URL already exists are skipped by {@code ON CONFLICT (url) DO NOTHING},
+ * and the generated IDs of the rows that were actually inserted are read back with
+ * {@code RETURNING id, url}, so one round trip replaces a save/flush pair per event.
+ * Changed events are updated by URL from a {@code VALUES} list in the same way.
+ */
+@Component
+public class EventBulkWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventBulkWriter.class);
+
+    private static final String INSERT_PREFIX = "INSERT INTO events " +
+            "(id, event_name, start_date, end_date, thumbnail, url, location, category, description, source, place_id, content_hash) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_SUFFIX = " ON CONFLICT (url) DO NOTHING RETURNING id, url";
+
+    private static final String UPDATE_PREFIX = "UPDATE events AS e SET " +
+            "event_name = v.event_name, start_date = v.start_date, end_date = v.end_date, thumbnail = v.thumbnail, " +
+            "location = v.location, category = v.category, description = v.description, source = v.source, " +
+            "place_id = v.place_id, content_hash = v.content_hash FROM (VALUES ";
+    // Typed placeholders, a VALUES list in FROM does not take its column types from the target table
+    private static final String UPDATE_ROW_PLACEHOLDER = "(?::bigint, ?::varchar, ?::timestamp, ?::timestamp, ?::varchar, " +
+            "?::varchar, ?::varchar, ?::varchar, ?::text, ?::varchar, ?::bigint, ?::bigint)";
+    private static final String UPDATE_SUFFIX = ") AS v (id, event_name, start_date, end_date, thumbnail, url, location, category, " +
+            "description, source, place_id, content_hash) WHERE e.url = v.url RETURNING e.id, e.url";
+
+    // 12 parameters per row keeps a full statement far below the driver limit of 65535 bind parameters
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator idAllocator;
+
+    @Autowired
+    public EventBulkWriter(JdbcTemplate jdbcTemplate, SequenceIdAllocator idAllocator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * Inserts the given events, ignoring those whose URL is already stored.
+     *
+     * IDs are assigned from the event sequence before the insert, rows skipped on conflict simply leave a gap.
+     *
+     * @param events Events to insert, the place (if any) must already be flushed
+     * @return IDs of the inserted events keyed by URL together with the number of skipped rows
+     */
+    public Result insertAll(List<Event> events) {
+        if (events.isEmpty()) {
+            return new Result(Collections.emptyMap(), 0);
+        }
+
+        long[] ids = idAllocator.allocate(SequenceIdAllocator.EVENT_SEQUENCE, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setId(ids[i]);
+        }
+
+        Map<String, Long> insertedIds = new LinkedHashMap<>();
+
+        for (int i = 0; i < events.size(); i += MAX_ROWS_PER_STATEMENT) {
+            List<Event> rows = events.subList(i, Math.min(i + MAX_ROWS_PER_STATEMENT, events.size()));
+
+            jdbcTemplate.query(buildSql(INSERT_PREFIX, ROW_PLACEHOLDER, INSERT_SUFFIX, rows.size()),
+                    ps -> bindRows(ps, rows),
+                    rs -> {
+                        insertedIds.put(rs.getString("url"), rs.getLong("id"));
+                    });
+        }
+
+        int skipped = events.size() - insertedIds.size();
+        logger.debug("[{}] Bulk insert finished. Inserted: [{}], skipped: [{}]", getClass().getSimpleName(), insertedIds.size(), skipped);
+
+        return new Result(insertedIds, skipped);
+    }
+
+    /**
+     * Overwrites the stored rows of the given events, matched by URL. The events keep no ID of their own.
+     *
+     * @param events Changed events, the place (if any) must already exist
+     * @return IDs of the updated events keyed by URL, events whose URL is not stored are missing
+     */
+    public Map<String, Long> updateAll(List<Event> events) {
+        if (events.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Long> updatedIds = new LinkedHashMap<>();
+
+        for (int i = 0; i < events.size(); i += MAX_ROWS_PER_STATEMENT) {
+            List<Event> rows = events.subList(i, Math.min(i + MAX_ROWS_PER_STATEMENT, events.size()));
+
+            jdbcTemplate.query(buildSql(UPDATE_PREFIX, UPDATE_ROW_PLACEHOLDER, UPDATE_SUFFIX, rows.size()),
+                    ps -> bindRows(ps, rows),
+                    rs -> {
+                        updatedIds.put(rs.getString("url"), rs.getLong("id"));
+                    });
+        }
+
+        logger.debug("[{}] Bulk update finished. Updated: [{}], missing: [{}]", getClass().getSimpleName(),
+                updatedIds.size(), events.size() - updatedIds.size());
+
+        return updatedIds;
+    }
+
+    private String buildSql(String prefix, String rowPlaceholder, String suffix, int rowCount) {
+        StringBuilder sql = new StringBuilder(prefix.length() + rowCount * (rowPlaceholder.length() + 2) + suffix.length());
+        sql.append(prefix);
+        for (int row = 0; row < rowCount; row++) {
+            if (row > 0) {
+                sql.append(", ");
+            }
+            sql.append(rowPlaceholder);
+        }
+        return sql.append(suffix).toString();
+    }
+
+    private void bindRows(PreparedStatement ps, List<Event> rows) throws SQLException {
+        int index = 1;
+        for (Event event : rows) {
+            ps.setObject(index++, event.getId(), Types.BIGINT);
+            ps.setString(index++, event.getEvent_name());
+            ps.setObject(index++, event.getStart_date());
+            ps.setObject(index++, event.getEnd_date());
+            ps.setString(index++, event.getThumbnail());
+            ps.setString(index++, event.getUrl());
+            ps.setString(index++, event.getLocation());
+            ps.setString(index++, event.getCategory());
+            ps.setString(index++, event.getDescription());
+            ps.setString(index++, event.getSource());
+            ps.setObject(index++, event.getPlace() != null ? event.getPlace().getId() : null, Types.BIGINT);
+            ps.setObject(index++, event.getContent_hash(), Types.BIGINT);
+        }
+    }
+
+    /**
+     * Outcome of a bulk insert.
+     */
+    public static final class Result {
+
+        private final Map<String, Long> insertedIds;
+        private final int skipped;
+
+        Result(Map<String, Long> insertedIds, int skipped) {
+            this.insertedIds = insertedIds;
+            this.skipped = skipped;
+        }
+
+        public Map<String, Long> getInsertedIds() {
+            return insertedIds;
+        }
+
+        public int getInserted() {
+            return insertedIds.size();
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package pl.planzy.service.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes the event_artists and event_tags join rows of a whole chunk at once.
+ * <p>
+ * All pairs of a join table are sent as two parallel arrays and expanded with {@code unnest},
+ * so a chunk costs one statement per join table regardless of how many artists and tags its events have.
+ * Pairs that already exist are ignored by {@code ON CONFLICT DO NOTHING}.
+ */
+@Component
+public class EventRelationshipWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventRelationshipWriter.class);
+
+    private static final String INSERT_EVENT_ARTISTS = "INSERT INTO event_artists (event_id, artist_id) " +
+            "SELECT * FROM unnest(?, ?) ON CONFLICT DO NOTHING";
+    private static final String INSERT_EVENT_TAGS = "INSERT INTO event_tags (event_id, tag_id) " +
+            "SELECT * FROM unnest(?, ?) ON CONFLICT DO NOTHING";
+    private static final String DELETE_EVENT_ARTISTS = "DELETE FROM event_artists WHERE event_id = ANY(?)";
+    private static final String DELETE_EVENT_TAGS = "DELETE FROM event_tags WHERE event_id = ANY(?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public EventRelationshipWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Creates an empty collector for the join rows of one chunk.
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Writes all pairs collected in the batch.
+     */
+    public void write(Batch batch) {
+        int artistRows = insertPairs(INSERT_EVENT_ARTISTS, batch.artistEventIds, batch.artistIds);
+        int tagRows = insertPairs(INSERT_EVENT_TAGS, batch.tagEventIds, batch.tagIds);
+
+        logger.debug("[{}] Relationships written. Artists: [{}/{}], tags: [{}/{}]", getClass().getSimpleName(),
+                artistRows, batch.artistIds.size(), tagRows, batch.tagIds.size());
+    }
+
+    /**
+     * Removes all pairs of the given events, used before the pairs of updated events are written again.
+     */
+    public void deleteAll(Collection<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return;
+        }
+
+        Object[] ids = eventIds.toArray();
+        int artistRows = jdbcTemplate.update(DELETE_EVENT_ARTISTS, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+        int tagRows = jdbcTemplate.update(DELETE_EVENT_TAGS, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+
+        logger.debug("[{}] Relationships of [{}] events removed. Artists: [{}], tags: [{}]", getClass().getSimpleName(),
+                ids.length, artistRows, tagRows);
+    }
+
+    private int insertPairs(String sql, List<Long> eventIds, List<Long> otherIds) {
+        if (eventIds.isEmpty()) {
+            return 0;
+        }
+
+        return jdbcTemplate.update(sql, ps -> {
+            Array eventIdArray = ps.getConnection().createArrayOf("bigint", eventIds.toArray());
+            Array otherIdArray = ps.getConnection().createArrayOf("bigint", otherIds.toArray());
+            ps.setArray(1, eventIdArray);
+            ps.setArray(2, otherIdArray);
+        });
+    }
+
+    /**
+     * Join rows collected for one chunk.
+     */
+    public static final class Batch {
+
+        private final List<Long> artistEventIds = new ArrayList<>();
+        private final List<Long> artistIds = new ArrayList<>();
+        private final List<Long> tagEventIds = new ArrayList<>();
+        private final List<Long> tagIds = new ArrayList<>();
+
+        private Batch() {
+        }
+
+        public void addArtist(Long eventId, Long artistId) {
+            artistEventIds.add(eventId);
+            artistIds.add(artistId);
+        }
+
+        public void addTag(Long eventId, Long tagId) {
+            tagEventIds.add(eventId);
+            tagIds.add(tagId);
+        }
+
+        public boolean isEmpty() {
+            return artistIds.isEmpty() && tagIds.isEmpty();
+        }
+    }
+}
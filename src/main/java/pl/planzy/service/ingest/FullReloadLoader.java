@@ -0,0 +1,358 @@
+package pl.planzy.service.ingest;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.planzy.entity.Event;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads a whole catalog of mapped events with PostgreSQL {@code COPY}.
+ * <p>
+ * Events and their artist and tag names are streamed into unlogged staging tables, which skips
+ * the write-ahead log and all per-row statement overhead. The staged rows are then merged into the
+ * live tables with a handful of set-based statements in one short transaction: missing places, artists
+ * and tags are created, changed events are updated, new events inserted and the join rows of all written
+ * events replaced. Stored events missing from the catalog are kept.
+ */
+@Component
+public class FullReloadLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(FullReloadLoader.class);
+
+    // Flush the COPY buffer to the server at this size
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] STAGING_DDL = {
+            "CREATE UNLOGGED TABLE IF NOT EXISTS staging_events (url text PRIMARY KEY, event_name text, " +
+                    "start_date timestamp, end_date timestamp, thumbnail text, location text, category text, " +
+                    "description text, source text, place_name text, content_hash bigint, action char(1))",
+            "CREATE UNLOGGED TABLE IF NOT EXISTS staging_event_artists (url text, name text)",
+            "CREATE UNLOGGED TABLE IF NOT EXISTS staging_event_tags (url text, name text)"
+    };
+    private static final String TRUNCATE_STAGING = "TRUNCATE staging_events, staging_event_artists, staging_event_tags";
+
+    private static final String COPY_EVENTS = "COPY staging_events (url, event_name, start_date, end_date, thumbnail, " +
+            "location, category, description, source, place_name, content_hash) FROM STDIN";
+    private static final String COPY_EVENT_ARTISTS = "COPY staging_event_artists (url, name) FROM STDIN";
+    private static final String COPY_EVENT_TAGS = "COPY staging_event_tags (url, name) FROM STDIN";
+
+    // Action of a staged event: I(nsert) when its URL is unknown, U(pdate) when its content hash differs
+    private static final String MARK_CHANGED = "UPDATE staging_events s SET action = 'U' FROM events e " +
+            "WHERE e.url = s.url AND e.content_hash IS DISTINCT FROM s.content_hash";
+    private static final String MARK_NEW = "UPDATE staging_events s SET action = 'I' " +
+            "WHERE NOT EXISTS (SELECT 1 FROM events e WHERE e.url = s.url)";
+
+    private static final String DELETE_CHANGED_ARTISTS = "DELETE FROM event_artists ea USING events e, staging_events s " +
+            "WHERE ea.event_id = e.id AND e.url = s.url AND s.action = 'U'";
+    private static final String DELETE_CHANGED_TAGS = "DELETE FROM event_tags et USING events e, staging_events s " +
+            "WHERE et.event_id = e.id AND e.url = s.url AND s.action = 'U'";
+
+    private static final String UPDATE_EVENTS = "UPDATE events e SET event_name = s.event_name, start_date = s.start_date, " +
+            "end_date = s.end_date, thumbnail = s.thumbnail, location = s.location, category = s.category, " +
+            "description = s.description, source = s.source, place_id = p.id, content_hash = s.content_hash " +
+            "FROM staging_events s LEFT JOIN places p ON p.place_name = s.place_name " +
+            "WHERE e.url = s.url AND s.action = 'U' RETURNING e.url, e.content_hash";
+
+    private static final String COUNT_NEW_EVENTS = "SELECT count(*) FROM staging_events WHERE action = 'I'";
+    private static final String INSERT_EVENTS = "INSERT INTO events (id, event_name, start_date, end_date, thumbnail, url, " +
+            "location, category, description, source, place_id, content_hash) " +
+            "SELECT i.id, s.event_name, s.start_date, s.end_date, s.thumbnail, s.url, s.location, s.category, " +
+            "s.description, s.source, p.id, s.content_hash " +
+            "FROM (SELECT *, row_number() OVER (ORDER BY url) AS rn FROM staging_events WHERE action = 'I') AS s " +
+            "JOIN unnest(?) WITH ORDINALITY AS i (id, rn) ON i.rn = s.rn " +
+            "LEFT JOIN places p ON p.place_name = s.place_name " +
+            "ON CONFLICT (url) DO NOTHING RETURNING url, content_hash";
+
+    private static final String INSERT_EVENT_ARTISTS = "INSERT INTO event_artists (event_id, artist_id) " +
+            "SELECT e.id, a.id FROM staging_event_artists sa " +
+            "JOIN staging_events s ON s.url = sa.url AND s.action IS NOT NULL " +
+            "JOIN events e ON e.url = sa.url JOIN artists a ON a.artist_name = sa.name ON CONFLICT DO NOTHING";
+    private static final String INSERT_EVENT_TAGS = "INSERT INTO event_tags (event_id, tag_id) " +
+            "SELECT e.id, t.id FROM staging_event_tags st " +
+            "JOIN staging_events s ON s.url = st.url AND s.action IS NOT NULL " +
+            "JOIN events e ON e.url = st.url JOIN tags t ON t.tag_name = st.name ON CONFLICT DO NOTHING";
+
+    // Names referenced by written events only
+    private static final String WRITTEN_PLACE_NAMES = "SELECT place_name FROM staging_events " +
+            "WHERE action IS NOT NULL AND place_name IS NOT NULL";
+    private static final String WRITTEN_ARTIST_NAMES = "SELECT sa.name FROM staging_event_artists sa " +
+            "JOIN staging_events s ON s.url = sa.url AND s.action IS NOT NULL";
+    private static final String WRITTEN_TAG_NAMES = "SELECT st.name FROM staging_event_tags st " +
+            "JOIN staging_events s ON s.url = st.url AND s.action IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator idAllocator;
+    private final TransactionTemplate mergeTransaction;
+
+    @Autowired
+    public FullReloadLoader(JdbcTemplate jdbcTemplate,
+                            SequenceIdAllocator idAllocator,
+                            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = idAllocator;
+        this.mergeTransaction = new TransactionTemplate(transactionManager);
+        this.mergeTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    /**
+     * Stages and merges the given events. The staging tables are shared, so loads must not overlap.
+     *
+     * @param rows Events with distinct URLs
+     */
+    public synchronized Result load(List<Row> rows) {
+        long started = System.currentTimeMillis();
+
+        for (String ddl : STAGING_DDL) {
+            jdbcTemplate.execute(ddl);
+        }
+
+        long staged = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> stage(connection, rows));
+        long stagedAt = System.currentTimeMillis();
+
+        Result result = mergeTransaction.execute(status -> merge());
+        jdbcTemplate.execute(TRUNCATE_STAGING);
+
+        logger.info("[{}] Full reload finished. Staged: [{}] in {} ms, merged in {} ms. Inserted: [{}], updated: [{}]",
+                getClass().getSimpleName(), staged, stagedAt - started, System.currentTimeMillis() - stagedAt,
+                result.getInserted(), result.getUpdated());
+        return result;
+    }
+
+    private long stage(Connection connection, List<Row> rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(TRUNCATE_STAGING);
+        }
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+
+        long events = copy(copyManager, COPY_EVENTS, rows, (row, writer) -> {
+            Event event = row.event;
+            writer.field(event.getUrl())
+                    .field(event.getEvent_name())
+                    .field(event.getStart_date() != null ? event.getStart_date().toString() : null)
+                    .field(event.getEnd_date() != null ? event.getEnd_date().toString() : null)
+                    .field(event.getThumbnail())
+                    .field(event.getLocation())
+                    .field(event.getCategory())
+                    .field(event.getDescription())
+                    .field(event.getSource())
+                    .field(row.placeName)
+                    .field(event.getContent_hash() != null ? event.getContent_hash().toString() : null)
+                    .endRow();
+        });
+        long artists = copy(copyManager, COPY_EVENT_ARTISTS, rows, (row, writer) -> {
+            for (String artist : row.artists) {
+                writer.field(row.event.getUrl()).field(artist).endRow();
+            }
+        });
+        long tags = copy(copyManager, COPY_EVENT_TAGS, rows, (row, writer) -> {
+            for (String tag : row.tags) {
+                writer.field(row.event.getUrl()).field(tag).endRow();
+            }
+        });
+
+        logger.debug("[{}] Staged [{}] events, [{}] artist and [{}] tag rows", getClass().getSimpleName(), events, artists, tags);
+        return events;
+    }
+
+    private long copy(CopyManager copyManager, String sql, List<Row> rows, RowEncoder encoder) throws SQLException {
+        CopyIn copyIn = copyManager.copyIn(sql);
+        try {
+            CopyWriter writer = new CopyWriter(copyIn);
+            for (Row row : rows) {
+                encoder.encode(row, writer);
+            }
+            writer.flush();
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private Result merge() {
+        jdbcTemplate.update(MARK_CHANGED);
+        jdbcTemplate.update(MARK_NEW);
+
+        int places = mergeNames(NameResolver.Kind.PLACE, WRITTEN_PLACE_NAMES);
+        int artists = mergeNames(NameResolver.Kind.ARTIST, WRITTEN_ARTIST_NAMES);
+        int tags = mergeNames(NameResolver.Kind.TAG, WRITTEN_TAG_NAMES);
+
+        jdbcTemplate.update(DELETE_CHANGED_ARTISTS);
+        jdbcTemplate.update(DELETE_CHANGED_TAGS);
+
+        Map<String, Long> updatedHashes = new HashMap<>();
+        jdbcTemplate.query(UPDATE_EVENTS, rs -> {
+            updatedHashes.put(rs.getString(1), rs.getLong(2));
+        });
+
+        Map<String, Long> insertedHashes = new HashMap<>();
+        Integer newEvents = jdbcTemplate.queryForObject(COUNT_NEW_EVENTS, Integer.class);
+        if (newEvents != null && newEvents > 0) {
+            Long[] ids = boxed(idAllocator.allocate(SequenceIdAllocator.EVENT_SEQUENCE, newEvents));
+            jdbcTemplate.query(INSERT_EVENTS,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)),
+                    rs -> {
+                        insertedHashes.put(rs.getString(1), rs.getLong(2));
+                    });
+        }
+
+        int artistRows = jdbcTemplate.update(INSERT_EVENT_ARTISTS);
+        int tagRows = jdbcTemplate.update(INSERT_EVENT_TAGS);
+
+        logger.debug("[{}] Merged. New places: [{}], artists: [{}], tags: [{}], artist rows: [{}], tag rows: [{}]",
+                getClass().getSimpleName(), places, artists, tags, artistRows, tagRows);
+        return new Result(insertedHashes, updatedHashes);
+    }
+
+    /**
+     * Creates the missing names of one kind, with IDs allocated the same way as for JDBC and JPA writes.
+     */
+    private int mergeNames(NameResolver.Kind kind, String stagedNames) {
+        String missingNames = "SELECT DISTINCT n.name FROM (" + stagedNames + ") AS n (name) " +
+                "WHERE NOT EXISTS (SELECT 1 FROM " + kind.table() + " t WHERE t." + kind.nameColumn() + " = n.name)";
+
+        Integer missing = jdbcTemplate.queryForObject("SELECT count(*) FROM (" + missingNames + ") AS m", Integer.class);
+        if (missing == null || missing == 0) {
+            return 0;
+        }
+
+        Long[] ids = boxed(idAllocator.allocate(kind.sequence(), missing));
+        return jdbcTemplate.update("INSERT INTO " + kind.table() + " (id, " + kind.nameColumn() + ") " +
+                        "SELECT i.id, m.name FROM (SELECT name, row_number() OVER (ORDER BY name) AS rn " +
+                        "FROM (" + missingNames + ") AS d) AS m " +
+                        "JOIN unnest(?) WITH ORDINALITY AS i (id, rn) ON i.rn = m.rn " +
+                        "ON CONFLICT (" + kind.nameColumn() + ") DO NOTHING",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+    }
+
+    private static Long[] boxed(long[] values) {
+        Long[] boxed = new Long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    /**
+     * Mapped event to stage, with its place, artist and tag names normalized.
+     */
+    public static final class Row {
+
+        private final Event event;
+        private final String placeName;
+        private final Set<String> artists;
+        private final Set<String> tags;
+
+        public Row(Event event, String placeName, Set<String> artists, Set<String> tags) {
+            this.event = event;
+            this.placeName = placeName;
+            this.artists = artists;
+            this.tags = tags;
+        }
+    }
+
+    /**
+     * Outcome of a full reload, with the content hashes of the written events keyed by URL.
+     */
+    public static final class Result {
+
+        private final Map<String, Long> insertedHashes;
+        private final Map<String, Long> updatedHashes;
+
+        Result(Map<String, Long> insertedHashes, Map<String, Long> updatedHashes) {
+            this.insertedHashes = insertedHashes;
+            this.updatedHashes = updatedHashes;
+        }
+
+        public Map<String, Long> getWrittenHashes() {
+            Map<String, Long> written = new HashMap<>(insertedHashes);
+            written.putAll(updatedHashes);
+            return written;
+        }
+
+        public int getInserted() {
+            return insertedHashes.size();
+        }
+
+        public int getUpdated() {
+            return updatedHashes.size();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowEncoder {
+        void encode(Row row, CopyWriter writer) throws SQLException;
+    }
+
+    /**
+     * Encodes rows in the text format of {@code COPY} and sends them in large blocks.
+     */
+    private static final class CopyWriter {
+
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+        private boolean rowStarted;
+
+        private CopyWriter(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        private CopyWriter field(String value) {
+            if (rowStarted) {
+                buffer.append('\t');
+            }
+            rowStarted = true;
+
+            if (value == null) {
+                buffer.append("\\N");
+                return this;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> buffer.append("\\\\");
+                    case '\t' -> buffer.append("\\t");
+                    case '\n' -> buffer.append("\\n");
+                    case '\r' -> buffer.append("\\r");
+                    default -> buffer.append(c);
+                }
+            }
+            return this;
+        }
+
+        private void endRow() throws SQLException {
+            buffer.append('\n');
+            rowStarted = false;
+            if (buffer.length() >= COPY_BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (buffer.length() > 0) {
+                byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                buffer.setLength(0);
+            }
+        }
+    }
+}
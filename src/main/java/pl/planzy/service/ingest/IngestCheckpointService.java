@@ -0,0 +1,98 @@
+package pl.planzy.service.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.planzy.entity.IngestCheckpoint;
+import pl.planzy.repository.IngestCheckpointRepository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Persists how far the ingest run of each source got, so an interrupted run can resume.
+ * <p>
+ * A run of a source stays {@link IngestCheckpoint.Status#RUNNING} until all of its events were
+ * committed. Starting a source whose latest run is still running resumes that run at its last
+ * committed offset instead of starting over. Along with the offset the cursor of the last committed
+ * page is kept, so a scraper can resume fetching there instead of fetching the committed pages again.
+ */
+@Component
+public class IngestCheckpointService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestCheckpointService.class);
+
+    private final IngestCheckpointRepository checkpointRepository;
+
+    @Autowired
+    public IngestCheckpointService(IngestCheckpointRepository checkpointRepository) {
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    /**
+     * Resumes the unfinished run of the source or starts a new one.
+     */
+    @Transactional
+    public IngestCheckpoint start(String source) {
+        Optional<IngestCheckpoint> latest = checkpointRepository.findFirstBySourceOrderByStartedAtDesc(source);
+
+        if (latest.isPresent() && latest.get().getStatus() == IngestCheckpoint.Status.RUNNING) {
+            logger.info("[{}] Resuming unfinished run [{}] of source [{}] at offset [{}], cursor [{}]", getClass().getSimpleName(),
+                    latest.get().getRunId(), source, latest.get().getLastOffset(), latest.get().getResumeCursor());
+            return latest.get();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        IngestCheckpoint checkpoint = new IngestCheckpoint();
+        checkpoint.setSource(source);
+        checkpoint.setRunId(UUID.randomUUID().toString());
+        checkpoint.setLastOffset(0);
+        checkpoint.setStatus(IngestCheckpoint.Status.RUNNING);
+        checkpoint.setStartedAt(now);
+        checkpoint.setUpdatedAt(now);
+
+        logger.info("[{}] Starting run [{}] of source [{}]", getClass().getSimpleName(), checkpoint.getRunId(), source);
+        return checkpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Moves the checkpoint to the offset, must run in the transaction that commits the events up to it.
+     *
+     * @param pageCursor Offset and cursor of the last page ended at or before the offset, {@code null} to keep the stored cursor
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void advance(IngestCheckpoint checkpoint, long offset, Map.Entry<Long, String> pageCursor) {
+        update(checkpoint, offset, pageCursor);
+    }
+
+    /**
+     * Moves the checkpoint to the offset in a transaction of its own, for events committed by other transactions.
+     * Writers may record their offsets out of order, an offset below the stored one is ignored.
+     */
+    @Transactional
+    public void record(IngestCheckpoint checkpoint, long offset, Map.Entry<Long, String> pageCursor) {
+        update(checkpoint, offset, pageCursor);
+    }
+
+    private void update(IngestCheckpoint checkpoint, long offset, Map.Entry<Long, String> pageCursor) {
+        checkpointRepository.updateOffset(checkpoint.getId(), offset,
+                pageCursor != null ? pageCursor.getValue() : checkpoint.getResumeCursor(),
+                pageCursor != null ? pageCursor.getKey() : checkpoint.getCursorOffset(),
+                LocalDateTime.now());
+    }
+
+    @Transactional
+    public void complete(IngestCheckpoint checkpoint) {
+        checkpoint.setStatus(IngestCheckpoint.Status.COMPLETED);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+
+        logger.info("[{}] Run [{}] of source [{}] completed at offset [{}]", getClass().getSimpleName(),
+                checkpoint.getRunId(), checkpoint.getSource(), checkpoint.getLastOffset());
+    }
+}
@@ -0,0 +1,75 @@
+package pl.planzy.service.ingest;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs of one source in the lifetime of the application, as reported by the {@code ingest} actuator endpoint.
+ */
+@Getter
+public class IngestRunStatus {
+
+    private final String schedule;
+    private volatile boolean running;
+    private volatile long runs;
+    private volatile long failures;
+    private volatile LocalDateTime lastStartedAt;
+    private volatile LocalDateTime lastFinishedAt;
+
+    /**
+     * Stats of the last run; a run of several sources reports the stats of all of them.
+     */
+    private volatile String lastResult;
+    private volatile String lastError;
+
+    @Getter(AccessLevel.NONE)
+    private volatile ScheduledFuture<?> nextRun;
+
+    public IngestRunStatus(String schedule) {
+        this.schedule = schedule;
+    }
+
+    /**
+     * Marks the source as running, unless it is running already.
+     */
+    public synchronized boolean tryStart() {
+        if (running) {
+            return false;
+        }
+        running = true;
+        lastStartedAt = LocalDateTime.now();
+        return true;
+    }
+
+    public synchronized void finish(IngestStats stats, Exception error) {
+        running = false;
+        runs++;
+        lastFinishedAt = LocalDateTime.now();
+        if (error == null) {
+            lastResult = stats.toString();
+            lastError = null;
+        } else {
+            failures++;
+            lastError = error.toString();
+        }
+    }
+
+    public void setNextRun(ScheduledFuture<?> nextRun) {
+        this.nextRun = nextRun;
+    }
+
+    /**
+     * Start of the next scheduled run, {@code null} when the source is not scheduled.
+     */
+    public LocalDateTime getNextRunAt() {
+        ScheduledFuture<?> future = nextRun;
+        if (future == null || future.isDone()) {
+            return null;
+        }
+        return LocalDateTime.now().plusNanos(Math.max(0, future.getDelay(TimeUnit.NANOSECONDS)));
+    }
+}
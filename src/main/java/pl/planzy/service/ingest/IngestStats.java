@@ -0,0 +1,62 @@
+package pl.planzy.service.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of an ingest run, safe to update from several writer threads.
+ */
+public class IngestStats {
+
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public void addInserted(long count) {
+        inserted.addAndGet(count);
+    }
+
+    public void addUpdated(long count) {
+        updated.addAndGet(count);
+    }
+
+    public void addSkipped(long count) {
+        skipped.addAndGet(count);
+    }
+
+    public void addErrors(long count) {
+        errors.addAndGet(count);
+    }
+
+    public void add(IngestStats other) {
+        addInserted(other.getInserted());
+        addUpdated(other.getUpdated());
+        addSkipped(other.getSkipped());
+        addErrors(other.getErrors());
+    }
+
+    public long getInserted() {
+        return inserted.get();
+    }
+
+    public long getUpdated() {
+        return updated.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getTotal() {
+        return getInserted() + getUpdated() + getSkipped() + getErrors();
+    }
+
+    @Override
+    public String toString() {
+        return "Success: " + getInserted() + ", Updated: " + getUpdated() + ", Skipped: " + getSkipped() + ", Errors: " + getErrors();
+    }
+}
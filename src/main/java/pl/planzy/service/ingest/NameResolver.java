@@ -0,0 +1,169 @@
+package pl.planzy.service.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import pl.planzy.util.NameIdDictionary;
+
+import java.sql.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Resolves place, artist and tag names to IDs, creating missing rows.
+ * <p>
+ * Names are looked up in the dictionaries first, the misses of a whole chunk are then selected with one
+ * query and the remaining names inserted with one {@code INSERT ... ON CONFLICT (name) DO NOTHING}.
+ * The unique name indexes make concurrent creation race-free: a writer that loses the race skips the
+ * insert and picks up the winner's row with a second select. Missing names are inserted in name order,
+ * so writer lanes creating overlapping names lock their index entries in the same order and cannot
+ * deadlock. Rows created by a writer are published to the dictionaries only after its transaction
+ * committed, so the dictionaries never hold rolled back IDs.
+ */
+@Component
+public class NameResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(NameResolver.class);
+
+    public enum Kind {
+        PLACE("places", "place_name", SequenceIdAllocator.PLACE_SEQUENCE),
+        ARTIST("artists", "artist_name", SequenceIdAllocator.ARTIST_SEQUENCE),
+        TAG("tags", "tag_name", SequenceIdAllocator.TAG_SEQUENCE);
+
+        private final String table;
+        private final String nameColumn;
+        private final String sequence;
+
+        Kind(String table, String nameColumn, String sequence) {
+            this.table = table;
+            this.nameColumn = nameColumn;
+            this.sequence = sequence;
+        }
+
+        String table() {
+            return table;
+        }
+
+        String nameColumn() {
+            return nameColumn;
+        }
+
+        String sequence() {
+            return sequence;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator idAllocator;
+    private final DictionaryCache dictionaryCache;
+
+    @Autowired
+    public NameResolver(JdbcTemplate jdbcTemplate, SequenceIdAllocator idAllocator, DictionaryCache dictionaryCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = idAllocator;
+        this.dictionaryCache = dictionaryCache;
+    }
+
+    /**
+     * Resolves the names within the current transaction.
+     *
+     * @param afterCommit Collects the dictionary updates for rows created here, to be run once the transaction committed
+     * @return IDs keyed by normalized name
+     */
+    public Map<String, Long> resolve(Kind kind, Collection<String> names, List<Runnable> afterCommit) {
+        NameIdDictionary dictionary = dictionary(kind);
+        Map<String, Long> ids = new HashMap<>();
+        Set<String> missing = new TreeSet<>();
+
+        for (String name : names) {
+            String normalized = NameIdDictionary.normalize(name);
+            if (normalized == null || normalized.isEmpty() || ids.containsKey(normalized)) {
+                continue;
+            }
+            long id = dictionary.get(normalized);
+            if (id == NameIdDictionary.MISSING) {
+                missing.add(normalized);
+            } else {
+                ids.put(normalized, id);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return ids;
+        }
+
+        // Rows committed by others, visible to this transaction, can be cached right away
+        Map<String, Long> existing = select(kind, missing);
+        existing.forEach(dictionary::put);
+        ids.putAll(existing);
+        missing.removeAll(existing.keySet());
+
+        if (missing.isEmpty()) {
+            return ids;
+        }
+
+        Map<String, Long> created = insert(kind, missing);
+        ids.putAll(created);
+        missing.removeAll(created.keySet());
+
+        // Lost the race against a concurrent writer, its row is committed by now
+        if (!missing.isEmpty()) {
+            Map<String, Long> concurrent = select(kind, missing);
+            concurrent.forEach(dictionary::put);
+            ids.putAll(concurrent);
+            logger.debug("[{}] [{}] {} created concurrently by another writer", getClass().getSimpleName(), concurrent.size(), kind.table);
+        }
+
+        afterCommit.add(() -> created.forEach(dictionary::put));
+        return ids;
+    }
+
+    private Map<String, Long> select(Kind kind, Set<String> names) {
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("SELECT id, " + kind.nameColumn + " FROM " + kind.table + " WHERE " + kind.nameColumn + " = ANY(?)",
+                ps -> {
+                    Array nameArray = ps.getConnection().createArrayOf("varchar", names.toArray());
+                    ps.setArray(1, nameArray);
+                },
+                rs -> {
+                    ids.put(rs.getString(2), rs.getLong(1));
+                });
+        return ids;
+    }
+
+    private Map<String, Long> insert(Kind kind, Set<String> names) {
+        long[] allocated = idAllocator.allocate(kind.sequence, names.size());
+        Long[] idValues = new Long[allocated.length];
+        for (int i = 0; i < allocated.length; i++) {
+            idValues[i] = allocated[i];
+        }
+
+        Map<String, Long> created = new HashMap<>();
+        jdbcTemplate.query("INSERT INTO " + kind.table + " (id, " + kind.nameColumn + ") " +
+                        "SELECT * FROM unnest(?, ?) AS n (id, name) ORDER BY name " +
+                        "ON CONFLICT (" + kind.nameColumn + ") DO NOTHING " +
+                        "RETURNING id, " + kind.nameColumn,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("bigint", idValues));
+                    ps.setArray(2, ps.getConnection().createArrayOf("varchar", names.toArray()));
+                },
+                rs -> {
+                    created.put(rs.getString(2), rs.getLong(1));
+                });
+        return created;
+    }
+
+    private NameIdDictionary dictionary(Kind kind) {
+        return switch (kind) {
+            case PLACE -> dictionaryCache.places();
+            case ARTIST -> dictionaryCache.artists();
+            case TAG -> dictionaryCache.tags();
+        };
+    }
+}
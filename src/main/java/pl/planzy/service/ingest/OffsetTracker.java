@@ -0,0 +1,68 @@
+package pl.planzy.service.ingest;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tracks which scrape offsets of a source are safely committed when chunks commit out of order.
+ * <p>
+ * Every open chunk is registered with the offset of its first event. The committed offset is the
+ * highest offset below every open chunk, or the last received offset when no chunk is open.
+ * Page ends are registered with the scraper cursor resuming after them, so the cursor matching a
+ * committed offset can be stored with it.
+ */
+public class OffsetTracker {
+
+    // First offset of each open chunk, with the number of open chunks starting there
+    private final TreeMap<Long, Integer> openChunks = new TreeMap<>();
+    // Resume cursor of each received page, keyed by the offset of its last event
+    private final TreeMap<Long, String> pageCursors = new TreeMap<>();
+    private long received;
+
+    public OffsetTracker(long received) {
+        this.received = received;
+    }
+
+    /**
+     * Records a received event.
+     *
+     * @param opensChunk Whether the event is the first of a new chunk
+     */
+    public synchronized void receive(long offset, boolean opensChunk) {
+        received = offset;
+        if (opensChunk) {
+            openChunks.merge(offset, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Records that the chunk starting at the offset was committed or given up.
+     */
+    public synchronized void close(long firstOffset) {
+        openChunks.computeIfPresent(firstOffset, (offset, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Records the end of a page, whose last event was received at the offset.
+     */
+    public synchronized void endPage(long offset, String cursor) {
+        pageCursors.put(offset, cursor);
+    }
+
+    /**
+     * Cursor of the last page ended at or before the offset, dropping the cursors of earlier pages.
+     *
+     * @return Offset and cursor of the page, or {@code null} if no page ended there yet
+     */
+    public synchronized Map.Entry<Long, String> cursorAt(long offset) {
+        Map.Entry<Long, String> page = pageCursors.floorEntry(offset);
+        if (page != null) {
+            pageCursors.headMap(page.getKey()).clear();
+        }
+        return page;
+    }
+
+    public synchronized long committedOffset() {
+        return openChunks.isEmpty() ? received : openChunks.firstKey() - 1;
+    }
+}
@@ -0,0 +1,85 @@
+package pl.planzy.service.ingest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out entity IDs for rows written with plain JDBC.
+ * <p>
+ * IDs are taken from the same sequences the entities use and follow Hibernate's pooled optimizer:
+ * a sequence value {@code S} reserves the block {@code [S - allocationSize + 1, S]}. IDs generated here
+ * therefore never collide with IDs generated by Hibernate for entities saved through repositories.
+ */
+@Component
+public class SequenceIdAllocator {
+
+    /**
+     * Must match the allocationSize of the entity sequence generators.
+     */
+    public static final int ALLOCATION_SIZE = 50;
+
+    public static final String EVENT_SEQUENCE = "event_seq";
+    public static final String PLACE_SEQUENCE = "place_seq";
+    public static final String ARTIST_SEQUENCE = "artist_seq";
+    public static final String TAG_SEQUENCE = "tag_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Block> blocks = new HashMap<>();
+
+    @Autowired
+    public SequenceIdAllocator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Allocates {@code count} IDs from the given sequence, fetching all missing blocks in one query.
+     */
+    public synchronized long[] allocate(String sequence, int count) {
+        long[] ids = new long[count];
+        Block block = blocks.computeIfAbsent(sequence, name -> new Block());
+
+        int filled = 0;
+        while (filled < count && block.hasNext()) {
+            ids[filled++] = block.next();
+        }
+
+        if (filled < count) {
+            int missingBlocks = (count - filled + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE;
+            List<Long> hiValues = jdbcTemplate.queryForList(
+                    "SELECT nextval(?::regclass) FROM generate_series(1, ?)", Long.class, sequence, missingBlocks);
+
+            for (Long hi : hiValues) {
+                block.reset(hi);
+                while (filled < count && block.hasNext()) {
+                    ids[filled++] = block.next();
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    private static final class Block {
+
+        private long next = 1;
+        private long hi = 0;
+
+        boolean hasNext() {
+            return next <= hi;
+        }
+
+        long next() {
+            return next++;
+        }
+
+        void reset(long hiValue) {
+            hi = hiValue;
+            next = hiValue - ALLOCATION_SIZE + 1;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package pl.planzy.service.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import pl.planzy.config.IngestProperties;
+import pl.planzy.util.Fingerprints;
+import pl.planzy.util.LongBloomFilter;
+import pl.planzy.util.LongLongHashMap;
+
+import java.sql.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index of the URLs of stored events with their content hashes, used for change detection.
+ * <p>
+ * Only 64-bit URL fingerprints and content hashes are kept, in a primitive map optionally fronted by a
+ * Bloom filter. The index is filled incrementally by ID watermark and extended with every written event,
+ * so the events table is read in full only once per application lifetime. Fingerprint hits are confirmed
+ * against the database with one query per chunk when {@code planzy.ingest.url-index.verify-hits} is set.
+ * <p>
+ * IDs are allocated in blocks, so rows do not commit in ID order and a refresh can pass a row that is
+ * committed later below its watermark. Such a row looks new to the index until an insert finds its URL
+ * taken, the writer then registers it with {@link #putStored(Collection)}.
+ * <p>
+ * Refreshes read rows outside the lock and merge them in batches, so lookups of concurrent chunks wait
+ * for a batch at most, never for the scan.
+ */
+@Component
+public class UrlIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UrlIndex.class);
+
+    /**
+     * Content hash of stored events written before content hashes were introduced, matches no event.
+     */
+    public static final long UNKNOWN_HASH = 0L;
+
+    private static final int REFRESH_BATCH = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean verifyHits;
+    private final LongLongHashMap contentHashes = new LongLongHashMap();
+    private final LongBloomFilter bloomFilter;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile long watermark;
+
+    @Autowired
+    public UrlIndex(JdbcTemplate jdbcTemplate, IngestProperties properties) {
+        IngestProperties.UrlIndex config = properties.getUrlIndex();
+        this.jdbcTemplate = jdbcTemplate;
+        this.verifyHits = config.isVerifyHits();
+        this.bloomFilter = config.isBloomFilter()
+                ? new LongBloomFilter(config.getExpectedUrls(), config.getFalsePositiveRate())
+                : null;
+    }
+
+    /**
+     * Adds the URLs of events stored since the previous refresh.
+     */
+    public void refresh() {
+        long[] newWatermark = {watermark};
+        int before = size();
+        long[] fingerprints = new long[REFRESH_BATCH];
+        long[] hashes = new long[REFRESH_BATCH];
+        int[] buffered = {0};
+
+        jdbcTemplate.query("SELECT id, url, content_hash FROM events WHERE id > ? ORDER BY id", rs -> {
+            fingerprints[buffered[0]] = Fingerprints.of(rs.getString(2));
+            hashes[buffered[0]] = rs.getLong(3);
+            newWatermark[0] = rs.getLong(1);
+            if (++buffered[0] == REFRESH_BATCH) {
+                putAll(fingerprints, hashes, buffered[0]);
+                buffered[0] = 0;
+            }
+        }, watermark);
+        putAll(fingerprints, hashes, buffered[0]);
+
+        watermark = newWatermark[0];
+        logger.info("[{}] Loaded [{}] new event URLs, total: [{}]", getClass().getSimpleName(), size() - before, size());
+    }
+
+    /**
+     * Returns the content hashes of the candidates that are already stored, keyed by URL.
+     * Candidates missing from the result are new.
+     */
+    public Map<String, Long> findStored(Collection<String> urls) {
+        Map<String, Long> hits = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            for (String url : urls) {
+                long fingerprint = Fingerprints.of(url);
+                if ((bloomFilter == null || bloomFilter.mightContain(fingerprint)) && contentHashes.containsKey(fingerprint)) {
+                    hits.put(url, contentHashes.get(fingerprint, UNKNOWN_HASH));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (!verifyHits || hits.isEmpty()) {
+            return hits;
+        }
+
+        Map<String, Long> stored = loadStored(hits.keySet());
+        if (stored.size() < hits.size()) {
+            logger.warn("[{}] [{}] URL fingerprint collisions resolved by the database", getClass().getSimpleName(), hits.size() - stored.size());
+        }
+        return stored;
+    }
+
+    /**
+     * Registers events that were just stored, with their content hashes keyed by URL.
+     */
+    public void putAll(Map<String, Long> hashesByUrl) {
+        lock.writeLock().lock();
+        try {
+            hashesByUrl.forEach((url, contentHash) -> put(Fingerprints.of(url), contentHash));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registers events that an insert found already stored, with the content hashes they are stored with.
+     * These are rows the refresh missed because they were committed below its watermark.
+     */
+    public void putStored(Collection<String> urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> stored = loadStored(urls);
+        putAll(stored);
+        logger.debug("[{}] Registered [{}] stored event URLs missed by the refresh", getClass().getSimpleName(), stored.size());
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return contentHashes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Long> loadStored(Collection<String> urls) {
+        Map<String, Long> stored = new HashMap<>();
+        List<String> urlList = new ArrayList<>(urls);
+        jdbcTemplate.query("SELECT url, content_hash FROM events WHERE url = ANY(?)",
+                ps -> {
+                    Array urlArray = ps.getConnection().createArrayOf("varchar", urlList.toArray());
+                    ps.setArray(1, urlArray);
+                },
+                rs -> {
+                    // getLong maps NULL of events stored without a hash to UNKNOWN_HASH
+                    stored.put(rs.getString(1), rs.getLong(2));
+                });
+        return stored;
+    }
+
+    private void putAll(long[] fingerprints, long[] contentHashes, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                put(fingerprints[i], contentHashes[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(long fingerprint, long contentHash) {
+        contentHashes.put(fingerprint, contentHash);
+        if (bloomFilter != null) {
+            bloomFilter.add(fingerprint);
+        }
+    }
+}
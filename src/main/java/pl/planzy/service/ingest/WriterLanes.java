@@ -0,0 +1,103 @@
+package pl.planzy.service.ingest;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pl.planzy.config.IngestProperties;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of writer threads for parallel ingestion.
+ * <p>
+ * Each lane is one thread with a small bounded queue. Chunks are routed to lanes by URL fingerprint,
+ * so the same URL is never written by two lanes at once, and submitting to a full lane blocks, which
+ * propagates backpressure to whoever produces the chunks. Every lane runs its chunks in its own
+ * transactions on its own pooled connection.
+ */
+@Component
+public class WriterLanes {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriterLanes.class);
+
+    private static final int LANE_QUEUE_CAPACITY = 2;
+
+    private final Lane[] lanes;
+
+    @Autowired
+    public WriterLanes(IngestProperties properties) {
+        int count = Math.max(1, properties.getWriters());
+        this.lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new Lane("Ingest-Writer-" + i);
+        }
+    }
+
+    public int size() {
+        return lanes.length;
+    }
+
+    /**
+     * Lane responsible for the given URL fingerprint.
+     */
+    public int laneOf(long fingerprint) {
+        return (int) Math.floorMod(fingerprint, (long) lanes.length);
+    }
+
+    /**
+     * Queues work on a lane, blocking while the lane's queue is full.
+     */
+    public <T> CompletableFuture<T> submit(int lane, Supplier<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                future.complete(work.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+
+        try {
+            lanes[lane].queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+    }
+
+    private static final class Lane {
+
+        private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(LANE_QUEUE_CAPACITY);
+        private final Thread thread;
+
+        private Lane(String name) {
+            this.thread = new Thread(this::run, name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    queue.take().run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            logger.debug("[{}] Writer lane [{}] stopped", WriterLanes.class.getSimpleName(), Thread.currentThread().getName());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package pl.planzy.util;
+
+/**
+ * 64-bit fingerprints of strings.
+ * <p>
+ * FNV-1a over the UTF-16 code units followed by the MurmurHash3 finalizer, which spreads the
+ * weak low bits of FNV over the whole value. With 64 bits the chance of any collision among
+ * ten million URLs is below one in a hundred thousand.
+ */
+public final class Fingerprints {
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    // Outside the range of UTF-16 code units, so no string content can produce them
+    private static final long TERMINATOR = 0x10000L;
+    private static final long NULL_MARKER = 0x10001L;
+
+    private Fingerprints() {
+    }
+
+    public static long of(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Fingerprint of a sequence of values. Every value is terminated, so ("ab", "c") and ("a", "bc")
+     * differ, and {@code null} is distinguished from the empty string.
+     */
+    public static long ofAll(String... values) {
+        long hash = FNV_OFFSET_BASIS;
+        for (String value : values) {
+            if (value == null) {
+                hash ^= NULL_MARKER;
+                hash *= FNV_PRIME;
+                continue;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= FNV_PRIME;
+            }
+            hash ^= TERMINATOR;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer.
+     */
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
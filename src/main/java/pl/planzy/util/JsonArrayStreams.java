@@ -0,0 +1,129 @@
+package pl.planzy.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Streams the elements of one array nested in a JSON document.
+ * <p>
+ * The document is read token by token, everything outside the path is skipped without being
+ * materialized, and every element is bound straight into the given type, one at a time. Neither the
+ * body as a string nor a tree of the document or of its elements is ever built.
+ */
+public final class JsonArrayStreams {
+
+    private JsonArrayStreams() {
+    }
+
+    /**
+     * Binds every element of the array at the path to the type and hands it to the consumer, in document
+     * order. The stream is not closed and may still hold unread content after the array.
+     *
+     * @param type Type of the elements, {@code JsonNode} keeps them as trees
+     * @param path Field names and array indexes leading to the array, for example {@code "results", 0, "hits"}
+     * @return Number of elements, or {@code -1} when there is no array at the path
+     */
+    public static <T> int forEachElement(ObjectMapper mapper, InputStream in, Class<T> type, Consumer<? super T> consumer,
+                                         Object... path) throws IOException {
+        return forEachElement(mapper, in, type, consumer, null, path);
+    }
+
+    /**
+     * Like {@link #forEachElement(ObjectMapper, InputStream, Class, Consumer, Object...)}, also handing the
+     * scalar fields of the object holding the array to {@code fields}, those before and after the array,
+     * for example the {@code nbHits} next to Algolia's {@code hits}. Object and array fields are skipped.
+     *
+     * @param fields Receives name and value of every scalar field next to the array, {@code null} for none
+     */
+    public static <T> int forEachElement(ObjectMapper mapper, InputStream in, Class<T> type, Consumer<? super T> consumer,
+                                         BiConsumer<String, JsonNode> fields, Object... path) throws IOException {
+        // The reader resolves the type's deserializer once, not once per element
+        ObjectReader reader = mapper.readerFor(type);
+        boolean heldByObject = fields != null && path.length > 0 && !(path[path.length - 1] instanceof Integer);
+
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            parser.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
+            parser.nextToken();
+
+            for (int i = 0; i < path.length; i++) {
+                Object step = path[i];
+                boolean found = step instanceof Integer index
+                        ? enterElement(parser, index)
+                        : enterField(mapper, parser, step.toString(), heldByObject && i == path.length - 1 ? fields : null);
+                if (!found) {
+                    return -1;
+                }
+            }
+
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                return -1;
+            }
+
+            int count = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                consumer.accept(reader.readValue(parser));
+                count++;
+            }
+
+            if (heldByObject) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.currentName();
+                    parser.nextToken();
+                    readField(mapper, parser, fieldName, fields);
+                }
+            }
+            return count;
+        }
+    }
+
+    private static boolean enterField(ObjectMapper mapper, JsonParser parser, String name,
+                                      BiConsumer<String, JsonNode> fields) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            parser.nextToken();
+            if (fieldName.equals(name)) {
+                return true;
+            }
+            readField(mapper, parser, fieldName, fields);
+        }
+        return false;
+    }
+
+    /**
+     * Hands a scalar field on, skips any other, leaving the parser at the last token of the value.
+     */
+    private static void readField(ObjectMapper mapper, JsonParser parser, String name,
+                                  BiConsumer<String, JsonNode> fields) throws IOException {
+        if (fields != null && parser.currentToken().isScalarValue()) {
+            fields.accept(name, mapper.readTree(parser));
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    private static boolean enterElement(JsonParser parser, int index) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            return false;
+        }
+        for (int i = 0; i <= index; i++) {
+            if (parser.nextToken() == JsonToken.END_ARRAY) {
+                return false;
+            }
+            if (i < index) {
+                parser.skipChildren();
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,121 @@
+package pl.planzy.util;
+
+import java.util.Arrays;
+
+/**
+ * Map of primitive {@code long} keys to {@code long} values backed by an open-addressing table with linear probing.
+ * <p>
+ * An entry costs 32 to 64 bytes depending on the fill of the table, compared to well over 100 bytes
+ * for a boxed entry in a {@link java.util.HashMap}. The table doubles once it is half full.
+ * Zero marks free key slots, so the key zero itself is tracked by separate fields.
+ * Not thread-safe.
+ */
+public class LongLongHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+    private long zeroValue;
+
+    public LongLongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize) - 1) << 2);
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        return keys[find(key)] != 0;
+    }
+
+    /**
+     * @return The value of the key, or {@code defaultValue} when the key is absent
+     */
+    public long get(long key, long defaultValue) {
+        if (key == 0) {
+            return containsZero ? zeroValue : defaultValue;
+        }
+        int slot = find(key);
+        return keys[slot] != 0 ? values[slot] : defaultValue;
+    }
+
+    /**
+     * @return {@code true} if the key was not present before
+     */
+    public boolean put(long key, long value) {
+        if (key == 0) {
+            zeroValue = value;
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int slot = find(key);
+        values[slot] = value;
+        if (keys[slot] != 0) {
+            return false;
+        }
+        keys[slot] = key;
+        size++;
+
+        if (size * 2 > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        containsZero = false;
+        size = 0;
+    }
+
+    /**
+     * Slot holding the key, or the free slot where it would be inserted.
+     */
+    private int find(long key) {
+        int slot = slot(key, mask);
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
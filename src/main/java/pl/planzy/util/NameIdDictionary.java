@@ -0,0 +1,211 @@
+package pl.planzy.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded map from a normalized name to a primitive {@code long} ID.
+ * <p>
+ * Entries live in parallel arrays of an open-addressing table with linear probing, so an entry costs
+ * one reference, one long and one byte on top of the name itself. When the table holds {@code maxSize}
+ * entries, further inserts evict entries chosen by the CLOCK algorithm: every lookup marks the entry
+ * as referenced and the clock hand skips (and clears) referenced entries before evicting one.
+ * Deletion uses backward shifting, so the table never contains tombstones.
+ * <p>
+ * Lookups take a shared lock, inserts an exclusive one. Setting the reference bit under the shared
+ * lock is a benign race, at worst an entry loses its second chance.
+ */
+public class NameIdDictionary {
+
+    public static final long MISSING = -1L;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final String name;
+    private final int maxSize;
+    private final String[] keys;
+    private final long[] values;
+    private final byte[] referenced;
+    private final int mask;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private int size;
+    private int clockHand;
+
+    /**
+     * @param name    Name used in metrics and logs
+     * @param maxSize Maximum number of entries, the table is sized to stay at most half full
+     */
+    public NameIdDictionary(String name, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(maxSize - 1) << 2);
+        this.name = name;
+        this.maxSize = maxSize;
+        this.keys = new String[capacity];
+        this.values = new long[capacity];
+        this.referenced = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Normalizes a name the same way it is stored in the database.
+     */
+    public static String normalize(String name) {
+        return name == null ? null : name.trim();
+    }
+
+    /**
+     * @return ID mapped to the name or {@link #MISSING}
+     */
+    public long get(String key) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(key);
+            if (keys[slot] == null) {
+                misses.increment();
+                return MISSING;
+            }
+            referenced[slot] = 1;
+            hits.increment();
+            return values[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String key, long id) {
+        lock.writeLock().lock();
+        try {
+            insert(key, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Puts the first {@code count} names with their IDs under one exclusive lock.
+     */
+    public void putAll(String[] names, long[] ids, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                insert(names[i], ids[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(keys, null);
+            size = 0;
+            clockHand = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    private void insert(String key, long id) {
+        int slot = findSlot(key);
+        if (keys[slot] != null) {
+            values[slot] = id;
+            return;
+        }
+
+        if (size >= maxSize) {
+            evictOne();
+            slot = findSlot(key);
+        }
+
+        keys[slot] = key;
+        values[slot] = id;
+        referenced[slot] = 0;
+        size++;
+    }
+
+    private int findSlot(String key) {
+        int slot = mix(key.hashCode()) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void evictOne() {
+        while (true) {
+            int slot = clockHand;
+            if (keys[slot] != null) {
+                if (referenced[slot] == 0) {
+                    remove(slot);
+                    evictions.increment();
+                    return;
+                }
+                referenced[slot] = 0;
+            }
+            clockHand = (clockHand + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes the entry at the slot and shifts following entries of the probe chain back into the gap.
+     */
+    private void remove(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != null) {
+            int home = mix(keys[next].hashCode()) & mask;
+            // Move the entry if its home slot is not cyclically inside (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                referenced[gap] = referenced[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = null;
+        size--;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
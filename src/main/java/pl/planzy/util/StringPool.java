@@ -0,0 +1,107 @@
+package pl.planzy.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, lossy pool of canonical strings, so equal values repeated across many objects share one instance.
+ * <p>
+ * The pool is a direct-mapped table: every string has exactly one slot, taken over by the last string
+ * that hashed to it. A lookup finding an equal string returns the pooled instance, any other lookup
+ * pools the given one. Memory is fixed at one reference per slot and frequent values stay pooled, while
+ * rare values merely pass through.
+ * <p>
+ * Slots are read and written without locks. Strings are immutable and safely published through their
+ * final fields, so a racing lookup at worst misses a value another thread just pooled.
+ */
+public class StringPool {
+
+    // Object header and fields of a String plus the header of its byte array, compact strings assumed
+    private static final int STRING_OVERHEAD = 40;
+
+    private final String name;
+    private final String[] slots;
+    private final int mask;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * @param name     Name used in metrics and logs
+     * @param capacity Number of slots, rounded up to a power of two
+     */
+    public StringPool(String name, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.name = name;
+        this.slots = new String[capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1];
+        this.mask = slots.length - 1;
+    }
+
+    /**
+     * @return The pooled string equal to the value, or the value itself, which becomes the pooled one
+     */
+    public String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        lookups.increment();
+        int slot = mix(value.hashCode()) & mask;
+        String pooled = slots[slot];
+        if (pooled != null && pooled.equals(value)) {
+            if (pooled != value) {
+                hits.increment();
+                bytesSaved.add(STRING_OVERHEAD + value.length());
+            }
+            return pooled;
+        }
+
+        slots[slot] = value;
+        return value;
+    }
+
+    /**
+     * Replaces every element of the array with its pooled string, in place.
+     */
+    public String[] canonicalAll(String[] values) {
+        if (values != null) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = canonical(values[i]);
+            }
+        }
+        return values;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * Lookups that returned a pooled copy instead of the given string.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Estimated heap of the strings dropped in favour of pooled copies.
+     */
+    public long bytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
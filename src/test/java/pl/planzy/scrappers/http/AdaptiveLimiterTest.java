@@ -0,0 +1,231 @@
+package pl.planzy.scrappers.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.planzy.config.ScraperProperties;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sends requests through a limiter to a stub server that answers 429 or 503 on demand, to check the
+ * limit, the retries and the requests waiting for a slot.
+ */
+class AdaptiveLimiterTest {
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ExecutorService serverThreads = Executors.newCachedThreadPool();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final List<Long> arrivals = new CopyOnWriteArrayList<>();
+    private final ScraperProperties.RateLimit config = new ScraperProperties.RateLimit();
+
+    /**
+     * Requests wait for this latch before they are answered.
+     */
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    /**
+     * Number of first requests answered with {@link #failureStatus}, the rest get 200.
+     */
+    private volatile int failures = Integer.MAX_VALUE;
+    private volatile int failureStatus = 503;
+    private volatile String retryAfter;
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            int request = requests.incrementAndGet();
+            arrivals.add(System.nanoTime());
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+
+            boolean failing = request <= failures;
+            if (failing && retryAfter != null) {
+                exchange.getResponseHeaders().add("Retry-After", retryAfter);
+            }
+            exchange.sendResponseHeaders(failing ? failureStatus : 200, -1);
+            exchange.close();
+        });
+        // Requests held at the gate must not block the ones behind them
+        server.setExecutor(serverThreads);
+        server.start();
+
+        config.setBaseDelay(Duration.ofMillis(1));
+        config.setMaxDelay(Duration.ofMillis(10));
+        config.setBackoffRatio(0.5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gate.countDown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void decreasesLimitOncePerBurstOfOverloads() throws Exception {
+        config.setInitialLimit(8);
+        config.setMaxAttempts(1);
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", config);
+
+        // All eight requests of the first burst started before the limit was decreased
+        assertThat(burst(limiter, 8)).containsOnly(503);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+        assertThat(limiter.getOverloads()).isEqualTo(1);
+
+        // Requests started after the decrease can decrease it again
+        assertThat(burst(limiter, 4)).containsOnly(503);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+        assertThat(limiter.getOverloads()).isEqualTo(2);
+    }
+
+    @Test
+    void growsLimitWhileFullyUsed() {
+        config.setInitialLimit(1);
+        failures = 0;
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", config);
+
+        send(limiter).join();
+        assertThat(limiter.getLimit()).isEqualTo(2);
+
+        // One request at a time no longer uses the whole limit
+        send(limiter).join();
+        send(limiter).join();
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void stopsRetryingWhenBudgetIsSpent() {
+        config.setMaxAttempts(10);
+        config.setRetryBurst(2);
+        config.setRetryRatio(0);
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", config);
+
+        assertThat(send(limiter).join().statusCode()).isEqualTo(503);
+        assertThat(requests).hasValue(3);
+        assertThat(limiter.getRetries()).isEqualTo(2);
+
+        // The budget is empty, so the next request gets no retry at all
+        assertThat(send(limiter).join().statusCode()).isEqualTo(503);
+        assertThat(requests).hasValue(4);
+        assertThat(limiter.getRetries()).isEqualTo(2);
+    }
+
+    @Test
+    void stopsRetryingAfterMaxAttempts() {
+        config.setMaxAttempts(3);
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", config);
+
+        assertThat(send(limiter).join().statusCode()).isEqualTo(503);
+        assertThat(requests).hasValue(3);
+    }
+
+    @Test
+    void retriesThrottledRequestAfterRetryAfter() {
+        failures = 1;
+        failureStatus = 429;
+        retryAfter = "1";
+        config.setMaxDelay(Duration.ofSeconds(5));
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", config);
+
+        assertThat(send(limiter).join().statusCode()).isEqualTo(200);
+        assertThat(requests).hasValue(2);
+        assertThat(arrivals.get(1) - arrivals.get(0)).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(1000));
+    }
+
+    @Test
+    void capsRetryAfterAtMaxDelay() {
+        failures = 1;
+        retryAfter = "60";
+        config.setMaxDelay(Duration.ofMillis(100));
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", config);
+
+        assertThat(send(limiter).orTimeout(10, TimeUnit.SECONDS).join().statusCode()).isEqualTo(200);
+        assertThat(arrivals.get(1) - arrivals.get(0)).isLessThan(TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test
+    void releasesWaitingRequestsAfterOverload() throws Exception {
+        config.setInitialLimit(2);
+        config.setMaxAttempts(1);
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", config);
+        gate = new CountDownLatch(1);
+
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            responses.add(send(limiter));
+        }
+        awaitTrue(() -> requests.get() == 2);
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+        assertThat(responses).noneMatch(CompletableFuture::isDone);
+
+        gate.countDown();
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertThat(responses).extracting(response -> response.join().statusCode()).containsOnly(503);
+        assertThat(requests).hasValue(5);
+        assertThat(maxActive.get()).isLessThanOrEqualTo(2);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    /**
+     * Sends requests that are all answered together, once every one of them reached the server.
+     */
+    private List<Integer> burst(AdaptiveLimiter limiter, int size) throws Exception {
+        int before = requests.get();
+        gate = new CountDownLatch(1);
+
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            responses.add(send(limiter));
+        }
+        awaitTrue(() -> requests.get() == before + size);
+        gate.countDown();
+
+        List<Integer> statuses = new ArrayList<>();
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            statuses.add(response.get(10, TimeUnit.SECONDS).statusCode());
+        }
+        return statuses;
+    }
+
+    private CompletableFuture<HttpResponse<Void>> send(AdaptiveLimiter limiter) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getAddress().getPort() + "/")).build();
+        return limiter.send(httpClient, request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met within 10 s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package pl.planzy.scrappers.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.planzy.config.ScraperProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Records responses of a stub server and replays them, to check that an archive is only replaced by
+ * a completed recording.
+ */
+class FixtureArchiveTest {
+
+    private static final String SOURCE = "test";
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private HttpServer server;
+    private ScraperProperties properties;
+    private AdaptiveLimiter limiter;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = ("{\"items\":[\"" + exchange.getRequestURI().getQuery() + "\"]}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        properties = new ScraperProperties();
+        properties.getFixture().setDirectory(directory.toString());
+        properties.getFixture().setSpeed(0);
+        limiter = new AdaptiveLimiters(properties, new SimpleMeterRegistry()).forScrapper("test", SOURCE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void replaysCompletedRecording() throws IOException {
+        record(true, "page=1", "page=2");
+
+        assertThat(replay("page=1")).isEqualTo("{\"items\":[\"page=1\"]}");
+        assertThat(replay("page=2")).isEqualTo("{\"items\":[\"page=2\"]}");
+    }
+
+    @Test
+    void startsArchiveOverOnEveryRecording() throws IOException {
+        record(true, "page=1");
+        record(true, "page=2");
+
+        assertThat(replay("page=1")).isNull();
+        assertThat(replay("page=2")).isEqualTo("{\"items\":[\"page=2\"]}");
+    }
+
+    @Test
+    void keepsPreviousArchiveWhenRecordingDidNotComplete() throws IOException {
+        record(true, "page=1");
+        record(false, "page=2");
+
+        assertThat(replay("page=1")).isEqualTo("{\"items\":[\"page=1\"]}");
+        assertThat(replay("page=2")).isNull();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).extracting(file -> file.getFileName().toString()).containsExactly("test.jsonl.gz");
+        }
+    }
+
+    private void record(boolean complete, String... keys) {
+        properties.getFixture().setMode(ScraperProperties.Fixture.Mode.RECORD);
+        FixtureArchive archive = new FixtureArchive(httpClient, objectMapper, properties);
+
+        try (FixtureArchive.Recording recording = archive.startRecording(SOURCE)) {
+            for (String key : keys) {
+                archive.send(SOURCE, limiter, request(key), key, "items").join();
+            }
+            if (complete) {
+                recording.complete();
+            }
+        }
+    }
+
+    /**
+     * @return The replayed body, {@code null} when nothing was recorded for the key
+     */
+    private String replay(String key) throws IOException {
+        properties.getFixture().setMode(ScraperProperties.Fixture.Mode.REPLAY);
+        FixtureArchive archive = new FixtureArchive(httpClient, objectMapper, properties);
+
+        HttpResponse<InputStream> response = archive.send(SOURCE, limiter, request(key), key, "items").join();
+        try (InputStream body = response.body()) {
+            return response.statusCode() == 200 ? new String(body.readAllBytes(), StandardCharsets.UTF_8) : null;
+        }
+    }
+
+    private HttpRequest request(String key) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getAddress().getPort() + "/?" + key)).build();
+    }
+}
@@ -0,0 +1,192 @@
+package pl.planzy.scrappers.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.planzy.config.ScraperProperties;
+import pl.planzy.scrappers.http.AdaptiveLimiters;
+import pl.planzy.scrappers.http.FixtureArchive;
+import pl.planzy.scrappers.http.HttpResponseCache;
+import pl.planzy.scrappers.model.EbiletTitle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the scraper against a stub listing that answers conditional requests, to check that validators
+ * are only committed once the scraped pages were persisted.
+ */
+class ScrapperEbiletTest {
+
+    private static final String PAGE = "{\"titles\":[{\"title\":\"First\"},{\"title\":\"Second\"}]}";
+    private static final String EMPTY_PAGE = "{\"titles\":[]}";
+
+    @TempDir
+    Path cacheDirectory;
+
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private final AtomicInteger titleReaders = new AtomicInteger();
+    private volatile boolean notModifiedWithEncoding;
+    private volatile boolean ignoreValidators;
+    private HttpServer server;
+    private ScraperProperties properties;
+    private ScrapperEbilet scrapper;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/listing", exchange -> {
+            boolean firstPage = exchange.getRequestURI().getQuery().contains("top=0&");
+            String etag = firstPage ? "\"page-0\"" : "\"empty\"";
+
+            if (!ignoreValidators && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedResponses.incrementAndGet();
+                if (notModifiedWithEncoding) {
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                fullResponses.incrementAndGet();
+                byte[] body = (firstPage ? PAGE : EMPTY_PAGE).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("ETag", etag);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+
+        properties = new ScraperProperties();
+        properties.getEbilet().setBaseUrl("http://localhost:" + server.getAddress().getPort() + "/listing");
+        properties.getEbilet().setPageSize(2);
+        properties.getEbilet().setMaxInFlight(1);
+        properties.getCache().setEnabled(true);
+        properties.getCache().setDirectory(cacheDirectory.toString());
+        properties.getFixture().setDirectory(cacheDirectory.resolve("fixtures").toString());
+        properties.getFixture().setSpeed(0);
+
+        // Counts the readers titles are bound with, one per parsed page
+        ObjectMapper objectMapper = new ObjectMapper() {
+            @Override
+            public ObjectReader readerFor(Class<?> type) {
+                if (type == EbiletTitle.class) {
+                    titleReaders.incrementAndGet();
+                }
+                return super.readerFor(type);
+            }
+        };
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        scrapper = new ScrapperEbilet(data -> List.of(), httpClient, objectMapper,
+                new HttpResponseCache(objectMapper, properties), properties,
+                new AdaptiveLimiters(properties, new SimpleMeterRegistry()),
+                new FixtureArchive(httpClient, objectMapper, properties));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void skipsPagesUnchangedSincePersistedRun() {
+        assertThat(scrape()).hasSize(1);
+        scrapper.persisted();
+
+        assertThat(scrape()).isEmpty();
+        assertThat(notModifiedResponses).hasValue(2);
+    }
+
+    @Test
+    void skipsUnchangedPagesWhenNotModifiedRepeatsContentEncoding() {
+        assertThat(scrape()).hasSize(1);
+        scrapper.persisted();
+
+        notModifiedWithEncoding = true;
+
+        assertThat(scrape()).isEmpty();
+        assertThat(notModifiedResponses).hasValue(2);
+    }
+
+    @Test
+    void skipsBindingOfFullResponseWithIdenticalBody() {
+        ignoreValidators = true;
+        assertThat(scrape()).hasSize(1);
+        scrapper.persisted();
+        assertThat(titleReaders).hasValue(2);
+
+        assertThat(scrape()).isEmpty();
+        assertThat(fullResponses).hasValue(4);
+        assertThat(titleReaders).hasValue(2);
+    }
+
+    @Test
+    void fetchesPagesAgainWhenRunWasNotPersisted() {
+        assertThat(scrape()).hasSize(1);
+
+        List<List<EbiletTitle>> pages = scrape();
+
+        assertThat(pages).hasSize(1);
+        assertThat(pages.get(0)).extracting(EbiletTitle::getTitle).containsExactly("First", "Second");
+        assertThat(notModifiedResponses).hasValue(0);
+        assertThat(fullResponses).hasValue(4);
+    }
+
+    @Test
+    void recordsFullPagesAndCommitsNoValidatorsWithCacheEnabled() {
+        properties.getFixture().setMode(ScraperProperties.Fixture.Mode.RECORD);
+
+        assertThat(scrape()).hasSize(1);
+        scrapper.persisted();
+        assertThat(scrape()).hasSize(1);
+        scrapper.persisted();
+
+        // Nothing was committed by the recordings, so a live run sends no validators either
+        properties.getFixture().setMode(ScraperProperties.Fixture.Mode.OFF);
+        assertThat(scrape()).hasSize(1);
+
+        assertThat(notModifiedResponses).hasValue(0);
+        assertThat(fullResponses).hasValue(6);
+    }
+
+    @Test
+    void replaysSamePagesOnEveryRunWithCacheEnabled() {
+        properties.getFixture().setMode(ScraperProperties.Fixture.Mode.RECORD);
+        scrape();
+        scrapper.persisted();
+
+        properties.getFixture().setMode(ScraperProperties.Fixture.Mode.REPLAY);
+        for (int run = 0; run < 2; run++) {
+            List<List<EbiletTitle>> pages = scrape();
+            scrapper.persisted();
+
+            assertThat(pages).hasSize(1);
+            assertThat(pages.get(0)).extracting(EbiletTitle::getTitle).containsExactly("First", "Second");
+        }
+        assertThat(fullResponses).hasValue(2);
+    }
+
+    private List<List<EbiletTitle>> scrape() {
+        List<List<EbiletTitle>> pages = new ArrayList<>();
+        scrapper.scrape(null, (page, cursor) -> pages.add(page));
+        return pages;
+    }
+}
@@ -0,0 +1,186 @@
+package pl.planzy.scrappers.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.planzy.config.ScraperProperties;
+import pl.planzy.scrappers.browser.BrowserPool;
+import pl.planzy.scrappers.http.AdaptiveLimiters;
+import pl.planzy.scrappers.http.FixtureArchive;
+import pl.planzy.scrappers.model.GoingAppHit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Replays the Algolia search against a stub multi-query endpoint serving two full pages and a short one.
+ */
+class ScrapperGoingAppTest {
+
+    private static final int HITS_PER_PAGE = 2;
+    private static final Map<Integer, String> PAGES = Map.of(
+            0, "{\"results\":[{\"hits\":[{\"objectID\":\"1\",\"name_pl\":\"One\"},{\"objectID\":\"2\",\"name_pl\":\"Two\"}]}]}",
+            1, "{\"results\":[{\"hits\":[{\"objectID\":\"3\",\"name_pl\":\"Three\"},{\"objectID\":\"4\",\"name_pl\":\"Four\"}]}]}",
+            2, "{\"results\":[{\"hits\":[{\"objectID\":\"5\",\"name_pl\":\"Five\"}]}]}");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BrowserPool browserPool = mock(BrowserPool.class);
+    private final Queue<JsonNode> requests = new ConcurrentLinkedQueue<>();
+    private volatile int failingPage = -1;
+    private volatile int nbHits = 5;
+    private HttpServer server;
+    private ScraperProperties properties;
+    private ScrapperGoingApp scrapper;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/1/indexes/", this::answer);
+        server.start();
+
+        properties = new ScraperProperties();
+        properties.getGoingApp().setMode(ScraperProperties.GoingApp.Mode.REPLAY);
+        ScraperProperties.Algolia algolia = properties.getGoingApp().getAlgolia();
+        algolia.setUrl("http://localhost:" + server.getAddress().getPort() + "/1/indexes/*/queries");
+        algolia.setApplicationId("app");
+        algolia.setApiKey("key");
+        algolia.setIndexName("events");
+        algolia.setParams("query=&page=7");
+        algolia.setHitsPerPage(HITS_PER_PAGE);
+        algolia.setMaxInFlight(1);
+
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        scrapper = new ScrapperGoingApp(objectMapper, data -> List.of(), httpClient, browserPool, properties,
+                new AdaptiveLimiters(properties, new SimpleMeterRegistry()),
+                new FixtureArchive(httpClient, objectMapper, properties));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void pagesThroughAlgoliaUntilShortPage() {
+        List<String> cursors = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+
+        scrapper.scrape(null, (page, cursor) -> {
+            cursors.add(cursor);
+            page.forEach(hit -> names.add(hit.getNamePl()));
+        });
+
+        assertThat(names).containsExactly("One", "Two", "Three", "Four", "Five");
+        assertThat(cursors).containsExactly("1", "2", "3");
+        assertThat(requests).extracting(request -> request.at("/requests/0/indexName").asText()).containsOnly("events");
+        assertThat(requests).extracting(request -> request.at("/requests/0/params").asText())
+                .containsExactly("query=&hitsPerPage=2&page=0", "query=&hitsPerPage=2&page=1", "query=&hitsPerPage=2&page=2");
+        verifyNoInteractions(browserPool);
+    }
+
+    @Test
+    void resumesAtPageOfCursor() {
+        List<GoingAppHit> hits = new ArrayList<>();
+
+        scrapper.scrape("2", (page, cursor) -> hits.addAll(page));
+
+        assertThat(hits).extracting(GoingAppHit::getObjectId).containsExactly("5");
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void failsAfterDeliveredPagesInsteadOfKeepingThem() {
+        failingPage = 1;
+        List<GoingAppHit> hits = new ArrayList<>();
+
+        assertThatThrownBy(() -> scrapper.scrape(null, (page, cursor) -> hits.addAll(page)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("after 2 records");
+
+        assertThat(hits).extracting(GoingAppHit::getObjectId).containsExactly("1", "2");
+        verifyNoInteractions(browserPool);
+    }
+
+    @Test
+    void failsWhenAlgoliaEndsBeforeAllHits() {
+        // Pagination of the index capped below its size, the short page comes before nbHits is reached
+        nbHits = 2000;
+        List<GoingAppHit> hits = new ArrayList<>();
+
+        assertThatThrownBy(() -> scrapper.scrape(null, (page, cursor) -> hits.addAll(page)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("after 5 records")
+                .hasRootCauseMessage("Algolia search ended after 5 of 2000 hits, the index limits pagination (paginationLimitedTo) below its size");
+
+        assertThat(hits).hasSize(5);
+        verifyNoInteractions(browserPool);
+    }
+
+    @Test
+    void recordsAndReplaysFixturesInBrowserMode(@TempDir Path fixtures) {
+        properties.getGoingApp().setMode(ScraperProperties.GoingApp.Mode.BROWSER);
+        properties.getFixture().setDirectory(fixtures.toString());
+        properties.getFixture().setSpeed(0);
+
+        properties.getFixture().setMode(ScraperProperties.Fixture.Mode.RECORD);
+        List<GoingAppHit> recorded = new ArrayList<>();
+        scrapper.scrape(null, (page, cursor) -> recorded.addAll(page));
+        assertThat(recorded).extracting(GoingAppHit::getObjectId).containsExactly("1", "2", "3", "4", "5");
+
+        requests.clear();
+        properties.getFixture().setMode(ScraperProperties.Fixture.Mode.REPLAY);
+        List<GoingAppHit> replayed = new ArrayList<>();
+        scrapper.scrape(null, (page, cursor) -> replayed.addAll(page));
+
+        assertThat(replayed).extracting(GoingAppHit::getObjectId).containsExactly("1", "2", "3", "4", "5");
+        assertThat(requests).isEmpty();
+        verifyNoInteractions(browserPool);
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        JsonNode request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = objectMapper.readTree(body);
+        }
+        requests.add(request);
+
+        String params = request.at("/requests/0/params").asText();
+        int page = Integer.parseInt(params.substring(params.lastIndexOf("page=") + "page=".length()));
+        boolean authorized = "app".equals(exchange.getRequestHeaders().getFirst("X-Algolia-Application-Id"))
+                && "key".equals(exchange.getRequestHeaders().getFirst("X-Algolia-API-Key"));
+
+        if (!authorized || page == failingPage || !PAGES.containsKey(page)) {
+            exchange.sendResponseHeaders(400, -1);
+        } else {
+            byte[] body = PAGES.get(page).replace("]}]}", "],\"nbHits\":" + nbHits + "}]}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+}
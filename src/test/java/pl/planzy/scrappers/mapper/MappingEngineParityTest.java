@@ -0,0 +1,153 @@
+package pl.planzy.scrappers.mapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import pl.planzy.config.ScraperProperties;
+import pl.planzy.dto.ScrapedEvent;
+import pl.planzy.scrappers.mapper.impl.EventMapperEbilet;
+import pl.planzy.scrappers.mapper.impl.EventMapperGoingApp;
+import pl.planzy.scrappers.mapper.spec.ExtractionPlan;
+import pl.planzy.scrappers.mapper.spec.MappingSpec;
+import pl.planzy.scrappers.mapper.spec.SpecEventMapper;
+import pl.planzy.scrappers.model.EbiletTitle;
+import pl.planzy.scrappers.model.GoingAppHit;
+import pl.planzy.util.JsonArrayStreams;
+import pl.planzy.util.StringPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Maps the same recorded eBilet titles and GoingApp hits with the hand-written mappers and with the
+ * mapping specs, which must give equal events, apart from the differences documented on
+ * {@link pl.planzy.config.MappingSpecConfiguration}.
+ */
+class MappingEngineParityTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScraperProperties properties = new ScraperProperties();
+    private final StringPool stringPool = new StringPool("test", 1024);
+
+    private final EventMapper<EbiletTitle> codeEbilet;
+    private final EventMapper<EbiletTitle> specEbilet;
+    private final EventMapper<GoingAppHit> codeGoingApp;
+    private final EventMapper<GoingAppHit> specGoingApp;
+
+    MappingEngineParityTest() {
+        properties.getMapping().setParallel(false);
+
+        codeEbilet = new EventMapperEbilet(ForkJoinPool.commonPool(), stringPool, properties);
+        specEbilet = specMapper("mapping/ebilet.json", EbiletTitle.class);
+        codeGoingApp = new EventMapperGoingApp(ForkJoinPool.commonPool(), stringPool, properties);
+        specGoingApp = specMapper("mapping/goingapp.json", GoingAppHit.class);
+    }
+
+    @Test
+    void mapsEbiletTitlesAlike() throws IOException {
+        List<EbiletTitle> titles = new ArrayList<>();
+        try (InputStream in = new ClassPathResource("fixtures/ebilet-titles.json").getInputStream()) {
+            JsonArrayStreams.forEachElement(objectMapper, in, EbiletTitle.class, titles::add, "titles");
+        }
+
+        List<ScrapedEvent> events = codeEbilet.mapEvents(titles);
+
+        // The title without a name and the one with an unparsable date are skipped by both
+        assertThat(events).hasSize(titles.size() - 2);
+        assertThat(specEbilet.mapEvents(titles)).isEqualTo(events);
+        for (EbiletTitle title : titles) {
+            assertThat(specEbilet.mapEvents(List.of(title))).as(title.toString()).isEqualTo(codeEbilet.mapEvents(List.of(title)));
+        }
+    }
+
+    @Test
+    void mapsGoingAppHitsAlike() throws IOException {
+        List<GoingAppHit> hits = new ArrayList<>();
+        try (InputStream in = new ClassPathResource("fixtures/goingapp-hits.json").getInputStream()) {
+            JsonArrayStreams.forEachElement(objectMapper, in, GoingAppHit.class, hits::add, "results", 0, "hits");
+        }
+
+        List<ScrapedEvent> events = codeGoingApp.mapEvents(hits);
+
+        assertThat(events).hasSize(hits.size());
+        assertThat(specGoingApp.mapEvents(hits)).isEqualTo(events);
+        for (GoingAppHit hit : hits) {
+            assertThat(specGoingApp.mapEvents(List.of(hit))).as(hit.toString()).isEqualTo(codeGoingApp.mapEvents(List.of(hit)));
+        }
+    }
+
+    @Test
+    void leavesEbiletTitleWithoutImageWithoutThumbnail() {
+        EbiletTitle title = ebiletTitle();
+        title.setImageLandscape(null);
+
+        ScrapedEvent code = codeEbilet.mapEvents(List.of(title)).get(0);
+
+        // Persistence stores the "No thumbnail" default instead of the media URL followed by "null"
+        assertThat(code.getThumbnail()).isNull();
+        assertThat(specEbilet.mapEvents(List.of(title))).containsExactly(code);
+    }
+
+    @Test
+    void prefixesEbiletImageWithMediaUrl() {
+        ScrapedEvent code = codeEbilet.mapEvents(List.of(ebiletTitle())).get(0);
+
+        assertThat(code.getThumbnail()).isEqualTo("https://www.ebilet.pl/media/title/koncert/landscape.jpg");
+        assertThat(specEbilet.mapEvents(List.of(ebiletTitle()))).containsExactly(code);
+    }
+
+    @Test
+    void specSkipsEbiletTitleWithoutLinkAndSubcategory() {
+        EbiletTitle title = ebiletTitle();
+        title.setLinkTo(null);
+        title.setSubcategory(null);
+
+        assertThat(codeEbilet.mapEvents(List.of(title))).extracting(ScrapedEvent::getUrl)
+                .containsExactly("https://www.ebilet.pl/muzyka/null/koncert");
+        assertThat(specEbilet.mapEvents(List.of(title))).isEmpty();
+    }
+
+    @Test
+    void specDefaultsMissingFirstLocationAndDropsMissingNames() {
+        GoingAppHit hit = new GoingAppHit();
+        hit.setNamePl("Koncert");
+        hit.setLocationsNames(new String[]{null, "Pomorze"});
+        hit.setArtistsNames(new String[]{"Sanah", null});
+        hit.setTagsNames(new String[]{null, "pop"});
+
+        ScrapedEvent code = codeGoingApp.mapEvents(List.of(hit)).get(0);
+        ScrapedEvent spec = specGoingApp.mapEvents(List.of(hit)).get(0);
+
+        assertThat(code.getLocation()).isNull();
+        assertThat(spec.getLocation()).isEqualTo("Unknown Location");
+        assertThat(code.getArtists()).containsExactly("Sanah", null);
+        assertThat(spec.getArtists()).containsExactly("Sanah");
+        assertThat(code.getTags()).containsExactly(null, "pop");
+        assertThat(spec.getTags()).containsExactly("pop");
+        assertThat(spec).usingRecursiveComparison().ignoringFields("location", "artists", "tags").isEqualTo(code);
+    }
+
+    private <T> EventMapper<T> specMapper(String spec, Class<T> recordType) {
+        ExtractionPlan<T> plan = ExtractionPlan.compile(objectMapper, MappingSpec.load(objectMapper, new ClassPathResource(spec)), recordType);
+        return new SpecEventMapper<>(plan, ForkJoinPool.commonPool(), stringPool, properties);
+    }
+
+    private static EbiletTitle ebiletTitle() {
+        EbiletTitle title = new EbiletTitle();
+        title.setTitle("Koncert");
+        title.setDateFrom("2026-06-12T20:00:00");
+        title.setLinkTo("https://www.ebilet.pl/muzyka/rock/koncert");
+        title.setCategory("muzyka");
+        title.setCategoryName("Muzyka");
+        title.setSubcategory("rock");
+        title.setSubcategoryName("Rock");
+        title.setSlug("koncert");
+        title.setImageLandscape("/title/koncert/landscape.jpg");
+        return title;
+    }
+}
@@ -0,0 +1,173 @@
+package pl.planzy.scrappers.mapper.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import pl.planzy.config.ScraperProperties;
+import pl.planzy.dto.ScrapedEvent;
+import pl.planzy.scrappers.model.EbiletTitle;
+import pl.planzy.util.JsonArrayStreams;
+import pl.planzy.util.StringPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares mapping an eBilet listing page into typed {@link ScrapedEvent}s with the {@code ObjectNode}
+ * mapping it replaced, from the page body to the fields persistence reads.
+ * <p>
+ * The {@code objectNodes} benchmark reproduces the replaced path: the page read into a tree, every title
+ * mapped into an {@code ObjectNode} with dates and names as text, which persistence parsed and split
+ * again. Run with {@code main} from the test classpath, or through the JMH runner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventMappingBenchmark {
+
+    private static final String[] CITIES = {"Warszawa", "Kraków", "Gdańsk", "Wrocław", "Poznań"};
+    private static final String[] CATEGORIES = {"koncerty", "teatr", "sport", "festiwale"};
+    private static final TypeReference<List<String>> STRING_LIST = new TypeReference<>() {
+    };
+
+    @Param({"20", "1000"})
+    int titles;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] page;
+    private EventMapperEbilet mapper;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode array = root.putArray("titles");
+        for (int i = 0; i < titles; i++) {
+            ObjectNode title = array.addObject()
+                    .put("title", "Event " + i)
+                    .put("dateFrom", "2026-0" + (1 + i % 9) + "-1" + (i % 10) + "T20:00:00")
+                    .put("dateTo", "2026-0" + (1 + i % 9) + "-1" + (i % 10) + "T23:00:00")
+                    .put("linkTo", "https://www.ebilet.pl/" + CATEGORIES[i % CATEGORIES.length] + "/event-" + i)
+                    .put("category", CATEGORIES[i % CATEGORIES.length])
+                    .put("categoryName", CATEGORIES[i % CATEGORIES.length].toUpperCase())
+                    .put("subcategory", "sub-" + i % 7)
+                    .put("subcategoryName", "Sub " + i % 7)
+                    .put("slug", "event-" + i)
+                    .put("imageLandscape", "/images/event-" + i + ".jpg")
+                    .put("metaDescription", "Description of event " + i + " with a few words of text");
+            title.putArray("artists").add("Artist " + i % 50).add("Artist " + (i + 1) % 50);
+            title.putObject("nextEventPlace")
+                    .put("customName", "Hall " + i % 30)
+                    .put("city", CITIES[i % CITIES.length]);
+        }
+        page = objectMapper.writeValueAsBytes(root);
+
+        ScraperProperties properties = new ScraperProperties();
+        properties.getMapping().setParallel(false);
+        mapper = new EventMapperEbilet(ForkJoinPool.commonPool(), new StringPool("benchmark", 16384), properties);
+    }
+
+    @Benchmark
+    public void typed(Blackhole blackhole) throws IOException {
+        List<EbiletTitle> records = new ArrayList<>(titles);
+        JsonArrayStreams.forEachElement(objectMapper, new ByteArrayInputStream(page), EbiletTitle.class, records::add, "titles");
+
+        for (EbiletTitle record : records) {
+            ScrapedEvent event = mapper.mapEvent(record);
+            blackhole.consume(event.getStartDate());
+            blackhole.consume(event.getEndDate());
+            blackhole.consume(event.getArtists());
+            blackhole.consume(event.getTags());
+            blackhole.consume(event.getThumbnail());
+            blackhole.consume(event.getUrl());
+        }
+    }
+
+    @Benchmark
+    public void objectNodes(Blackhole blackhole) throws IOException {
+        JsonNode root = objectMapper.readTree(page);
+
+        List<JsonNode> events = new ArrayList<>(titles);
+        for (JsonNode title : root.get("titles")) {
+            events.add(legacyMap(title));
+        }
+
+        for (JsonNode event : events) {
+            String startDate = event.get("start_date").asText();
+            String endDate = event.get("end_date").asText();
+            blackhole.consume("null".equals(startDate) ? 0 : Long.parseLong(startDate));
+            blackhole.consume("null".equals(endDate) ? 0 : Long.parseLong(endDate));
+            blackhole.consume(event.get("artists").asText().split(","));
+            blackhole.consume(event.get("tags").asText().split(","));
+            blackhole.consume(event.get("thumbnail").asText());
+            blackhole.consume(event.get("url").asText());
+        }
+    }
+
+    /**
+     * The replaced mapping of one title, without its logging.
+     */
+    private JsonNode legacyMap(JsonNode event) {
+        String artists = event.has("artists") && event.get("artists").isArray()
+                ? String.join(", ", objectMapper.convertValue(event.get("artists"), STRING_LIST))
+                : "Unknown Artist";
+
+        StringBuilder tags = new StringBuilder();
+        for (String field : new String[]{"subcategoryName", "category", "subcategory"}) {
+            JsonNode value = event.get(field);
+            if (value != null && !value.isNull() && !value.asText().isBlank() && !value.asText().equalsIgnoreCase("null")) {
+                tags.append(tags.isEmpty() ? "" : ", ").append(value.asText());
+            }
+        }
+
+        return objectMapper.createObjectNode()
+                .put("event_name", event.get("title").asText())
+                .put("artists", artists)
+                .put("start_date", legacyTimestamp(event.get("dateFrom")))
+                .put("end_date", legacyTimestamp(event.get("dateTo")))
+                .put("thumbnail", "https://www.ebilet.pl/media" + event.get("imageLandscape").asText())
+                .put("url", event.get("linkTo").asText())
+                .put("location", event.get("nextEventPlace").get("city").asText())
+                .put("place", event.get("nextEventPlace").get("customName").asText())
+                .put("category", event.get("categoryName").asText())
+                .put("tags", tags.toString())
+                .put("description", event.get("metaDescription").asText())
+                .put("source", "eBilet");
+    }
+
+    private static String legacyTimestamp(JsonNode date) {
+        if (date == null || date.isNull() || date.asText().isEmpty()) {
+            return "null";
+        }
+        return String.valueOf(LocalDateTime.parse(date.asText()).toEpochSecond(ZoneOffset.UTC));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EventMappingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,279 @@
+package pl.planzy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import pl.planzy.config.IngestProperties;
+import pl.planzy.dto.EventSource;
+import pl.planzy.dto.ScrapedEvent;
+import pl.planzy.entity.Place;
+import pl.planzy.service.ingest.DictionaryCache;
+import pl.planzy.service.ingest.EventBulkWriter;
+import pl.planzy.service.ingest.EventRelationshipWriter;
+import pl.planzy.service.ingest.FullReloadLoader;
+import pl.planzy.service.ingest.IngestCheckpointService;
+import pl.planzy.service.ingest.IngestStats;
+import pl.planzy.service.ingest.NameResolver;
+import pl.planzy.service.ingest.SequenceIdAllocator;
+import pl.planzy.service.ingest.UrlIndex;
+import pl.planzy.service.ingest.WriterLanes;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counts the statements a chunk of new events costs, through a data source that answers the ingest
+ * statements like an empty database would.
+ * <p>
+ * Before the bulk writers every event took an insert and a flush of its own, plus a lookup and an insert
+ * per artist and tag pair. A chunk now costs a fixed number of statements, however many events it has.
+ */
+class EventIntegrationStatementCountTest {
+
+    private final StatementCountingDataSource database = new StatementCountingDataSource();
+    private EventIntegrationService eventIntegrationService;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database.dataSource);
+        IngestProperties properties = new IngestProperties();
+        SequenceIdAllocator idAllocator = new SequenceIdAllocator(jdbcTemplate);
+        DictionaryCache dictionaryCache = new DictionaryCache(jdbcTemplate, properties, new SimpleMeterRegistry());
+
+        eventIntegrationService = new EventIntegrationService(
+                new EventBulkWriter(jdbcTemplate, idAllocator), new EventRelationshipWriter(jdbcTemplate),
+                new NameResolver(jdbcTemplate, idAllocator, dictionaryCache), mock(FullReloadLoader.class),
+                dictionaryCache, new UrlIndex(jdbcTemplate, properties), properties,
+                mock(IngestCheckpointService.class), mock(WriterLanes.class), mock(PlatformTransactionManager.class));
+
+        EntityManager entityManager = mock(EntityManager.class);
+        when(entityManager.getReference(eq(Place.class), any())).thenAnswer(invocation -> {
+            Place place = new Place();
+            place.setId(invocation.getArgument(1));
+            return place;
+        });
+        ReflectionTestUtils.setField(eventIntegrationService, "entityManager", entityManager);
+    }
+
+    @Test
+    void writesThousandNewEventsWithConstantNumberOfStatements() {
+        IngestStats stats = eventIntegrationService.processChunk(events("a", 1000), null, 0, null);
+
+        assertThat(stats.getInserted()).isEqualTo(1000);
+        // Place, artist and tag names: select, ID block and insert each (9), events: ID block and insert (2),
+        // join rows: one insert per join table (2)
+        assertThat(database.statements()).as("statements per 1,000 events: %s", database.executed).isEqualTo(13);
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithChunkSize() {
+        // Different names in both chunks, so the second one finds none of them in the dictionaries
+        eventIntegrationService.processChunk(events("a", 100), null, 0, null);
+        int smallChunk = database.statements();
+
+        database.reset();
+        eventIntegrationService.processChunk(events("b", 1000), null, 0, null);
+
+        assertThat(database.statements()).isEqualTo(smallChunk);
+    }
+
+    /**
+     * New events spread over 100 places, 200 artists and 50 tags, two artists and three tags each.
+     * All URLs and names carry the prefix.
+     */
+    private static List<ScrapedEvent> events(String prefix, int count) {
+        List<ScrapedEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(ScrapedEvent.builder()
+                    .name(prefix + " Event " + i)
+                    .url("https://example.com/events/" + prefix + "/" + i)
+                    .place(prefix + " Place " + i % 100)
+                    .artists(new String[]{prefix + " Artist " + i % 200, prefix + " Artist " + (i + 1) % 200})
+                    .tags(new String[]{prefix + " Tag " + i % 50, prefix + " Tag " + (i + 7) % 50, prefix + " Tag " + (i + 13) % 50})
+                    .source(EventSource.EBILET)
+                    .build());
+        }
+        return events;
+    }
+
+    /**
+     * Data source of an empty database: lookups find nothing, sequences hand out blocks of 50 and inserts
+     * return every row they were given. Every executed statement is recorded.
+     */
+    private static final class StatementCountingDataSource {
+
+        private final List<String> executed = new ArrayList<>();
+        private final Map<String, Long> sequences = new HashMap<>();
+        private final DataSource dataSource = proxy(DataSource.class, (proxy, method, args) ->
+                method.getName().equals("getConnection") ? connection() : defaultValue(method.getReturnType()));
+
+        int statements() {
+            return executed.size();
+        }
+
+        void reset() {
+            executed.clear();
+        }
+
+        private Connection connection() {
+            Connection[] connection = new Connection[1];
+            connection[0] = proxy(Connection.class, (proxy, method, args) -> switch (method.getName()) {
+                case "prepareStatement" -> statement((String) args[0], connection[0]);
+                case "createArrayOf" -> array((Object[]) args[1]);
+                case "getAutoCommit" -> true;
+                default -> defaultValue(method.getReturnType());
+            });
+            return connection[0];
+        }
+
+        private PreparedStatement statement(String sql, Connection connection) {
+            Map<Integer, Object> parameters = new TreeMap<>();
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.equals("setNull")) {
+                    parameters.put((Integer) args[0], null);
+                    return null;
+                }
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    parameters.put(index, args[1] instanceof Array array ? array.getArray() : args[1]);
+                    return null;
+                }
+                return switch (name) {
+                    case "executeQuery" -> {
+                        executed.add(sql);
+                        yield resultSet(answer(sql, new ArrayList<>(parameters.values())));
+                    }
+                    case "executeUpdate" -> {
+                        executed.add(sql);
+                        yield 0;
+                    }
+                    case "getConnection" -> connection;
+                    default -> defaultValue(method.getReturnType());
+                };
+            });
+        }
+
+        /**
+         * Rows of a query as column name to value maps, in column order.
+         */
+        private List<Map<String, Object>> answer(String sql, List<Object> parameters) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+
+            if (sql.contains("nextval")) {
+                String sequence = (String) parameters.get(0);
+                int blocks = ((Number) parameters.get(1)).intValue();
+                for (int i = 0; i < blocks; i++) {
+                    long value = sequences.merge(sequence, (long) SequenceIdAllocator.ALLOCATION_SIZE, Long::sum);
+                    rows.add(Map.of("nextval", value));
+                }
+            } else if (sql.startsWith("INSERT INTO events")) {
+                // id is the 1st and url the 6th of the 12 parameters of every row
+                for (int row = 0; row < parameters.size(); row += 12) {
+                    rows.add(row("id", parameters.get(row), "url", parameters.get(row + 5)));
+                }
+            } else if (sql.startsWith("INSERT INTO")) {
+                // Names are inserted from an ID array and a name array
+                Object[] ids = (Object[]) parameters.get(0);
+                Object[] names = (Object[]) parameters.get(1);
+                for (int i = 0; i < ids.length; i++) {
+                    rows.add(row("id", ids[i], "name", names[i]));
+                }
+            }
+            return rows;
+        }
+
+        private static Map<String, Object> row(String firstColumn, Object firstValue, String secondColumn, Object secondValue) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put(firstColumn, firstValue);
+            row.put(secondColumn, secondValue);
+            return row;
+        }
+
+        private static ResultSet resultSet(List<Map<String, Object>> rows) {
+            int[] current = {-1};
+            Object[] last = new Object[1];
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        return ++current[0] < rows.size();
+                    case "getMetaData":
+                        int columns = rows.isEmpty() ? 0 : rows.get(0).size();
+                        return proxy(ResultSetMetaData.class, (metaProxy, metaMethod, metaArgs) ->
+                                metaMethod.getName().equals("getColumnCount") ? columns : defaultValue(metaMethod.getReturnType()));
+                    case "wasNull":
+                        return last[0] == null;
+                    case "getLong":
+                    case "getString":
+                    case "getObject":
+                        Map<String, Object> row = rows.get(current[0]);
+                        last[0] = args[0] instanceof Integer index
+                                ? new ArrayList<>(row.values()).get(index - 1)
+                                : row.get((String) args[0]);
+                        if (method.getName().equals("getLong")) {
+                            return last[0] != null ? ((Number) last[0]).longValue() : 0L;
+                        }
+                        return method.getName().equals("getString") && last[0] != null ? last[0].toString() : last[0];
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+        }
+
+        private static Array array(Object[] elements) {
+            return proxy(Array.class, (proxy, method, args) ->
+                    method.getName().equals("getArray") ? elements : defaultValue(method.getReturnType()));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) {
+                return false;
+            }
+            if (type == int.class) {
+                return 0;
+            }
+            if (type == long.class) {
+                return 0L;
+            }
+            if (type == short.class) {
+                return (short) 0;
+            }
+            if (type == byte.class) {
+                return (byte) 0;
+            }
+            if (type == float.class) {
+                return 0f;
+            }
+            if (type == double.class) {
+                return 0d;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package pl.planzy.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import pl.planzy.config.IngestProperties;
+import pl.planzy.dto.ScrapedEvent;
+import pl.planzy.entity.IngestCheckpoint;
+import pl.planzy.scrappers.impl.PageSink;
+import pl.planzy.scrappers.impl.Scrapper;
+import pl.planzy.scrappers.mapper.EventMapper;
+import pl.planzy.service.ingest.DictionaryCache;
+import pl.planzy.service.ingest.EventBulkWriter;
+import pl.planzy.service.ingest.EventRelationshipWriter;
+import pl.planzy.service.ingest.FullReloadLoader;
+import pl.planzy.service.ingest.IngestCheckpointService;
+import pl.planzy.service.ingest.IngestStats;
+import pl.planzy.service.ingest.NameResolver;
+import pl.planzy.service.ingest.UrlIndex;
+import pl.planzy.service.ingest.WriterLanes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestPipelineTest {
+
+    private static final String SOURCE = "test";
+    private static final int PAGE_SIZE = 2;
+
+    private final IngestProperties properties = new IngestProperties();
+    private final IngestCheckpointService checkpointService = mock(IngestCheckpointService.class);
+    private final IngestCheckpoint checkpoint = new IngestCheckpoint();
+    private EventIntegrationService eventIntegrationService;
+    private IngestPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        properties.setChunkSize(PAGE_SIZE);
+        properties.setWriters(1);
+
+        checkpoint.setSource(SOURCE);
+        checkpoint.setRunId("run");
+        checkpoint.setStatus(IngestCheckpoint.Status.RUNNING);
+        when(checkpointService.start(SOURCE)).thenReturn(checkpoint);
+
+        eventIntegrationService = spy(new EventIntegrationService(
+                mock(EventBulkWriter.class), mock(EventRelationshipWriter.class), mock(NameResolver.class),
+                mock(FullReloadLoader.class), mock(DictionaryCache.class), mock(UrlIndex.class), properties,
+                checkpointService, mock(WriterLanes.class), mock(PlatformTransactionManager.class)));
+        doReturn(new IngestStats()).when(eventIntegrationService).processChunk(anyList(), any(), anyLong(), any());
+
+        pipeline = new IngestPipeline(
+                new ScrapperService(new ObjectMapper(), new SimpleAsyncTaskExecutor(), List.of()),
+                eventIntegrationService, properties);
+    }
+
+    @Test
+    void completesRunOfScraperThatDeliveredAllPages() {
+        pipeline.run(List.of(new PagedScrapper(3, false)));
+
+        assertThat(checkpoint.getLastOffset()).isEqualTo(3 * PAGE_SIZE);
+        verify(checkpointService).complete(checkpoint);
+    }
+
+    @Test
+    void keepsRunOfFailedScraperAtItsLastPage() {
+        pipeline.run(List.of(new PagedScrapper(3, true)));
+
+        assertThat(checkpoint.getLastOffset()).isEqualTo(3 * PAGE_SIZE);
+        assertThat(checkpoint.getStatus()).isEqualTo(IngestCheckpoint.Status.RUNNING);
+        verify(checkpointService, never()).complete(any());
+    }
+
+    @Test
+    void stopsScraperWhenWritingFails() throws InterruptedException {
+        properties.getPipeline().setQueueCapacity(1);
+        EventIntegrationService.SourceWriter writer = mock(EventIntegrationService.SourceWriter.class);
+        doThrow(new IllegalStateException("Database went away")).when(writer).accept(anyList(), any());
+        doReturn(writer).when(eventIntegrationService).openSource(eq(SOURCE), any(), anyBoolean());
+        EndlessScrapper scraper = new EndlessScrapper();
+
+        assertThatThrownBy(() -> pipeline.run(List.of(scraper))).hasMessage("Database went away");
+
+        // Blocked on the full queue until the pipeline closed it
+        assertThat(scraper.stopped.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(scraper.failure).hasMessageContaining("Ingest aborted");
+    }
+
+    @Test
+    void stopsScraperWhenInterrupted() throws InterruptedException {
+        properties.getPipeline().setQueueCapacity(1);
+        EndlessScrapper scraper = new EndlessScrapper();
+
+        doReturn(mock(EventIntegrationService.SourceWriter.class)).when(eventIntegrationService).openSource(eq(SOURCE), any(), anyBoolean());
+
+        // The drain is interrupted before it takes the first page
+        Thread.currentThread().interrupt();
+        pipeline.run(List.of(scraper));
+
+        assertThat(Thread.interrupted()).isTrue();
+        assertThat(scraper.stopped.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(scraper.failure).hasMessageContaining("Ingest aborted");
+    }
+
+    /**
+     * Delivers a number of full pages, then either ends or throws.
+     */
+    private static final class PagedScrapper implements Scrapper<ScrapedEvent> {
+
+        private final int pages;
+        private final boolean failing;
+
+        private PagedScrapper(int pages, boolean failing) {
+            this.pages = pages;
+            this.failing = failing;
+        }
+
+        @Override
+        public EventMapper<ScrapedEvent> getMapper() {
+            return data -> data;
+        }
+
+        @Override
+        public String getSourceName() {
+            return SOURCE;
+        }
+
+        @Override
+        public void scrape(String cursor, PageSink<ScrapedEvent> sink) {
+            for (int page = 1; page <= pages; page++) {
+                List<ScrapedEvent> events = new ArrayList<>();
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    events.add(ScrapedEvent.builder().name("Event " + page + "." + i)
+                            .url("https://example.com/" + page + "/" + i).build());
+                }
+                sink.accept(events, "page-" + page);
+            }
+            if (failing) {
+                throw new IllegalStateException("Source went away after " + pages + " pages");
+            }
+        }
+    }
+
+    /**
+     * Delivers pages until the sink refuses one.
+     */
+    private static final class EndlessScrapper implements Scrapper<ScrapedEvent> {
+
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        private volatile RuntimeException failure;
+
+        @Override
+        public EventMapper<ScrapedEvent> getMapper() {
+            return data -> data;
+        }
+
+        @Override
+        public String getSourceName() {
+            return SOURCE;
+        }
+
+        @Override
+        public void scrape(String cursor, PageSink<ScrapedEvent> sink) {
+            try {
+                for (int page = 1; ; page++) {
+                    sink.accept(List.of(ScrapedEvent.builder().name("Event " + page)
+                            .url("https://example.com/" + page).build()), "page-" + page);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+                stopped.countDown();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package pl.planzy.service.ingest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import pl.planzy.util.NameIdDictionary;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NameResolverTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final List<List<Object>> insertedNames = new ArrayList<>();
+    private NameResolver resolver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SequenceIdAllocator idAllocator = mock(SequenceIdAllocator.class);
+        when(idAllocator.allocate(anyString(), anyInt())).thenAnswer(invocation -> new long[(int) invocation.getArgument(1)]);
+
+        DictionaryCache dictionaryCache = mock(DictionaryCache.class);
+        when(dictionaryCache.artists()).thenReturn(new NameIdDictionary("artists", 100));
+
+        // Nothing is stored, so every name is inserted; the name arrays of the inserts are recorded
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            Connection connection = mock(Connection.class);
+            PreparedStatement ps = mock(PreparedStatement.class);
+            when(ps.getConnection()).thenReturn(connection);
+            when(connection.createArrayOf(anyString(), any(Object[].class))).thenAnswer(array -> {
+                if (sql.startsWith("INSERT") && array.getArgument(0).equals("varchar")) {
+                    synchronized (insertedNames) {
+                        insertedNames.add(List.of((Object[]) array.getArgument(1)));
+                    }
+                }
+                return null;
+            });
+            invocation.<PreparedStatementSetter>getArgument(1).setValues(ps);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+
+        resolver = new NameResolver(jdbcTemplate, idAllocator, dictionaryCache);
+    }
+
+    @Test
+    void insertsOverlappingNamesOfTwoLanesInTheSameOrder() {
+        CompletableFuture<?> firstLane = CompletableFuture.runAsync(() ->
+                resolver.resolve(NameResolver.Kind.ARTIST, List.of("Dawid", "Adam", "Cezary", "Bogdan"), new ArrayList<>()));
+        CompletableFuture<?> secondLane = CompletableFuture.runAsync(() ->
+                resolver.resolve(NameResolver.Kind.ARTIST, List.of("Bogdan", "Cezary", "Adam", "Dawid"), new ArrayList<>()));
+        CompletableFuture.allOf(firstLane, secondLane).join();
+
+        assertThat(insertedNames).hasSize(2);
+        assertThat(insertedNames.get(0))
+                .isSorted()
+                .isEqualTo(insertedNames.get(1));
+    }
+
+    @Test
+    void insertsNamesOfOneChunkInNameOrder() {
+        resolver.resolve(NameResolver.Kind.ARTIST, List.of("Zenon", "Adam", "Marek", "Adam"), new ArrayList<>());
+
+        assertThat(insertedNames).containsExactly(List.of("Adam", "Marek", "Zenon"));
+    }
+}
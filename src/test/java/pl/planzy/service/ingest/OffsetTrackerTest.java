@@ -0,0 +1,114 @@
+package pl.planzy.service.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffsetTrackerTest {
+
+    @Test
+    void committedOffsetIsLastReceivedWhenNoChunkIsOpen() {
+        OffsetTracker offsets = new OffsetTracker(5);
+
+        assertThat(offsets.committedOffset()).isEqualTo(5);
+
+        offsets.receive(6, true);
+        offsets.receive(7, false);
+        assertThat(offsets.committedOffset()).isEqualTo(5);
+
+        offsets.close(6);
+        assertThat(offsets.committedOffset()).isEqualTo(7);
+    }
+
+    @Test
+    void followsLowestOpenChunkWhenChunksCloseOutOfOrder() {
+        OffsetTracker offsets = new OffsetTracker(0);
+        offsets.receive(1, true);
+        offsets.receive(2, true);
+        offsets.receive(3, false);
+        offsets.receive(4, false);
+        offsets.receive(5, true);
+        offsets.receive(6, false);
+
+        offsets.close(5);
+        assertThat(offsets.committedOffset()).isEqualTo(0);
+
+        offsets.close(1);
+        assertThat(offsets.committedOffset()).isEqualTo(1);
+
+        offsets.close(2);
+        assertThat(offsets.committedOffset()).isEqualTo(6);
+    }
+
+    @Test
+    void failedChunkThatIsNeverClosedPinsCommittedOffset() {
+        OffsetTracker offsets = new OffsetTracker(0);
+        offsets.receive(1, true);
+        offsets.receive(2, false);
+        // Chunk starting at 3 fails and is never closed
+        offsets.receive(3, true);
+        offsets.receive(4, false);
+        offsets.receive(5, true);
+        offsets.receive(6, false);
+
+        offsets.close(1);
+        offsets.close(5);
+        assertThat(offsets.committedOffset()).isEqualTo(2);
+
+        for (long offset = 7; offset <= 20; offset += 2) {
+            offsets.receive(offset, true);
+            offsets.receive(offset + 1, false);
+            offsets.close(offset);
+        }
+        assertThat(offsets.committedOffset()).isEqualTo(2);
+    }
+
+    @Test
+    void returnsCursorOfLastPageEndedAtCommittedOffset() {
+        OffsetTracker offsets = new OffsetTracker(0);
+        // Page 1 holds events 1-4, page 2 events 5-8, chunks start at 1 and 5
+        offsets.receive(1, true);
+        for (long offset = 2; offset <= 4; offset++) {
+            offsets.receive(offset, false);
+        }
+        offsets.endPage(4, "page-1");
+        offsets.receive(5, true);
+        for (long offset = 6; offset <= 8; offset++) {
+            offsets.receive(offset, false);
+        }
+        offsets.endPage(8, "page-2");
+
+        offsets.close(5);
+        assertThat(offsets.committedOffset()).isEqualTo(0);
+        assertThat(offsets.cursorAt(offsets.committedOffset())).isNull();
+
+        offsets.close(1);
+        assertThat(offsets.committedOffset()).isEqualTo(8);
+        assertThat(offsets.cursorAt(offsets.committedOffset())).isEqualTo(Map.entry(8L, "page-2"));
+    }
+
+    @Test
+    void returnsCursorOfPageEndedBeforeOffsetInsidePage() {
+        OffsetTracker offsets = new OffsetTracker(0);
+        offsets.endPage(4, "page-1");
+        offsets.endPage(8, "page-2");
+
+        assertThat(offsets.cursorAt(3)).isNull();
+        assertThat(offsets.cursorAt(6)).isEqualTo(Map.entry(4L, "page-1"));
+        assertThat(offsets.cursorAt(8)).isEqualTo(Map.entry(8L, "page-2"));
+    }
+
+    @Test
+    void dropsCursorsOfEarlierPages() {
+        OffsetTracker offsets = new OffsetTracker(0);
+        offsets.endPage(4, "page-1");
+        offsets.endPage(8, "page-2");
+
+        offsets.cursorAt(8);
+
+        assertThat(offsets.cursorAt(6)).isNull();
+        assertThat(offsets.cursorAt(9)).isEqualTo(Map.entry(8L, "page-2"));
+    }
+}
@@ -0,0 +1,120 @@
+package pl.planzy.service.ingest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import pl.planzy.config.IngestProperties;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UrlIndexTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    // Committed rows of the events table by ID: URL and content hash
+    private final Map<Long, Map.Entry<String, Long>> events = new TreeMap<>();
+    private UrlIndex urlIndex;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Refresh: rows above the watermark in ID order
+        doAnswer(invocation -> {
+            long watermark = (long) invocation.getArgument(2);
+            List<Object[]> rows = new ArrayList<>();
+            events.forEach((id, event) -> {
+                if (id > watermark) {
+                    rows.add(new Object[]{id, event.getKey(), event.getValue()});
+                }
+            });
+            feed(rows, invocation.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, url"), any(RowCallbackHandler.class), any(Object[].class));
+
+        // Lookup: rows of the URLs in the array parameter
+        doAnswer(invocation -> {
+            Object[][] urls = new Object[1][];
+            PreparedStatement ps = mock(PreparedStatement.class);
+            Connection connection = mock(Connection.class);
+            when(ps.getConnection()).thenReturn(connection);
+            when(connection.createArrayOf(anyString(), any(Object[].class))).thenAnswer(array -> {
+                urls[0] = array.getArgument(1);
+                return null;
+            });
+            invocation.<PreparedStatementSetter>getArgument(1).setValues(ps);
+
+            Set<Object> requested = Set.of(urls[0]);
+            List<Object[]> rows = new ArrayList<>();
+            events.values().forEach(event -> {
+                if (requested.contains(event.getKey())) {
+                    rows.add(new Object[]{event.getKey(), event.getValue()});
+                }
+            });
+            feed(rows, invocation.getArgument(2));
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT url"), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+
+        urlIndex = new UrlIndex(jdbcTemplate, new IngestProperties());
+    }
+
+    @Test
+    void loadsRowsOfSeveralBatches() {
+        for (long id = 1; id <= 25_000; id++) {
+            events.put(id, Map.entry("https://example.com/" + id, id * 10));
+        }
+
+        urlIndex.refresh();
+
+        assertThat(urlIndex.size()).isEqualTo(25_000);
+        assertThat(urlIndex.findStored(List.of("https://example.com/1", "https://example.com/25000", "https://example.com/new")))
+                .containsExactlyInAnyOrderEntriesOf(Map.of("https://example.com/1", 10L, "https://example.com/25000", 250_000L));
+    }
+
+    @Test
+    void registersRowCommittedBelowWatermark() {
+        events.put(1L, Map.entry("https://example.com/1", 10L));
+        events.put(3L, Map.entry("https://example.com/3", 30L));
+        urlIndex.refresh();
+
+        // Row 2 commits after the refresh passed it, the next refresh starts above 3
+        events.put(2L, Map.entry("https://example.com/2", 20L));
+        urlIndex.refresh();
+        assertThat(urlIndex.findStored(List.of("https://example.com/2"))).isEmpty();
+
+        // The insert of its URL conflicts, the writer registers it
+        urlIndex.putStored(List.of("https://example.com/2"));
+
+        assertThat(urlIndex.findStored(List.of("https://example.com/2"))).containsExactly(Map.entry("https://example.com/2", 20L));
+    }
+
+    /**
+     * Hands the rows to the handler through a result set whose getters read the current row, by column index.
+     */
+    private static void feed(List<Object[]> rows, RowCallbackHandler handler) throws Exception {
+        Object[][] current = new Object[1][];
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(anyInt())).thenAnswer(invocation -> ((Number) current[0][(int) invocation.getArgument(0) - 1]).longValue());
+        when(rs.getString(anyInt())).thenAnswer(invocation -> (String) current[0][(int) invocation.getArgument(0) - 1]);
+
+        for (Object[] row : rows) {
+            current[0] = row;
+            handler.processRow(rs);
+        }
+    }
+}
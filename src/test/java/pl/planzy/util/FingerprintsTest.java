@@ -0,0 +1,42 @@
+package pl.planzy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FingerprintsTest {
+
+    @Test
+    void equalStringsHaveEqualFingerprints() {
+        String url = "https://example.com/event/1";
+
+        assertThat(Fingerprints.of(new String(url))).isEqualTo(Fingerprints.of(url));
+        assertThat(Fingerprints.ofAll("a", null, "b")).isEqualTo(Fingerprints.ofAll("a", null, "b"));
+    }
+
+    @Test
+    void separatesValuesOfSequence() {
+        assertThat(Fingerprints.ofAll("ab", "c")).isNotEqualTo(Fingerprints.ofAll("a", "bc"));
+        assertThat(Fingerprints.ofAll("a", "")).isNotEqualTo(Fingerprints.ofAll("a"));
+    }
+
+    @Test
+    void distinguishesNullFromEmptyString() {
+        assertThat(Fingerprints.ofAll((String) null)).isNotEqualTo(Fingerprints.ofAll(""));
+        assertThat(Fingerprints.ofAll("a", null)).isNotEqualTo(Fingerprints.ofAll("a", ""));
+    }
+
+    @Test
+    void hasNoCollisionsAmongSimilarUrls() {
+        Set<Long> fingerprints = new HashSet<>();
+
+        for (int i = 0; i < 100_000; i++) {
+            fingerprints.add(Fingerprints.of("https://example.com/event/" + i));
+        }
+
+        assertThat(fingerprints).hasSize(100_000);
+    }
+}
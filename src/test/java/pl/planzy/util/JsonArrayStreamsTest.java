@@ -0,0 +1,135 @@
+package pl.planzy.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonArrayStreamsTest {
+
+    private static final String ALGOLIA_RESPONSE = """
+            {
+              "took": 3,
+              "results": [
+                {
+                  "params": {"query": "", "hits": "not these"},
+                  "hits": [
+                    {"objectID": "1", "name": "First", "tags": [{"nested": true}]},
+                    {"objectID": "2", "name": "Second"}
+                  ],
+                  "nbHits": 2
+                },
+                {"hits": [{"objectID": "3", "name": "Third"}]}
+              ]
+            }
+            """;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Hit(String objectID, String name) {
+    }
+
+    @Test
+    void bindsElementsOfNestedArray() throws IOException {
+        List<Hit> hits = new ArrayList<>();
+
+        int count = JsonArrayStreams.forEachElement(mapper, json(ALGOLIA_RESPONSE), Hit.class, hits::add, "results", 0, "hits");
+
+        assertThat(count).isEqualTo(2);
+        assertThat(hits).containsExactly(new Hit("1", "First"), new Hit("2", "Second"));
+    }
+
+    @Test
+    void skipsElementsBeforeIndex() throws IOException {
+        List<Hit> hits = new ArrayList<>();
+
+        int count = JsonArrayStreams.forEachElement(mapper, json(ALGOLIA_RESPONSE), Hit.class, hits::add, "results", 1, "hits");
+
+        assertThat(count).isEqualTo(1);
+        assertThat(hits).containsExactly(new Hit("3", "Third"));
+    }
+
+    @Test
+    void streamsTopLevelArrayWithoutPath() throws IOException {
+        List<JsonNode> elements = new ArrayList<>();
+
+        int count = JsonArrayStreams.forEachElement(mapper, json("[1, {\"a\": [2]}, \"three\"]"), JsonNode.class, elements::add);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(elements.get(1).get("a").get(0).asInt()).isEqualTo(2);
+    }
+
+    @Test
+    void countsNoElementsOfEmptyArray() throws IOException {
+        List<Hit> hits = new ArrayList<>();
+
+        int count = JsonArrayStreams.forEachElement(mapper, json("{\"titles\": []}"), Hit.class, hits::add, "titles");
+
+        assertThat(count).isZero();
+        assertThat(hits).isEmpty();
+    }
+
+    @Test
+    void returnsMinusOneForMissingPath() throws IOException {
+        List<Hit> hits = new ArrayList<>();
+
+        assertThat(JsonArrayStreams.forEachElement(mapper, json(ALGOLIA_RESPONSE), Hit.class, hits::add, "titles")).isEqualTo(-1);
+        assertThat(JsonArrayStreams.forEachElement(mapper, json(ALGOLIA_RESPONSE), Hit.class, hits::add, "results", 2, "hits")).isEqualTo(-1);
+        assertThat(JsonArrayStreams.forEachElement(mapper, json("{}"), Hit.class, hits::add, "titles")).isEqualTo(-1);
+        assertThat(hits).isEmpty();
+    }
+
+    @Test
+    void returnsMinusOneForNonArrayAtPath() throws IOException {
+        List<JsonNode> elements = new ArrayList<>();
+
+        assertThat(JsonArrayStreams.forEachElement(mapper, json("{\"titles\": {\"0\": 1}}"), JsonNode.class, elements::add, "titles")).isEqualTo(-1);
+        assertThat(JsonArrayStreams.forEachElement(mapper, json("{\"titles\": \"none\"}"), JsonNode.class, elements::add, "titles")).isEqualTo(-1);
+        assertThat(JsonArrayStreams.forEachElement(mapper, json("{\"titles\": null}"), JsonNode.class, elements::add, "titles")).isEqualTo(-1);
+        assertThat(JsonArrayStreams.forEachElement(mapper, json("[{\"titles\": []}]"), JsonNode.class, elements::add, "titles")).isEqualTo(-1);
+        assertThat(JsonArrayStreams.forEachElement(mapper, json("{\"results\": {}}"), JsonNode.class, elements::add, "results", 0)).isEqualTo(-1);
+        assertThat(elements).isEmpty();
+    }
+
+    @Test
+    void handsOnScalarFieldsNextToArray() throws IOException {
+        List<Hit> hits = new ArrayList<>();
+        Map<String, JsonNode> fields = new LinkedHashMap<>();
+
+        int count = JsonArrayStreams.forEachElement(mapper,
+                json("{\"results\": [{\"page\": 0, \"params\": {\"page\": 9}, \"hits\": [{\"objectID\": \"1\"}], " +
+                        "\"nbHits\": 2000, \"facets\": {\"city\": 1}, \"exhaustive\": true}]}"),
+                Hit.class, hits::add, fields::put, "results", 0, "hits");
+
+        assertThat(count).isEqualTo(1);
+        assertThat(fields.keySet()).containsExactly("page", "nbHits", "exhaustive");
+        assertThat(fields.get("page").asInt()).isZero();
+        assertThat(fields.get("nbHits").asLong()).isEqualTo(2000);
+    }
+
+    @Test
+    void leavesStreamOpenAfterArray() throws IOException {
+        InputStream in = json("{\"titles\": [1], \"tail\": \"" + "x".repeat(100_000) + "\"}");
+
+        JsonArrayStreams.forEachElement(mapper, in, JsonNode.class, element -> {
+        }, "titles");
+
+        assertThat(in.read()).isNotEqualTo(-1);
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,63 @@
+package pl.planzy.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongBloomFilterTest {
+
+    private static final int VALUES = 100_000;
+
+    @Test
+    void hasNoFalseNegatives() {
+        LongBloomFilter filter = new LongBloomFilter(VALUES, 0.01);
+
+        for (int i = 0; i < VALUES; i++) {
+            filter.add(Fingerprints.of("https://example.com/event/" + i));
+        }
+
+        for (int i = 0; i < VALUES; i++) {
+            assertThat(filter.mightContain(Fingerprints.of("https://example.com/event/" + i))).isTrue();
+        }
+    }
+
+    @Test
+    void hasNoFalseNegativesWhenOverfilled() {
+        LongBloomFilter filter = new LongBloomFilter(1_000, 0.01);
+
+        for (int i = 0; i < VALUES; i++) {
+            filter.add(Fingerprints.of("https://example.com/event/" + i));
+        }
+
+        for (int i = 0; i < VALUES; i++) {
+            assertThat(filter.mightContain(Fingerprints.of("https://example.com/event/" + i))).isTrue();
+        }
+    }
+
+    @Test
+    void staysNearTargetFalsePositiveRate() {
+        LongBloomFilter filter = new LongBloomFilter(VALUES, 0.01);
+        for (int i = 0; i < VALUES; i++) {
+            filter.add(Fingerprints.of("https://example.com/event/" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < VALUES; i++) {
+            if (filter.mightContain(Fingerprints.of("https://example.com/other/" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertThat((double) falsePositives / VALUES).isLessThan(0.02);
+    }
+
+    @Test
+    void sizesBitsAndHashesForTargetRate() {
+        LongBloomFilter filter = new LongBloomFilter(VALUES, 0.01);
+
+        // About 9.6 bits and 7 probes per value at 1%
+        assertThat(filter.getBitCount()).isBetween(9L * VALUES, 10L * VALUES);
+        assertThat(filter.getBitCount() % 64).isZero();
+        assertThat(filter.getHashCount()).isEqualTo(7);
+    }
+}
@@ -0,0 +1,77 @@
+package pl.planzy.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongLongHashMapTest {
+
+    @Test
+    void getsWhatWasPut() {
+        LongLongHashMap map = new LongLongHashMap();
+
+        assertThat(map.put(42, 7)).isTrue();
+        assertThat(map.put(-42, 8)).isTrue();
+
+        assertThat(map.get(42, -1)).isEqualTo(7);
+        assertThat(map.get(-42, -1)).isEqualTo(8);
+        assertThat(map.get(43, -1)).isEqualTo(-1);
+        assertThat(map.containsKey(42)).isTrue();
+        assertThat(map.containsKey(43)).isFalse();
+        assertThat(map.size()).isEqualTo(2);
+    }
+
+    @Test
+    void overwritesValueOfKnownKey() {
+        LongLongHashMap map = new LongLongHashMap();
+        map.put(42, 7);
+
+        assertThat(map.put(42, 9)).isFalse();
+
+        assertThat(map.get(42, -1)).isEqualTo(9);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void storesZeroKeyAlongsideOthers() {
+        LongLongHashMap map = new LongLongHashMap();
+
+        assertThat(map.containsKey(0)).isFalse();
+        assertThat(map.put(0, 5)).isTrue();
+        assertThat(map.put(0, 6)).isFalse();
+        map.put(1, 1);
+
+        assertThat(map.get(0, -1)).isEqualTo(6);
+        assertThat(map.size()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsAllEntriesWhileGrowing() {
+        LongLongHashMap map = new LongLongHashMap();
+
+        // Fingerprints and sequential keys, the latter would cluster without the slot hash
+        for (int i = 0; i < 10_000; i++) {
+            map.put(Fingerprints.of("https://example.com/event/" + i), i);
+            map.put(i + 1, -i);
+        }
+
+        assertThat(map.size()).isEqualTo(20_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(map.get(Fingerprints.of("https://example.com/event/" + i), Long.MIN_VALUE)).isEqualTo(i);
+            assertThat(map.get(i + 1, Long.MIN_VALUE)).isEqualTo(-i);
+        }
+    }
+
+    @Test
+    void clearsAllEntries() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        map.put(0, 1);
+        map.put(1, 1);
+
+        map.clear();
+
+        assertThat(map.size()).isZero();
+        assertThat(map.containsKey(0)).isFalse();
+        assertThat(map.containsKey(1)).isFalse();
+    }
+}
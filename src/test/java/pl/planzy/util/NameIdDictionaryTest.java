@@ -0,0 +1,112 @@
+package pl.planzy.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NameIdDictionaryTest {
+
+    @Test
+    void getsWhatWasPut() {
+        NameIdDictionary dictionary = new NameIdDictionary("places", 100);
+
+        dictionary.put("Tauron Arena", 1);
+        dictionary.put("Spodek", 2);
+
+        assertThat(dictionary.get("Tauron Arena")).isEqualTo(1);
+        assertThat(dictionary.get("Spodek")).isEqualTo(2);
+        assertThat(dictionary.get("Stodoła")).isEqualTo(NameIdDictionary.MISSING);
+        assertThat(dictionary.size()).isEqualTo(2);
+        assertThat(dictionary.hits()).isEqualTo(2);
+        assertThat(dictionary.misses()).isEqualTo(1);
+    }
+
+    @Test
+    void overwritesIdOfKnownName() {
+        NameIdDictionary dictionary = new NameIdDictionary("places", 100);
+
+        dictionary.put("Spodek", 2);
+        dictionary.put("Spodek", 3);
+
+        assertThat(dictionary.get("Spodek")).isEqualTo(3);
+        assertThat(dictionary.size()).isEqualTo(1);
+    }
+
+    @Test
+    void putsFirstCountNamesOfBatch() {
+        NameIdDictionary dictionary = new NameIdDictionary("tags", 100);
+
+        dictionary.putAll(new String[]{"rock", "jazz", "stale"}, new long[]{1, 2, 3}, 2);
+
+        assertThat(dictionary.get("rock")).isEqualTo(1);
+        assertThat(dictionary.get("jazz")).isEqualTo(2);
+        assertThat(dictionary.get("stale")).isEqualTo(NameIdDictionary.MISSING);
+        assertThat(dictionary.size()).isEqualTo(2);
+    }
+
+    @Test
+    void staysWithinMaxSize() {
+        NameIdDictionary dictionary = new NameIdDictionary("artists", 100);
+
+        for (int i = 0; i < 1000; i++) {
+            dictionary.put("artist-" + i, i);
+        }
+
+        assertThat(dictionary.size()).isEqualTo(100);
+        assertThat(dictionary.evictions()).isEqualTo(900);
+    }
+
+    @Test
+    void findsEveryEntryLeftAfterEvictions() {
+        NameIdDictionary dictionary = new NameIdDictionary("artists", 100);
+
+        for (int i = 0; i < 1000; i++) {
+            dictionary.put("artist-" + i, i);
+        }
+
+        int found = 0;
+        for (int i = 0; i < 1000; i++) {
+            long id = dictionary.get("artist-" + i);
+            if (id != NameIdDictionary.MISSING) {
+                assertThat(id).isEqualTo(i);
+                found++;
+            }
+        }
+        assertThat(found).isEqualTo(dictionary.size());
+    }
+
+    @Test
+    void keepsEntriesLookedUpBetweenEvictions() {
+        NameIdDictionary dictionary = new NameIdDictionary("tags", 64);
+        for (int i = 0; i < 8; i++) {
+            dictionary.put("hot-" + i, i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            for (int hot = 0; hot < 8; hot++) {
+                assertThat(dictionary.get("hot-" + hot)).isEqualTo(hot);
+            }
+            dictionary.put("cold-" + i, 1000 + i);
+        }
+
+        assertThat(dictionary.get("cold-0")).isEqualTo(NameIdDictionary.MISSING);
+        assertThat(dictionary.get("cold-999")).isEqualTo(1999);
+    }
+
+    @Test
+    void clearsAllEntries() {
+        NameIdDictionary dictionary = new NameIdDictionary("tags", 10);
+        dictionary.put("rock", 1);
+
+        dictionary.clear();
+
+        assertThat(dictionary.size()).isZero();
+        assertThat(dictionary.get("rock")).isEqualTo(NameIdDictionary.MISSING);
+    }
+
+    @Test
+    void rejectsNonPositiveMaxSize() {
+        assertThatThrownBy(() -> new NameIdDictionary("tags", 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
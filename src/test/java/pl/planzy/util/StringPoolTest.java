@@ -0,0 +1,82 @@
+package pl.planzy.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StringPoolTest {
+
+    @Test
+    void returnsPooledInstanceOfEqualString() {
+        StringPool pool = new StringPool("test", 64);
+        String first = new String("Kraków");
+        String second = new String("Kraków");
+
+        assertThat(pool.canonical(first)).isSameAs(first);
+        assertThat(pool.canonical(second)).isSameAs(first);
+        assertThat(pool.lookups()).isEqualTo(2);
+        assertThat(pool.hits()).isEqualTo(1);
+        assertThat(pool.bytesSaved()).isPositive();
+    }
+
+    @Test
+    void passesNullThrough() {
+        StringPool pool = new StringPool("test", 64);
+
+        assertThat(pool.canonical(null)).isNull();
+        assertThat(pool.lookups()).isZero();
+    }
+
+    @Test
+    void poolsArrayInPlace() {
+        StringPool pool = new StringPool("test", 64);
+        String rock = pool.canonical(new String("rock"));
+        String[] tags = {new String("rock"), null, new String("jazz")};
+
+        assertThat(pool.canonicalAll(tags)).isSameAs(tags);
+
+        assertThat(tags[0]).isSameAs(rock);
+        assertThat(tags[1]).isNull();
+        assertThat(pool.canonicalAll(null)).isNull();
+    }
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        assertThat(new StringPool("test", 1).capacity()).isEqualTo(1);
+        assertThat(new StringPool("test", 1000).capacity()).isEqualTo(1024);
+        assertThat(new StringPool("test", 1024).capacity()).isEqualTo(1024);
+        assertThatThrownBy(() -> new StringPool("test", 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void keepsAtMostOneStringPerSlot() {
+        StringPool pool = new StringPool("test", 1);
+        pool.canonical("a");
+        pool.canonical("b");
+        String a = new String("a");
+
+        // "b" took over the only slot, so "a" is pooled anew
+        assertThat(pool.canonical(a)).isSameAs(a);
+    }
+
+    @Test
+    void poolsNoMoreStringsThanItsCapacity() {
+        StringPool pool = new StringPool("test", 16);
+        for (int i = 0; i < 1000; i++) {
+            pool.canonical("value-" + i);
+        }
+
+        // Latest values first, as each of them displaced the earlier ones of its slot
+        int pooled = 0;
+        for (int i = 999; i >= 0; i--) {
+            String copy = new String("value-" + i);
+            if (pool.canonical(copy) != copy) {
+                pooled++;
+            }
+        }
+
+        assertThat(pool.capacity()).isEqualTo(16);
+        assertThat(pooled).isPositive().isLessThanOrEqualTo(16);
+    }
+}